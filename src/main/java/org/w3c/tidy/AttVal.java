@@ -97,9 +97,26 @@ public class AttVal implements Cloneable
     protected String attribute;
 
     /**
-     * Attribute value.
+     * Attribute value. Values read by the lexer are only created when first needed, see <code>valueBytes</code>. The
+     * field is volatile since a tree may be printed by several threads at once, which all create it the same way.
      */
-    protected String value;
+    protected volatile String value;
+
+    /**
+     * Array holding the UTF-8 encoded value as read by the lexer, or null if the value has been set since. Creating
+     * <code>value</code> doesn't clear it, so that reading the value never changes which of the two fields is used.
+     */
+    protected byte[] valueBytes;
+
+    /**
+     * Start position of the value in <code>valueBytes</code>.
+     */
+    protected int valueStart;
+
+    /**
+     * End position of the value in <code>valueBytes</code>.
+     */
+    protected int valueEnd;
 
     /**
      * DOM adapter.
@@ -152,6 +169,32 @@ public class AttVal implements Cloneable
         this.value = value;
     }
 
+    /**
+     * Sets all the fields of this attribute as a new attribute without a value, so that an attribute of a token which
+     * is no longer used can be reused by the lexer.
+     * @param next next linked AttVal
+     * @param delim delimitator for attribute value
+     * @param attribute attribute name
+     */
+    final void init(AttVal next, int delim, String attribute)
+    {
+        this.next = next;
+        this.dict = null;
+        this.asp = null;
+        this.php = null;
+        this.delim = delim;
+        this.attribute = attribute;
+        if (this.value != null)
+        {
+            // the value is volatile, don't pay for the write when it was never created
+            this.value = null;
+        }
+        this.valueBytes = null;
+        this.valueStart = 0;
+        this.valueEnd = 0;
+        this.adapter = null;
+    }
+
     /**
      * @see java.lang.Object#clone()
      */
@@ -205,7 +248,7 @@ public class AttVal implements Cloneable
      */
     void checkLowerCaseAttrValue(Lexer lexer, Node node)
     {
-        if (this.value == null)
+        if (getValue() == null)
         {
             return;
         }
@@ -221,7 +264,7 @@ public class AttVal implements Cloneable
 
             if (lexer.isvoyager || lexer.configuration.lowerLiterals)
             {
-                this.value = lowercase;
+                setValue(lowercase);
             }
         }
     }
@@ -404,7 +447,14 @@ public class AttVal implements Cloneable
      */
     public String getValue()
     {
-        return this.value;
+        String v = this.value;
+        byte[] bytes = this.valueBytes;
+        if (v == null && bytes != null)
+        {
+            v = TidyUtils.getString(bytes, this.valueStart, this.valueEnd - this.valueStart);
+            this.value = v;
+        }
+        return v;
     }
 
     /**
@@ -414,6 +464,22 @@ public class AttVal implements Cloneable
     public void setValue(String value)
     {
         this.value = value;
+        this.valueBytes = null;
+    }
+
+    /**
+     * Sets the value to a range of UTF-8 encoded bytes, which is only turned into a String by <code>getValue()</code>.
+     * The bytes must not be modified afterwards.
+     * @param bytes array holding the value
+     * @param start start position
+     * @param end end position, must be greater than <code>start</code>
+     */
+    public void setValue(byte[] bytes, int start, int end)
+    {
+        this.value = null;
+        this.valueBytes = bytes;
+        this.valueStart = start;
+        this.valueEnd = end;
     }
 
 }
\ No newline at end of file
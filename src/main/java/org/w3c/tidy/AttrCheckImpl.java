@@ -257,14 +257,14 @@ public final class AttrCheckImpl
             boolean backslashFound = false;
             int i = 0;
 
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
             }
 
-            String p = attval.value;
-            boolean isJavascript = attval.value.startsWith("javascript:");
+            String p = attval.getValue();
+            boolean isJavascript = attval.getValue().startsWith("javascript:");
 
             for (i = 0; i < p.length(); ++i)
             {
@@ -284,8 +284,8 @@ public final class AttrCheckImpl
             // backslashes found, fix them
             if (lexer.configuration.fixBackslash && backslashFound && !isJavascript)
             {
-                attval.value = attval.value.replace('\\', '/');
-                p = attval.value;
+                attval.setValue(attval.getValue().replace('\\', '/'));
+                p = attval.getValue();
             }
 
             // non-ascii chars found, fix them
@@ -307,7 +307,7 @@ public final class AttrCheckImpl
                     }
                 }
 
-                attval.value = dest.toString();
+                attval.setValue(dest.toString());
             }
             if (backslashFound)
             {
@@ -376,7 +376,7 @@ public final class AttrCheckImpl
                 return;
             }
 
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
@@ -384,7 +384,7 @@ public final class AttrCheckImpl
 
             attval.checkLowerCaseAttrValue(lexer, node);
 
-            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.value))
+            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.getValue()))
             {
                 lexer.report.attrError(lexer, node, attval, Report.BAD_ATTRIBUTE_VALUE);
             }
@@ -424,7 +424,7 @@ public final class AttrCheckImpl
         {
             String value;
 
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
@@ -432,7 +432,7 @@ public final class AttrCheckImpl
 
             attval.checkLowerCaseAttrValue(lexer, node);
 
-            value = attval.value;
+            value = attval.getValue();
 
             if (TidyUtils.isInValuesIgnoreCase(VALID_VALUES, value))
             {
@@ -471,7 +471,7 @@ public final class AttrCheckImpl
          */
         public void check(Lexer lexer, Node node, AttVal attval)
         {
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 return;
             }
@@ -493,7 +493,7 @@ public final class AttrCheckImpl
         public void check(Lexer lexer, Node node, AttVal attval)
         {
 
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
@@ -506,7 +506,7 @@ public final class AttrCheckImpl
                 return;
             }
 
-            String p = attval.value;
+            String p = attval.getValue();
 
             if (p.length() == 0 || (!Character.isDigit(p.charAt(0)) && '%' != p.charAt(0)))
             {
@@ -551,13 +551,13 @@ public final class AttrCheckImpl
             // No target attribute in strict HTML versions
             lexer.constrainVersion(~Dict.VERS_HTML40_STRICT);
 
-            if (attval.value == null || attval.value.length() == 0)
+            if (attval.getValue() == null || attval.getValue().length() == 0)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
             }
 
-            String value = attval.value;
+            String value = attval.getValue();
 
             // target names must begin with A-Za-z ...
             if (Character.isLetter(value.charAt(0)))
@@ -590,7 +590,7 @@ public final class AttrCheckImpl
          */
         public void check(Lexer lexer, Node node, AttVal attval)
         {
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
@@ -598,7 +598,7 @@ public final class AttrCheckImpl
 
             attval.checkLowerCaseAttrValue(lexer, node);
 
-            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.value))
+            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.getValue()))
             {
                 lexer.report.attrError(lexer, node, attval, Report.BAD_ATTRIBUTE_VALUE);
             }
@@ -621,16 +621,16 @@ public final class AttrCheckImpl
          */
         public void check(Lexer lexer, Node node, AttVal attval)
         {
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
-                attval.value = VALID_VALUES[0];
+                attval.setValue(VALID_VALUES[0]);
                 return;
             }
 
             attval.checkLowerCaseAttrValue(lexer, node);
 
-            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.value))
+            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.getValue()))
             {
                 lexer.report.attrError(lexer, node, attval, Report.BAD_ATTRIBUTE_VALUE);
             }
@@ -654,7 +654,7 @@ public final class AttrCheckImpl
          */
         public void check(Lexer lexer, Node node, AttVal attval)
         {
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
@@ -662,7 +662,7 @@ public final class AttrCheckImpl
 
             attval.checkLowerCaseAttrValue(lexer, node);
 
-            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.value))
+            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.getValue()))
             {
                 lexer.report.attrError(lexer, node, attval, Report.BAD_ATTRIBUTE_VALUE);
             }
@@ -687,7 +687,7 @@ public final class AttrCheckImpl
         public void check(Lexer lexer, Node node, AttVal attval)
         {
 
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
@@ -695,7 +695,7 @@ public final class AttrCheckImpl
 
             attval.checkLowerCaseAttrValue(lexer, node);
 
-            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.value))
+            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.getValue()))
             {
                 lexer.report.attrError(lexer, node, attval, Report.BAD_ATTRIBUTE_VALUE);
             }
@@ -714,7 +714,7 @@ public final class AttrCheckImpl
         public void check(Lexer lexer, Node node, AttVal attval)
         {
 
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
@@ -727,7 +727,7 @@ public final class AttrCheckImpl
                 return;
             }
 
-            String value = attval.value;
+            String value = attval.getValue();
 
             int j = 0;
 
@@ -762,13 +762,13 @@ public final class AttrCheckImpl
         {
             Node old;
 
-            if (attval.value == null || attval.value.length() == 0)
+            if (attval.getValue() == null || attval.getValue().length() == 0)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
             }
 
-            String p = attval.value;
+            String p = attval.getValue();
             char s = p.charAt(0);
 
             if (!Character.isLetter(p.charAt(0)))
@@ -804,13 +804,13 @@ public final class AttrCheckImpl
                 }
             }
 
-            if (((old = lexer.configuration.tt.getNodeByAnchor(attval.value)) != null) && old != node)
+            if (((old = lexer.configuration.tt.getNodeByAnchor(attval.getValue())) != null) && old != node)
             {
                 lexer.report.attrError(lexer, node, attval, Report.ANCHOR_NOT_UNIQUE);
             }
             else
             {
-                lexer.configuration.tt.anchorList = lexer.configuration.tt.addAnchor(attval.value, node);
+                lexer.configuration.tt.anchorList = lexer.configuration.tt.addAnchor(attval.getValue(), node);
             }
         }
 
@@ -829,7 +829,7 @@ public final class AttrCheckImpl
         {
             Node old;
 
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
             }
@@ -837,13 +837,13 @@ public final class AttrCheckImpl
             {
                 lexer.constrainVersion(~Dict.VERS_XHTML11);
 
-                if (((old = lexer.configuration.tt.getNodeByAnchor(attval.value)) != null) && old != node)
+                if (((old = lexer.configuration.tt.getNodeByAnchor(attval.getValue())) != null) && old != node)
                 {
                     lexer.report.attrError(lexer, node, attval, Report.ANCHOR_NOT_UNIQUE);
                 }
                 else
                 {
-                    lexer.configuration.tt.anchorList = lexer.configuration.tt.addAnchor(attval.value, node);
+                    lexer.configuration.tt.anchorList = lexer.configuration.tt.addAnchor(attval.getValue(), node);
                 }
             }
         }
@@ -889,13 +889,13 @@ public final class AttrCheckImpl
             boolean invalid = false;
             boolean found = false;
 
-            if (attval.value == null || attval.value.length() == 0)
+            if (attval.getValue() == null || attval.getValue().length() == 0)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
             }
 
-            String given = attval.value;
+            String given = attval.getValue();
 
             for (Object o : COLORS.entrySet())
             {
@@ -913,7 +913,7 @@ public final class AttrCheckImpl
                     {
                         if (lexer.configuration.replaceColor)
                         {
-                            attval.value = (String) color.getKey();
+                            attval.setValue((String) color.getKey());
                         }
                         found = true;
                         break;
@@ -925,7 +925,7 @@ public final class AttrCheckImpl
                     {
                         if (lexer.configuration.replaceColor)
                         {
-                            attval.value = (String) color.getKey();
+                            attval.setValue((String) color.getKey());
                         }
                         found = true;
                         break;
@@ -961,7 +961,7 @@ public final class AttrCheckImpl
                     {
                         for (int i = 1; i < 7; ++i)
                         {
-                            attval.value = given.toUpperCase();
+                            attval.setValue(given.toUpperCase());
                         }
                     }
                 }
@@ -993,7 +993,7 @@ public final class AttrCheckImpl
          */
         public void check(Lexer lexer, Node node, AttVal attval)
         {
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
@@ -1001,7 +1001,7 @@ public final class AttrCheckImpl
 
             attval.checkLowerCaseAttrValue(lexer, node);
 
-            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.value))
+            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.getValue()))
             {
                 lexer.report.attrError(lexer, node, attval, Report.BAD_ATTRIBUTE_VALUE);
             }
@@ -1025,7 +1025,7 @@ public final class AttrCheckImpl
         public void check(Lexer lexer, Node node, AttVal attval)
         {
 
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
@@ -1033,7 +1033,7 @@ public final class AttrCheckImpl
 
             attval.checkLowerCaseAttrValue(lexer, node);
 
-            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.value))
+            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.getValue()))
             {
                 lexer.report.attrError(lexer, node, attval, Report.BAD_ATTRIBUTE_VALUE);
             }
@@ -1057,7 +1057,7 @@ public final class AttrCheckImpl
         public void check(Lexer lexer, Node node, AttVal attval)
         {
 
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
                 return;
@@ -1065,7 +1065,7 @@ public final class AttrCheckImpl
 
             attval.checkLowerCaseAttrValue(lexer, node);
 
-            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.value))
+            if (!TidyUtils.isInValuesIgnoreCase(VALID_VALUES, attval.getValue()))
             {
                 lexer.report.attrError(lexer, node, attval, Report.BAD_ATTRIBUTE_VALUE);
             }
@@ -1089,7 +1089,7 @@ public final class AttrCheckImpl
                 lexer.constrainVersion(~Dict.VERS_XHTML11);
             }
 
-            if (attval.value == null)
+            if (attval.getValue() == null)
             {
                 lexer.report.attrError(lexer, node, attval, Report.MISSING_ATTR_VALUE);
             }
@@ -53,6 +53,9 @@
  */
 package org.w3c.tidy;
 
+import java.util.Stack;
+
+
 /**
  * Clean up misuse of presentation markup. Filters from other formats such as Microsoft Word often make excessive use of
  * presentation markup such as font tags, B, I, and the align attribute. By applying a set of production rules, it is
@@ -106,6 +109,11 @@ public class Clean
      */
     private TagTable tt;
 
+    /**
+     * number of nodes visited, for checkInterrupted().
+     */
+    private int visited;
+
     /**
      * Instantiates a new Clean.
      *
@@ -116,6 +124,19 @@ public class Clean
         this.tt = tagTable;
     }
 
+    /**
+     * Called for each node visited by the tree walks, checks every 256 nodes whether the thread has been interrupted.
+     *
+     * @throws java.util.concurrent.CancellationException if the thread has been interrupted
+     */
+    private void checkInterrupted()
+    {
+        if ((++this.visited & 0xFF) == 0)
+        {
+            TidyUtils.checkInterrupted(Thread.currentThread());
+        }
+    }
+
     /**
      * Insert a css style property.
      *
@@ -363,21 +384,21 @@ public class Clean
 
         if (styleattr != null)
         {
-            classname = findStyle(lexer, node.element, styleattr.value);
+            classname = findStyle(lexer, node.element, styleattr.getValue());
             classattr = node.getAttrByName("class");
 
             // if there already is a class attribute then append class name after a space
 
             if (classattr != null)
             {
-                classattr.value = classattr.value + " " + classname;
+                classattr.setValue(classattr.getValue() + " " + classname);
                 node.removeAttribute(styleattr);
             }
             else
             {
                 // reuse style attribute for class attribute
                 styleattr.attribute = "class";
-                styleattr.value = classname;
+                styleattr.setValue(classname);
             }
         }
     }
@@ -426,8 +447,8 @@ public class Clean
 
         if (attr != null)
         {
-            bgurl = attr.value;
-            attr.value = null;
+            bgurl = attr.getValue();
+            attr.setValue(null);
             body.removeAttribute(attr);
         }
 
@@ -435,8 +456,8 @@ public class Clean
 
         if (attr != null)
         {
-            bgcolor = attr.value;
-            attr.value = null;
+            bgcolor = attr.getValue();
+            attr.setValue(null);
             body.removeAttribute(attr);
         }
 
@@ -444,8 +465,8 @@ public class Clean
 
         if (attr != null)
         {
-            color = attr.value;
-            attr.value = null;
+            color = attr.getValue();
+            attr.setValue(null);
             body.removeAttribute(attr);
         }
 
@@ -481,7 +502,7 @@ public class Clean
 
         if (attr != null)
         {
-            addColorRule(lexer, " :link", attr.value);
+            addColorRule(lexer, " :link", attr.getValue());
             body.removeAttribute(attr);
         }
 
@@ -489,7 +510,7 @@ public class Clean
 
         if (attr != null)
         {
-            addColorRule(lexer, " :visited", attr.value);
+            addColorRule(lexer, " :visited", attr.getValue());
             body.removeAttribute(attr);
         }
 
@@ -497,7 +518,7 @@ public class Clean
 
         if (attr != null)
         {
-            addColorRule(lexer, " :active", attr.value);
+            addColorRule(lexer, " :active", attr.getValue());
             body.removeAttribute(attr);
         }
     }
@@ -739,8 +760,8 @@ public class Clean
         {
             String s;
 
-            s = addProperty(av.value, property);
-            av.value = s;
+            s = addProperty(av.getValue(), property);
+            av.setValue(s);
         }
         else
         {
@@ -786,7 +807,7 @@ public class Clean
         {
             if ("class".equals(av.attribute))
             {
-                s2 = av.value;
+                s2 = av.getValue();
                 break;
             }
         }
@@ -795,7 +816,7 @@ public class Clean
         {
             if ("class".equals(av.attribute))
             {
-                s1 = av.value;
+                s1 = av.getValue();
                 break;
             }
         }
@@ -805,7 +826,7 @@ public class Clean
             if (s2 != null) // merge class names from both
             {
                 names = s1 + ' ' + s2;
-                av.value = names;
+                av.setValue(names);
             }
         }
         else if (s2 != null) // copy class names from child
@@ -835,7 +856,7 @@ public class Clean
         {
             if (av.attribute.equals("style"))
             {
-                s2 = av.value;
+                s2 = av.getValue();
                 break;
             }
         }
@@ -844,7 +865,7 @@ public class Clean
         {
             if (av.attribute.equals("style"))
             {
-                s1 = av.value;
+                s1 = av.getValue();
                 break;
             }
         }
@@ -854,7 +875,7 @@ public class Clean
             if (s2 != null) // merge styles from both
             {
                 style = mergeProperties(s1, s2);
-                av.value = style;
+                av.setValue(style);
             }
         }
         else if (s2 != null) // copy style of child
@@ -1011,13 +1032,13 @@ public class Clean
             switch (av.attribute)
             {
                 case "face":
-                    addFontFace(node, av.value);
+                    addFontFace(node, av.getValue());
                     break;
                 case "size":
-                    addFontSize(node, av.value);
+                    addFontSize(node, av.getValue());
                     break;
                 case "color":
-                    addFontColor(node, av.value);
+                    addFontColor(node, av.getValue());
                     break;
                 default:
                     break;
@@ -1052,9 +1073,9 @@ public class Clean
                     node.attributes = av.next;
                 }
 
-                if (av.value != null)
+                if (av.getValue() != null)
                 {
-                    addAlign(node, av.value);
+                    addAlign(node, av.getValue());
                 }
 
                 break;
@@ -1074,7 +1095,7 @@ public class Clean
         if (null != attr)
         {
             node.removeAttribute(attr);
-            addStyleProperty(node, "background-color: " + attr.value);
+            addStyleProperty(node, "background-color: " + attr.getValue());
         }
     }
 
@@ -1637,6 +1658,7 @@ public class Clean
      */
     private Node createStyleProperties(Lexer lexer, Node node, Node[] prepl)
     {
+        checkInterrupted();
         Node child = node.content;
 
         if (child != null)
@@ -1670,6 +1692,8 @@ public class Clean
     {
         Node child;
 
+        checkInterrupted();
+
         if (node.content != null)
         {
             child = node.content;
@@ -1711,9 +1735,18 @@ public class Clean
     {
         Node[] o = new Node[1];
         Node next;
+        // the tree is walked without recursion: next siblings of the elements whose content is being walked
+        Stack<Node> pending = new Stack<>();
 
-        while (node != null)
+        while (node != null || !pending.isEmpty())
         {
+            if (node == null)
+            {
+                node = pending.pop();
+                continue;
+            }
+
+            checkInterrupted();
             next = node.next;
 
             if ((node.tag == this.tt.tagB || node.tag == this.tt.tagI)
@@ -1730,7 +1763,8 @@ public class Clean
 
             if (node.content != null)
             {
-                nestedEmphasis(node.content);
+                pending.push(next);
+                next = node.content;
             }
 
             node = next;
@@ -1744,8 +1778,18 @@ public class Clean
      */
     public void emFromI(Node node)
     {
-        while (node != null)
+        // the tree is walked without recursion: next siblings of the elements whose content is being walked
+        Stack<Node> pending = new Stack<>();
+
+        while (node != null || !pending.isEmpty())
         {
+            if (node == null)
+            {
+                node = pending.pop();
+                continue;
+            }
+
+            checkInterrupted();
             if (node.tag == this.tt.tagI)
             {
                 node.element = this.tt.tagEm.name;
@@ -1759,10 +1803,13 @@ public class Clean
 
             if (node.content != null)
             {
-                emFromI(node.content);
+                pending.push(node.next);
+                node = node.content;
+            }
+            else
+            {
+                node = node.next;
             }
-
-            node = node.next;
         }
     }
 
@@ -1774,22 +1821,38 @@ public class Clean
      */
     public void list2BQ(Node node)
     {
+        // the tree is walked without recursion: elements whose content is being walked
+        Stack<Node> parents = new Stack<>();
+
         while (node != null)
         {
+            checkInterrupted();
             if (node.content != null)
             {
-                list2BQ(node.content);
+                parents.push(node);
+                node = node.content;
+                continue;
             }
 
-            if (node.tag != null
-                && node.tag.getParser() == ParserImpl.LIST
-                && node.hasOneChild()
-                && node.content.implicit)
+            // the content of the node is done, and so is the content of each ancestor it is the last descendant of
+            while (true)
             {
-                stripOnlyChild(node);
-                node.element = this.tt.tagBlockquote.name;
-                node.tag = this.tt.tagBlockquote;
-                node.implicit = true;
+                if (node.tag != null
+                    && node.tag.getParser() == ParserImpl.LIST
+                    && node.hasOneChild()
+                    && node.content.implicit)
+                {
+                    stripOnlyChild(node);
+                    node.element = this.tt.tagBlockquote.name;
+                    node.tag = this.tt.tagBlockquote;
+                    node.implicit = true;
+                }
+
+                if (node.next != null || parents.isEmpty())
+                {
+                    break;
+                }
+                node = parents.pop();
             }
 
             node = node.next;
@@ -1807,9 +1870,18 @@ public class Clean
         int indent;
         String indentBuf;
         AttVal attval;
+        // the tree is walked without recursion: next siblings of the elements whose content is being walked
+        Stack<Node> pending = new Stack<>();
 
-        while (node != null)
+        while (node != null || !pending.isEmpty())
         {
+            if (node == null)
+            {
+                node = pending.pop();
+                continue;
+            }
+
+            checkInterrupted();
             if (node.tag == this.tt.tagBlockquote && node.implicit)
             {
                 indent = 1;
@@ -1820,11 +1892,6 @@ public class Clean
                     stripOnlyChild(node);
                 }
 
-                if (node.content != null)
-                {
-                    bQ2Div(node.content);
-                }
-
                 indentBuf = "margin-left: " + (new Integer(2 * indent)).toString() + "em";
 
                 node.element = this.tt.tagDiv.name;
@@ -1832,21 +1899,25 @@ public class Clean
 
                 attval = node.getAttrByName("style");
 
-                if (attval != null && attval.value != null)
+                if (attval != null && attval.getValue() != null)
                 {
-                    attval.value = indentBuf + "; " + attval.value;
+                    attval.setValue(indentBuf + "; " + attval.getValue());
                 }
                 else
                 {
                     node.addAttribute("style", indentBuf);
                 }
             }
-            else if (node.content != null)
+
+            if (node.content != null)
             {
-                bQ2Div(node.content);
+                pending.push(node.next);
+                node = node.content;
+            }
+            else
+            {
+                node = node.next;
             }
-
-            node = node.next;
         }
     }
 
@@ -1933,6 +2004,7 @@ public class Clean
     {
         while (node != null)
         {
+            checkInterrupted();
             if (node.type == Node.SECTION_TAG)
             {
                 // prune up to matching endif
@@ -1975,9 +2047,9 @@ public class Clean
 
             // special check for class="Code" denoting pre text
             // Pass thru user defined styles as HTML class names
-            if (attr.attribute != null && attr.value != null && attr.attribute.equals("class"))
+            if (attr.attribute != null && attr.getValue() != null && attr.attribute.equals("class"))
             {
-                if (attr.value.equals("Code") || !attr.value.startsWith("Mso"))
+                if (attr.getValue().equals("Code") || !attr.getValue().startsWith("Mso"))
                 {
                     prev = attr;
                     continue;
@@ -2115,19 +2187,19 @@ public class Clean
     {
         AttVal attval = node.getAttrByName("style");
 
-        if (attval == null || attval.value == null)
+        if (attval == null || attval.getValue() == null)
         {
             return false;
         }
 
         // search for substring "margin-top: 0"
-        if (!attval.value.contains("margin-top: 0"))
+        if (!attval.getValue().contains("margin-top: 0"))
         {
             return false;
         }
 
         // search for substring "margin-top: 0"
-        return attval.value.contains("margin-bottom: 0");
+        return attval.getValue().contains("margin-bottom: 0");
     }
 
     /**
@@ -2153,7 +2225,7 @@ public class Clean
                 return false;
             }
 
-            if (((node.end - node.start) == 1) && lexer.lexbuf[node.start] == ' ')
+            if (((node.end - node.start) == 1) && node.getTextArray(lexer)[node.start] == ' ')
             {
                 return true;
             }
@@ -2162,7 +2234,7 @@ public class Clean
             {
                 int[] c = new int[1];
 
-                PPrint.getUTF8(lexer.lexbuf, node.start, c);
+                PPrint.getUTF8(node.getTextArray(lexer), node.start, c);
 
                 return c[0] == 160;
             }
@@ -2186,6 +2258,7 @@ public class Clean
 
         while (node != null)
         {
+            checkInterrupted();
             // get rid of Word's xmlns attributes
             if (node.tag == tt.tagHtml)
             {
@@ -2252,7 +2325,7 @@ public class Clean
             {
                 AttVal attr = node.getAttrByName("rel");
 
-                if (attr != null && attr.value != null && attr.value.equals("File-List"))
+                if (attr != null && attr.getValue() != null && attr.getValue().equals("File-List"))
                 {
                     node = Node.discardElement(node);
                     continue;
@@ -2278,14 +2351,14 @@ public class Clean
                 // map sequence of <p class="MsoListBullet"> to <ul> ... </ul>
                 // map <p class="MsoListNumber"> to <ol>...</ol>
                 if (attr != null
-                    && attr.value != null
-                    && ((attr.value.equals("MsoListBullet") || attr.value.equals("MsoListNumber")) //
-                    || (atrStyle != null && (atrStyle.value.contains("mso-list:"))))) // 463066 - fix by Joel
+                    && attr.getValue() != null
+                    && ((attr.getValue().equals("MsoListBullet") || attr.getValue().equals("MsoListNumber")) //
+                    || (atrStyle != null && (atrStyle.getValue().contains("mso-list:"))))) // 463066 - fix by Joel
                 // Shafer 19 Sep 01
                 {
                     Dict listType = tt.tagUl;
 
-                    if (attr.value.equals("MsoListNumber"))
+                    if (attr.getValue().equals("MsoListNumber"))
                     {
                         listType = tt.tagOl;
                     }
@@ -2311,7 +2384,7 @@ public class Clean
                     node = list;
                 }
                 // map sequence of <p class="Code"> to <pre> ... </pre>
-                else if (attr != null && attr.value != null && attr.value.equals("Code"))
+                else if (attr != null && attr.getValue() != null && attr.getValue().equals("Code"))
                 {
                     Node br = lexer.newLineNode();
                     normalizeSpaces(lexer, node);
@@ -2386,20 +2459,20 @@ public class Clean
                 continue;
             }
             attval = node.getAttrByName("name");
-            if (attval == null || attval.value == null)
+            if (attval == null || attval.getValue() == null)
             {
                 continue;
             }
-            if (!"generator".equals(attval.value))
+            if (!"generator".equals(attval.getValue()))
             {
                 continue;
             }
             attval = node.getAttrByName("content");
-            if (attval == null || attval.value == null)
+            if (attval == null || attval.getValue() == null)
             {
                 continue;
             }
-            if (attval.value.contains("Microsoft"))
+            if (attval.getValue().contains("Microsoft"))
             {
                 return true;
             }
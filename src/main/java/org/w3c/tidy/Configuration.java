@@ -233,6 +233,12 @@ public class Configuration implements Serializable
         addConfigOption(new Flag("wrap", "wraplen", ParsePropertyImpl.INT));
         addConfigOption(new Flag("show-errors", "showErrors", ParsePropertyImpl.INT));
         addConfigOption(new Flag("tab-size", "tabsize", ParsePropertyImpl.INT));
+        addConfigOption(new Flag("parallel-print-threshold", "parallelPrintThreshold", ParsePropertyImpl.INT));
+        addConfigOption(new Flag("max-input-bytes", "maxInputBytes", ParsePropertyImpl.INT));
+        addConfigOption(new Flag("max-nodes", "maxNodes", ParsePropertyImpl.INT));
+        addConfigOption(new Flag("max-depth", "maxDepth", ParsePropertyImpl.INT));
+        addConfigOption(new Flag("max-attributes", "maxAttributes", ParsePropertyImpl.INT));
+        addConfigOption(new Flag("max-parse-time", "maxParseTime", ParsePropertyImpl.INT));
 
         addConfigOption(new Flag("wrap-attributes", "wrapAttVals", ParsePropertyImpl.BOOL));
         addConfigOption(new Flag("wrap-script-literals", "wrapScriptlets", ParsePropertyImpl.BOOL));
@@ -291,6 +297,10 @@ public class Configuration implements Serializable
         addConfigOption(new Flag("only-errors", "onlyErrors", ParsePropertyImpl.BOOL));
         addConfigOption(new Flag("output-raw", "rawOut", ParsePropertyImpl.BOOL));
         addConfigOption(new Flag("trim-empty-elements", "trimEmpty", ParsePropertyImpl.BOOL));
+        addConfigOption(new Flag("minify", "minify", ParsePropertyImpl.BOOL));
+        addConfigOption(new Flag("keep-comments", "keepComments", ParsePropertyImpl.BOOL));
+        addConfigOption(new Flag("parallel-print", "parallelPrint", ParsePropertyImpl.BOOL));
+        addConfigOption(new Flag("head-only", "headOnly", ParsePropertyImpl.BOOL));
 
         addConfigOption(new Flag("markup", "onlyErrors", ParsePropertyImpl.INVBOOL));
 
@@ -300,6 +310,7 @@ public class Configuration implements Serializable
 
         addConfigOption(new Flag("error-file", "errfile", ParsePropertyImpl.NAME));
         addConfigOption(new Flag("slide-style", "slidestyle", ParsePropertyImpl.NAME));
+        addConfigOption(new Flag("slides-dir", "slidesDir", ParsePropertyImpl.STRING));
         addConfigOption(new Flag("language", "language", ParsePropertyImpl.NAME));
 
         addConfigOption(new Flag("new-inline-tags", null, ParsePropertyImpl.TAGNAMES));
@@ -357,6 +368,11 @@ public class Configuration implements Serializable
     @Deprecated
     protected String slidestyle;
 
+    /**
+     * directory to write slides to, the working directory if not set.
+     */
+    protected String slidesDir;
+
     /**
      * RJ language property.
      */
@@ -488,6 +504,58 @@ public class Configuration implements Serializable
      */
     protected boolean trimEmpty = true;
 
+    /**
+     * write minified output: no line breaks between elements, no optional end tags, unquoted attribute values where
+     * allowed and no comments.
+     */
+    protected boolean minify;
+
+    /**
+     * keep comments in minified output.
+     */
+    protected boolean keepComments;
+
+    /**
+     * print large bodies on several threads.
+     */
+    protected boolean parallelPrint;
+
+    /**
+     * minimum number of nodes printed by each thread when printing in parallel.
+     */
+    protected int parallelPrintThreshold = 20000;
+
+    /**
+     * maximum number of bytes read from the input, 0 for no limit. Characters are counted instead when the input is a
+     * Reader or is decoded by a java Reader (encodings other than UTF-8 and ASCII).
+     */
+    protected int maxInputBytes;
+
+    /**
+     * maximum number of nodes created by the lexer, 0 for no limit.
+     */
+    protected int maxNodes;
+
+    /**
+     * maximum nesting depth of elements, 0 for no limit.
+     */
+    protected int maxDepth;
+
+    /**
+     * maximum number of attributes of an element, 0 for no limit.
+     */
+    protected int maxAttributes;
+
+    /**
+     * maximum parse time in milliseconds, 0 for no limit.
+     */
+    protected int maxParseTime;
+
+    /**
+     * stop parsing at the end of the head, and skip the rest of the input.
+     */
+    protected boolean headOnly;
+
     /**
      * o/p newline before br or not?
      */
@@ -822,6 +890,17 @@ public class Configuration implements Serializable
      */
     public void adjust()
     {
+        // minified output is never wrapped or indented
+        if (minify)
+        {
+            wraplen = 0;
+            indentContent = false;
+            smartIndent = false;
+            indentAttributes = false;
+            breakBeforeBR = false;
+            hideEndTags = true;
+        }
+
         if (encloseBlockText)
         {
             encloseBodyText = true;
@@ -127,7 +127,7 @@ public class DOMAttrImpl extends DOMNodeImpl implements org.w3c.dom.Attr, Clonea
      */
     public boolean getSpecified()
     {
-        return avAdaptee.value != null;
+        return avAdaptee.getValue() != null;
     }
 
     /**
@@ -136,7 +136,7 @@ public class DOMAttrImpl extends DOMNodeImpl implements org.w3c.dom.Attr, Clonea
     public String getValue()
     {
         // Thanks to Brett Knights brett@knightsofthenet.com for this fix.
-        return (avAdaptee.value == null) ? avAdaptee.attribute : avAdaptee.value;
+        return (avAdaptee.getValue() == null) ? avAdaptee.attribute : avAdaptee.getValue();
     }
 
     /**
@@ -144,7 +144,7 @@ public class DOMAttrImpl extends DOMNodeImpl implements org.w3c.dom.Attr, Clonea
      */
     public void setValue(String value)
     {
-        avAdaptee.value = value;
+        avAdaptee.setValue(value);
     }
 
     /**
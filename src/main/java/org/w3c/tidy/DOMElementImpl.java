@@ -114,7 +114,7 @@ public class DOMElementImpl extends DOMNodeImpl implements org.w3c.dom.Element
         }
         if (att != null)
         {
-            return att.value;
+            return att.getValue();
         }
 
         return "";
@@ -141,7 +141,7 @@ public class DOMElementImpl extends DOMNodeImpl implements org.w3c.dom.Element
         }
         if (att != null)
         {
-            att.value = value;
+            att.setValue(value);
         }
         else
         {
@@ -874,6 +874,50 @@ public final class EncodingUtils
 
     }
 
+    /**
+     * Checks a complete multi-byte UTF-8 sequence against the table of valid sequences, rejecting overlong forms,
+     * surrogates and the non-characters U+FFFE and U+FFFF.
+     * @param c code point encoded by the sequence
+     * @param seq array containing the sequence bytes
+     * @param start offset of the first byte of the sequence in <code>seq</code>
+     * @param bytes number of bytes in the sequence (2 to 4)
+     * @return <code>true</code> if the sequence is valid
+     */
+    static boolean isValidUTF8Sequence(int c, byte[] seq, int start, int bytes)
+    {
+        if (c == UTF8_BYTE_SWAP_NOT_A_CHAR || c == UTF8_NOT_A_CHAR)
+        {
+            return false;
+        }
+
+        if (c >= UTF16_LOW_SURROGATE_BEGIN && c <= UTF16_HIGH_SURROGATE_END)
+        {
+            // unpaired surrogates not allowed
+            return false;
+        }
+
+        for (int i = OFFSET_UTF8_SEQUENCES[bytes - 1]; i < OFFSET_UTF8_SEQUENCES[bytes]; i++)
+        {
+            ValidUTF8Sequence sequence = VALID_UTF8[i];
+            if (c < sequence.lowChar || c > sequence.highChar)
+            {
+                continue;
+            }
+
+            for (int j = 0; j < bytes; j++)
+            {
+                int b = seq[start + j] & 0xFF;
+                if (b < sequence.validBytes[j * 2] || b > sequence.validBytes[j * 2 + 1])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        return false;
+    }
+
     /**
      * Encode a char to an array of bytes.
      * @param c char to encode
@@ -886,12 +930,7 @@ public final class EncodingUtils
     {
         int bytes = 0;
 
-        byte[] buf = new byte[10];
-
-        if (encodebuf != null)
-        {
-            buf = encodebuf;
-        }
+        byte[] buf = (encodebuf != null) ? encodebuf : new byte[10];
 
         boolean hasError = false;
 
@@ -67,11 +67,6 @@ import java.util.Map;
 public final class EntityTable
 {
 
-    /**
-     * the default entity table.
-     */
-    private static EntityTable defaultEntityTable;
-
     /**
      * Known entities.
      */
@@ -330,11 +325,41 @@ public final class EntityTable
         new Entity("rsaquo", 8250),
         new Entity("euro", 8364)};
 
+    /**
+     * Trie state for the empty entity name.
+     */
+    public static final int TRIE_ROOT = 0;
+
     /**
      * Entity map.
      */
     private Map<String, Entity> entityMap = new HashMap<>();
 
+    /**
+     * Char leading to each trie state.
+     */
+    private char[] trieChar;
+
+    /**
+     * First child of each trie state, -1 for none.
+     */
+    private int[] trieChild;
+
+    /**
+     * Next sibling of each trie state, -1 for none.
+     */
+    private int[] trieSibling;
+
+    /**
+     * Entity code for the name leading to each trie state, 0 if it isn't a complete entity name.
+     */
+    private int[] trieCode;
+
+    /**
+     * Number of used trie states.
+     */
+    private int trieSize;
+
     /**
      * use getDefaultEntityTable to get an entity table instance.
      */
@@ -353,6 +378,135 @@ public final class EntityTable
         return this.entityMap.put(ent.getName(), ent);
     }
 
+    /**
+     * Builds the trie of entity names from the entity map.
+     */
+    private void buildTrie()
+    {
+        int capacity = 1;
+        for (String name : this.entityMap.keySet())
+        {
+            capacity += name.length();
+        }
+
+        this.trieChar = new char[capacity];
+        this.trieChild = new int[capacity];
+        this.trieSibling = new int[capacity];
+        this.trieCode = new int[capacity];
+        this.trieChild[TRIE_ROOT] = -1;
+        this.trieSibling[TRIE_ROOT] = -1;
+        this.trieSize = 1;
+
+        for (Entity ent : this.entityMap.values())
+        {
+            String name = ent.getName();
+            int state = TRIE_ROOT;
+            for (int i = 0; i < name.length(); i++)
+            {
+                int next = nextState(state, name.charAt(i));
+                if (next < 0)
+                {
+                    next = this.trieSize++;
+                    this.trieChar[next] = name.charAt(i);
+                    this.trieChild[next] = -1;
+                    this.trieSibling[next] = this.trieChild[state];
+                    this.trieChild[state] = next;
+                }
+                state = next;
+            }
+            this.trieCode[state] = ent.getCode();
+        }
+    }
+
+    /**
+     * Walks the trie of entity names by one char, so that names can be matched while they are read.
+     * @param state trie state for the name read so far, starting from TRIE_ROOT; may be -1
+     * @param c next char of the name
+     * @return trie state for the name including <code>c</code>, or -1 if no entity name starts this way
+     */
+    public int nextState(int state, int c)
+    {
+        if (state < 0)
+        {
+            return -1;
+        }
+
+        for (int child = this.trieChild[state]; child >= 0; child = this.trieSibling[child])
+        {
+            if (this.trieChar[child] == c)
+            {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the entity code for the name leading to the given trie state.
+     * @param state trie state, may be -1
+     * @return entity code or 0 for unknown entity names
+     */
+    public int stateCode(int state)
+    {
+        return (state < 0) ? 0 : this.trieCode[state];
+    }
+
+    /**
+     * Returns the code of a numeric character reference, like <code>entityCode</code> does for a name starting with
+     * "&amp;#".
+     * @param bytes array containing the reference without the leading "&amp;#", e.g. "160" or "xA0"
+     * @param start start position
+     * @param end end position
+     * @return entity code or 0 on missing/bad number
+     */
+    public int numericEntityCode(byte[] bytes, int start, int end)
+    {
+        int pos = start;
+        int radix = 10;
+        boolean negative = false;
+        long value = 0;
+
+        // 'x' prefix denotes hexadecimal number format
+        if (end - pos >= 2 && bytes[pos] == 'x')
+        {
+            radix = 16;
+            pos++;
+        }
+
+        // optional sign, as accepted by Integer.parseInt
+        if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+'))
+        {
+            negative = bytes[pos] == '-';
+            pos++;
+        }
+
+        if (pos >= end)
+        {
+            return 0;
+        }
+
+        for (; pos < end; pos++)
+        {
+            int digit = Character.digit((char) bytes[pos], radix);
+            if (digit < 0)
+            {
+                return 0;
+            }
+            value = value * radix + digit;
+            if (value > -(long) Integer.MIN_VALUE)
+            {
+                return 0;
+            }
+        }
+
+        if (negative)
+        {
+            value = -value;
+        }
+
+        return (value > Integer.MAX_VALUE) ? 0 : (int) value;
+    }
+
     /**
      * Lookup an entity by its name.
      * @param name entity name
@@ -440,15 +594,35 @@ public final class EntityTable
      */
     public static EntityTable getDefaultEntityTable()
     {
-        if (defaultEntityTable == null)
+        return DefaultTableHolder.TABLE;
+    }
+
+    /**
+     * Holds the default entity table, which is built when first used. The class initialization makes it safe to share
+     * the table between threads.
+     */
+    private static final class DefaultTableHolder
+    {
+
+        /**
+         * the default entity table.
+         */
+        static final EntityTable TABLE = createDefaultTable();
+
+        /**
+         * Creates the default entity table.
+         * @return entity table with the known entities
+         */
+        private static EntityTable createDefaultTable()
         {
-            defaultEntityTable = new EntityTable();
+            EntityTable table = new EntityTable();
             for (Entity entity : entities)
             {
-                defaultEntityTable.install(entity);
+                table.install(entity);
             }
+            table.buildTrie();
+            return table;
         }
-        return defaultEntityTable;
     }
 
 }
\ No newline at end of file
@@ -54,9 +54,7 @@
 package org.w3c.tidy;
 
 import java.io.PrintWriter;
-import java.util.List;
 import java.util.Stack;
-import java.util.Vector;
 
 
 /**
@@ -126,6 +124,21 @@ public class Lexer
      */
     private static final String XHTML_NAMESPACE = "http://www.w3.org/1999/xhtml";
 
+    /**
+     * attributes whose leading and trailing white space is kept.
+     */
+    private static final String[] WHITESPACE_SIGNIFICANT_ATTRIBUTES = {"alt", "title", "value", "prompt"};
+
+    /**
+     * size of a lexer buffer segment.
+     */
+    private static final int SEGMENT_SIZE = 8192;
+
+    /**
+     * a new segment is started before a token when less than this number of bytes are left in the current one.
+     */
+    private static final int SEGMENT_RESERVE = SEGMENT_SIZE / 4;
+
     /**
      * lists all the known versions.
      */
@@ -324,7 +337,9 @@ public class Lexer
 
     /**
      * Lexer character buffer parse tree nodes span onto this buffer which contains the concatenated text contents of
-     * all of the elements. Lexsize must be reset for each file. Byte buffer of UTF-8 chars.
+     * all of the elements. Lexsize must be reset for each file. Byte buffer of UTF-8 chars. When it runs low a new
+     * segment is started between tokens: nodes keep a reference to the segment holding their text in
+     * <code>Node.textarray</code>, so previous segments are never modified or reallocated.
      */
     protected byte[] lexbuf;
 
@@ -389,9 +404,118 @@ public class Lexer
     protected Node root;
 
     /**
-     * node list.
+     * input stream, if it is able to copy runs of plain text directly to the lexer buffer.
+     */
+    private StreamInBufferedImpl textRunIn;
+
+    /**
+     * scratch buffer for the UTF-8 encoding of a single char, reused by addCharToLexer.
+     */
+    private final byte[] charBytes = new byte[10];
+
+    /**
+     * scratch byte count for addCharToLexer.
+     */
+    private final int[] charByteCount = new int[1];
+
+    /**
+     * scratch "empty tag" flag passed by reference while parsing a tag.
+     */
+    private final boolean[] isemptyRef = new boolean[1];
+
+    /**
+     * scratch attribute delimiter passed by reference to parseValue.
+     */
+    private final int[] delimRef = new int[1];
+
+    /**
+     * scratch asp node passed by reference to parseAttribute.
+     */
+    private final Node[] aspRef = new Node[1];
+
+    /**
+     * scratch php node passed by reference to parseAttribute.
+     */
+    private final Node[] phpRef = new Node[1];
+
+    /**
+     * start of the value just read by scanValue in the lexer buffer.
+     */
+    private int valuestart;
+
+    /**
+     * current segment of the attribute value store. Attribute values are copied here by storeValue, where they are
+     * never modified, and only turned into Strings when needed.
+     */
+    private byte[] valuebuf;
+
+    /**
+     * used bytes in <code>valuebuf</code>.
+     */
+    private int valuesize;
+
+    /**
+     * has the parse been stopped, by a parse limit or at the end of the head in head-only mode? Once it is set,
+     * getToken() only returns null, as at the end of input, and no more input is read.
+     */
+    boolean stopped;
+
+    /**
+     * code of the parse limit which has been exceeded, 0 while the parse is within its limits.
+     */
+    short exceededLimit;
+
+    /**
+     * check and repair the attributes of start tags, and constrain the document version by them? The tokenizer turns
+     * this off, since it returns tags as they are.
+     */
+    boolean checkTags = true;
+
+    /**
+     * number of nodes created by newNode().
+     */
+    private int nodeCount;
+
+    /**
+     * max-nodes, or <code>Integer.MAX_VALUE</code> for no limit.
+     */
+    private int maxNodes;
+
+    /**
+     * max-attributes, or <code>Integer.MAX_VALUE</code> for no limit.
+     */
+    private int maxAttributes;
+
+    /**
+     * input accepted by acceptInput().
      */
-    private List<Node> nodeList;
+    private long inputSize;
+
+    /**
+     * has the input been cut at max-input-bytes?
+     */
+    private boolean inputCut;
+
+    /**
+     * is the parse time limited?
+     */
+    private boolean timed;
+
+    /**
+     * <code>System.nanoTime()</code> at which the parse time is over.
+     */
+    private long deadline;
+
+    /**
+     * Tokens given back by recycle(), linked by <code>next</code>. Only the tokenizer gives tokens back: the parser
+     * keeps them in the tree.
+     */
+    private Node spareNodes;
+
+    /**
+     * Attributes of recycled tokens, linked by <code>next</code>.
+     */
+    private AttVal spareAttributes;
 
     /**
      * Instantiates a new Lexer.
@@ -411,22 +535,30 @@ public class Lexer
         this.insert = -1;
         this.istack = new Stack<>();
         this.configuration = configuration;
-        this.nodeList = new Vector<>();
+        if (in instanceof StreamInBufferedImpl)
+        {
+            this.textRunIn = (StreamInBufferedImpl) in;
+        }
+        this.maxNodes = configuration.maxNodes > 0 ? configuration.maxNodes : Integer.MAX_VALUE;
+        this.maxAttributes = configuration.maxAttributes > 0 ? configuration.maxAttributes : Integer.MAX_VALUE;
+        if (configuration.maxParseTime > 0)
+        {
+            this.timed = true;
+            this.deadline = System.nanoTime() + configuration.maxParseTime * 1000000L;
+        }
     }
 
     /**
-     * Creates a new node and add it to nodelist.
+     * Creates a new node.
      * @return Node
      */
     public Node newNode()
     {
-        Node node = new Node();
-        this.nodeList.add(node);
-        return node;
+        return obtainNode(Node.TEXT_NODE, null, 0, 0);
     }
 
     /**
-     * Creates a new node and add it to nodelist.
+     * Creates a new node.
      * @param type node type: Node.ROOT_NODE | Node.DOCTYPE_TAG | Node.COMMENT_TAG | Node.PROC_INS_TAG | Node.TEXT_NODE |
      * Node.START_TAG | Node.END_TAG | Node.START_END_TAG | Node.CDATA_TAG | Node.SECTION_TAG | Node. ASP_TAG |
      * Node.JSTE_TAG | Node.PHP_TAG | Node.XML_DECL
@@ -437,13 +569,11 @@ public class Lexer
      */
     public Node newNode(short type, byte[] textarray, int start, int end)
     {
-        Node node = new Node(type, textarray, start, end);
-        this.nodeList.add(node);
-        return node;
+        return obtainNode(type, textarray, start, end);
     }
 
     /**
-     * Creates a new node and add it to nodelist.
+     * Creates a new node.
      * @param type node type: Node.ROOT_NODE | Node.DOCTYPE_TAG | Node.COMMENT_TAG | Node.PROC_INS_TAG | Node.TEXT_NODE |
      * Node.START_TAG | Node.END_TAG | Node.START_END_TAG | Node.CDATA_TAG | Node.SECTION_TAG | Node. ASP_TAG |
      * Node.JSTE_TAG | Node.PHP_TAG | Node.XML_DECL
@@ -455,72 +585,193 @@ public class Lexer
      */
     public Node newNode(short type, byte[] textarray, int start, int end, String element)
     {
-        Node node = new Node(type, textarray, start, end, element, this.configuration.tt);
-        this.nodeList.add(node);
+        if (this.spareNodes == null)
+        {
+            countNode();
+            return new Node(type, textarray, start, end, element, this.configuration.tt);
+        }
+        Node node = obtainNode(type, textarray, start, end);
+        node.element = element;
+        if (type == Node.START_TAG || type == Node.START_END_TAG || type == Node.END_TAG)
+        {
+            this.configuration.tt.findTag(node);
+        }
         return node;
     }
 
     /**
-     * Clones a node and add it to node list.
-     * @param node Node
-     * @return cloned Node
+     * Creates a new node, reusing a recycled token if there is one.
+     * @param type node type
+     * @param textarray array of bytes contained in the Node
+     * @param start start position
+     * @param end end position
+     * @return Node
      */
-    public Node cloneNode(Node node)
+    private Node obtainNode(short type, byte[] textarray, int start, int end)
     {
-        Node cnode = node.cloneNode(false);
-        this.nodeList.add(cnode);
-        for (AttVal att = cnode.attributes; att != null; att = att.next)
+        countNode();
+        Node node = this.spareNodes;
+        if (node == null)
         {
-            if (att.asp != null)
-            {
-                this.nodeList.add(att.asp);
-            }
-            if (att.php != null)
-            {
-                this.nodeList.add(att.php);
-            }
+            return new Node(type, textarray, start, end);
         }
-        return cnode;
+        this.spareNodes = node.next;
+        node.init(type, textarray, start, end);
+        return node;
     }
 
     /**
-     * Clones an attribute value and add eventual asp or php node to node list.
-     * @param attrs original AttVal
-     * @return cloned AttVal
+     * Creates a new attribute without a value, reusing an attribute of a recycled token if there is one.
+     * @param next next linked AttVal
+     * @param delim delimitator for attribute value
+     * @param attribute attribute name
+     * @return AttVal
      */
-    public AttVal cloneAttributes(AttVal attrs)
+    private AttVal obtainAttribute(AttVal next, int delim, String attribute)
     {
-        AttVal cattrs = (AttVal) attrs.clone();
-        for (AttVal att = cattrs; att != null; att = att.next)
+        AttVal av = this.spareAttributes;
+        if (av == null)
         {
-            if (att.asp != null)
-            {
-                this.nodeList.add(att.asp);
-            }
-            if (att.php != null)
+            return new AttVal(next, null, null, null, delim, attribute, null);
+        }
+        this.spareAttributes = av.next;
+        av.init(next, delim, attribute);
+        return av;
+    }
+
+    /**
+     * Gives back a token which is no longer referenced anywhere, so that the node and its attributes are reused for
+     * the following tokens. Used by the tokenizer, which never hands its tokens to the parser.
+     * @param node token returned by getToken() or getCDATA(), and not pushed back
+     */
+    void recycle(Node node)
+    {
+        AttVal av = node.attributes;
+        while (av != null)
+        {
+            AttVal next = av.next;
+            av.init(this.spareAttributes, 0, null);
+            this.spareAttributes = av;
+            av = next;
+        }
+        node.init(Node.TEXT_NODE, null, 0, 0);
+        node.next = this.spareNodes;
+        this.spareNodes = node;
+    }
+
+    /**
+     * Counts a new node against max-nodes. Every 1024 nodes it also checks the parse time and whether the thread has
+     * been interrupted. The node is still created when a limit is exceeded; the parse stops at the next token.
+     * @throws java.util.concurrent.CancellationException if the thread has been interrupted
+     */
+    private void countNode()
+    {
+        if (++this.nodeCount > this.maxNodes)
+        {
+            stopParse(null, Report.NODE_LIMIT_EXCEEDED);
+        }
+        else if ((this.nodeCount & 0x3FF) == 0)
+        {
+            TidyUtils.checkInterrupted(Thread.currentThread());
+            if (this.timed)
             {
-                this.nodeList.add(att.php);
+                checkParseTime();
             }
         }
-        return cattrs;
     }
 
     /**
-     * Update <code>oldtextarray</code> in the current nodes.
-     * @param oldtextarray previous text array
-     * @param newtextarray new text array
+     * Stops the parse if it has taken longer than max-parse-time.
+     * @return <code>true</code> if the parse time is over
      */
-    protected void updateNodeTextArrays(byte[] oldtextarray, byte[] newtextarray)
+    private boolean checkParseTime()
     {
-        Node node;
-        for (Object aNodeList : this.nodeList)
+        if (System.nanoTime() - this.deadline > 0)
         {
-            node = (Node) aNodeList;
-            if (node.textarray == oldtextarray)
+            stopParse(null, Report.PARSE_TIME_EXCEEDED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called by StreamIn implementations after each read from the input, before the block is decoded: accounts for the
+     * block against max-input-bytes and checks the parse time. Returns how much of the block may be used; -1 means
+     * that the parse has been stopped and the stream must behave as if at its end.
+     * @param count number of bytes (or chars, for Reader input) read, -1 at end of stream
+     * @return number of bytes (or chars) which may be used, -1 for end of stream
+     * @throws java.util.concurrent.CancellationException if the thread has been interrupted
+     */
+    int acceptInput(int count)
+    {
+        TidyUtils.checkInterrupted(Thread.currentThread());
+
+        if (this.stopped || (this.timed && checkParseTime()))
+        {
+            return -1;
+        }
+
+        if (this.inputCut)
+        {
+            // more input is needed than allowed
+            stopParse(null, Report.INPUT_LIMIT_EXCEEDED);
+            return -1;
+        }
+
+        int max = this.configuration.maxInputBytes;
+        if (max > 0 && count > max - this.inputSize)
+        {
+            // keep the input up to the limit, the parse stops when more is needed
+            count = (int) (max - this.inputSize);
+            this.inputCut = true;
+            if (count == 0)
             {
-                node.textarray = newtextarray;
+                stopParse(null, Report.INPUT_LIMIT_EXCEEDED);
+                return -1;
             }
         }
+
+        if (count > 0)
+        {
+            this.inputSize += count;
+        }
+        return count;
+    }
+
+    /**
+     * Stops the parse because one of its limits has been exceeded. The error is reported and getToken() only returns
+     * null from now on, so the parser closes the open elements and returns the tree built so far.
+     * @param node current tag, for ATTRIBUTE_LIMIT_EXCEEDED
+     * @param code error code, one of the Report.*_LIMIT_EXCEEDED codes or Report.PARSE_TIME_EXCEEDED
+     */
+    void stopParse(Node node, short code)
+    {
+        if (!this.stopped)
+        {
+            this.stopped = true;
+            this.exceededLimit = code;
+            this.report.limitExceeded(this, node, code);
+        }
+    }
+
+    /**
+     * Clones a node.
+     * @param node Node
+     * @return cloned Node
+     */
+    public Node cloneNode(Node node)
+    {
+        return node.cloneNode(false);
+    }
+
+    /**
+     * Clones an attribute value.
+     * @param attrs original AttVal
+     * @return cloned AttVal
+     */
+    public AttVal cloneAttributes(AttVal attrs)
+    {
+        return (AttVal) attrs.clone();
     }
 
     /**
@@ -531,10 +782,10 @@ public class Lexer
     {
         Node node = newNode();
 
-        node.textarray = this.lexbuf;
         node.start = this.lexsize;
         addCharToLexer('\n');
         node.end = this.lexsize;
+        node.textarray = this.lexbuf;
         return node;
     }
 
@@ -555,31 +806,113 @@ public class Lexer
     {
         if (this.lexsize + 1 >= this.lexlength)
         {
-            while (this.lexsize + 1 >= this.lexlength)
+            growLexbuf(this.lexsize + 1);
+        }
+
+        this.lexbuf[this.lexsize++] = (byte) c;
+        this.lexbuf[this.lexsize] = (byte) '\0'; // debug
+    }
+
+    /**
+     * Adds a range of bytes, which must already be UTF-8 encoded, to lexer buffer.
+     * @param bytes array containing the bytes to add
+     * @param offset offset of the first byte to add
+     * @param length number of bytes to add
+     */
+    public void addBytes(byte[] bytes, int offset, int length)
+    {
+        if (this.lexsize + length >= this.lexlength)
+        {
+            growLexbuf(this.lexsize + length);
+        }
+
+        System.arraycopy(bytes, offset, this.lexbuf, this.lexsize, length);
+        this.lexsize += length;
+        this.lexbuf[this.lexsize] = (byte) '\0'; // debug
+    }
+
+    /**
+     * Adds a range of chars to lexer buffer, encoded as UTF-8. Unlike addCharToLexer() no check is done: the chars must
+     * not be surrogates or the FFFE/FFFF non characters.
+     * @param chars array containing the chars to add
+     * @param start position of the first char to add
+     * @param end position after the last char to add
+     */
+    public void addChars(char[] chars, int start, int end)
+    {
+        int size = this.lexsize + (end - start) * 3;
+        if (size >= this.lexlength)
+        {
+            growLexbuf(size);
+        }
+
+        byte[] buf = this.lexbuf;
+        size = this.lexsize;
+        for (int i = start; i < end; i++)
+        {
+            char c = chars[i];
+            if (c < 0x80)
             {
-                if (this.lexlength == 0)
-                {
-                    this.lexlength = 8192;
-                }
-                else
-                {
-                    this.lexlength = this.lexlength * 2;
-                }
+                buf[size++] = (byte) c;
             }
-
-            byte[] temp = this.lexbuf;
-            this.lexbuf = new byte[this.lexlength];
-            if (temp != null)
+            else if (c < 0x800)
             {
-                System.arraycopy(temp, 0, this.lexbuf, 0, temp.length);
-                updateNodeTextArrays(temp, this.lexbuf);
+                buf[size++] = (byte) (0xC0 | (c >> 6));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else
+            {
+                buf[size++] = (byte) (0xE0 | (c >> 12));
+                buf[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
             }
         }
 
-        this.lexbuf[this.lexsize++] = (byte) c;
+        this.lexsize = size;
         this.lexbuf[this.lexsize] = (byte) '\0'; // debug
     }
 
+    /**
+     * Grows lexer buffer so that it can hold more than <code>size</code> bytes. Only the current segment is copied:
+     * nodes created before keep referencing the previous array, whose content doesn't change anymore.
+     * @param size needed size
+     */
+    private void growLexbuf(int size)
+    {
+        while (size >= this.lexlength)
+        {
+            if (this.lexlength == 0)
+            {
+                this.lexlength = SEGMENT_SIZE;
+            }
+            else
+            {
+                this.lexlength = this.lexlength * 2;
+            }
+        }
+
+        byte[] temp = this.lexbuf;
+        this.lexbuf = new byte[this.lexlength];
+        if (temp != null)
+        {
+            System.arraycopy(temp, 0, this.lexbuf, 0, this.lexsize);
+        }
+    }
+
+    /**
+     * Starts a new lexer buffer segment if the current one is running out of space. Must only be called between
+     * tokens, when no position in the current segment is in use apart from the ones already stored in nodes.
+     */
+    private void startSegmentIfNeeded()
+    {
+        if (this.lexbuf != null && this.lexsize + SEGMENT_RESERVE >= this.lexlength)
+        {
+            this.lexlength = SEGMENT_SIZE;
+            this.lexbuf = new byte[this.lexlength];
+            this.lexsize = 0;
+        }
+    }
+
     /**
      * Substitute the last char in buffer.
      * @param c new char
@@ -612,9 +945,14 @@ public class Lexer
             return;
         }
 
-        int i = 0;
-        int[] count = new int[]{0};
-        byte[] buf = new byte[10]; // unsigned char
+        if (c < 0x80)
+        {
+            addByte(c);
+            return;
+        }
+
+        byte[] buf = this.charBytes; // unsigned char
+        int[] count = this.charByteCount;
 
         boolean err = EncodingUtils.encodeCharToUTF8Bytes(c, buf, null, count);
         if (err)
@@ -626,10 +964,7 @@ public class Lexer
             count[0] = 3;
         }
 
-        for (i = 0; i < count[0]; i++)
-        {
-            addByte(buf[i]); // uint
-        }
+        addBytes(buf, 0, count[0]);
 
     }
 
@@ -680,8 +1015,11 @@ public class Lexer
         int start;
         boolean first = true;
         boolean semicolon = false;
+        boolean numeric = false;
         int c, ch, startcol;
         String str;
+        EntityTable entities = EntityTable.getDefaultEntityTable();
+        int state = EntityTable.TRIE_ROOT; // entity name matched so far, walked while reading it
 
         start = this.lexsize - 1; // to start at "&"
         startcol = this.in.getCurcol() - 1;
@@ -708,6 +1046,7 @@ public class Lexer
 
                 addCharToLexer(c);
                 first = false;
+                numeric = true;
                 continue;
             }
 
@@ -716,6 +1055,10 @@ public class Lexer
             if (TidyUtils.isNamechar((char) c))
             {
                 addCharToLexer(c);
+                if (!numeric)
+                {
+                    state = entities.nextState(state, c);
+                }
                 continue;
             }
 
@@ -724,14 +1067,20 @@ public class Lexer
             break;
         }
 
-        str = TidyUtils.getString(this.lexbuf, start, this.lexsize - start);
-
-        if ("&apos".equals(str) && !configuration.xmlOut && !this.isvoyager && !configuration.xHTML)
+        if (numeric)
         {
-            report.entityError(this, Report.APOS_UNDEFINED, str, 39);
+            ch = entities.numericEntityCode(this.lexbuf, start + 2, this.lexsize);
         }
+        else
+        {
+            ch = entities.stateCode(state);
 
-        ch = EntityTable.getDefaultEntityTable().entityCode(str);
+            if (ch == 39 && !configuration.xmlOut && !this.isvoyager && !configuration.xHTML)
+            {
+                // "&apos"
+                report.entityError(this, Report.APOS_UNDEFINED, "&apos", 39);
+            }
+        }
 
         // drops invalid numeric entities from XML mode. Fix by Pablo Mayrgundter 17-08-2004
         // if ((this.configuration.xmlOut || this.configuration.xHTML) // only for xml output
@@ -751,6 +1100,7 @@ public class Lexer
             // set error position just before offending character
             this.lines = this.in.getCurline();
             this.columns = startcol;
+            str = TidyUtils.getString(this.lexbuf, start, this.lexsize - start);
 
             if (this.lexsize > start + 1)
             {
@@ -818,6 +1168,7 @@ public class Lexer
                 // set error position just before offending character
                 this.lines = this.in.getCurline();
                 this.columns = startcol;
+                str = TidyUtils.getString(this.lexbuf, start, this.lexsize - start);
                 report.entityError(this, Report.MISSING_SEMICOLON, str, c);
             }
 
@@ -877,6 +1228,28 @@ public class Lexer
         return (char) c;
     }
 
+    /**
+     * Creates a token for the tag name just read by parseTagName. Known tags are resolved straight from the lexer
+     * buffer, so that neither a String nor a lookup by name is needed. User defined and unknown tags are looked up by
+     * name. XML tags share the name of a known tag but don't use its definition.
+     * @param type node type: Node.START_TAG | Node.END_TAG
+     * @return new Node
+     */
+    private Node newTagNode(short type)
+    {
+        Dict dict = this.configuration.tt.lookup(this.lexbuf, this.txtstart, this.txtend);
+        if (dict != null && !this.configuration.xmlTags)
+        {
+            Node node = obtainNode(type, this.lexbuf, this.txtstart, this.txtend);
+            node.element = dict.name;
+            node.tag = dict;
+            return node;
+        }
+        return newNode(type, this.lexbuf, this.txtstart, this.txtend, dict != null
+            ? dict.name
+            : TidyUtils.getString(this.lexbuf, this.txtstart, this.txtend - this.txtstart));
+    }
+
     /**
      * calls addCharToLexer for any char in the string.
      * @param str input String
@@ -994,16 +1367,16 @@ public class Lexer
                 {
                     attval = node.getAttrByName("name");
 
-                    if (attval != null && "generator".equalsIgnoreCase(attval.value))
+                    if (attval != null && "generator".equalsIgnoreCase(attval.getValue()))
                     {
                         attval = node.getAttrByName("content");
 
                         if (attval != null
-                            && attval.value != null
-                            && attval.value.length() >= 9
-                            && "HTML Tidy".equalsIgnoreCase(attval.value.substring(0, 9)))
+                            && attval.getValue() != null
+                            && attval.getValue().length() >= 9
+                            && "HTML Tidy".equalsIgnoreCase(attval.getValue().substring(0, 9)))
                         {
-                            attval.value = meta;
+                            attval.setValue(meta);
                             return false;
                         }
                     }
@@ -1028,7 +1401,7 @@ public class Lexer
     public boolean checkDocTypeKeyWords(Node doctype)
     {
         int len = doctype.end - doctype.start;
-        String s = TidyUtils.getString(this.lexbuf, doctype.start, len);
+        String s = TidyUtils.getString(doctype.textarray, doctype.start, len);
 
         return !(TidyUtils.findBadSubString("SYSTEM", s, s.length())
             || TidyUtils.findBadSubString("PUBLIC", s, s.length())
@@ -1051,7 +1424,7 @@ public class Lexer
         String str2;
 
         // if root tag for doctype isn't html give up now
-        str1 = TidyUtils.getString(this.lexbuf, doctype.start, 5);
+        str1 = TidyUtils.getString(doctype.textarray, doctype.start, 5);
         if (!"html ".equalsIgnoreCase(str1))
         {
             return 0;
@@ -1063,13 +1436,13 @@ public class Lexer
         }
 
         // give up if all we are given is the system id for the doctype
-        str1 = TidyUtils.getString(this.lexbuf, doctype.start + 5, 7);
+        str1 = TidyUtils.getString(doctype.textarray, doctype.start + 5, 7);
         if ("SYSTEM ".equalsIgnoreCase(str1))
         {
             // but at least ensure the case is correct
             if (!str1.substring(0, 6).equals("SYSTEM"))
             {
-                System.arraycopy(TidyUtils.getBytes("SYSTEM"), 0, this.lexbuf, doctype.start + 5, 6);
+                System.arraycopy(TidyUtils.getBytes("SYSTEM"), 0, doctype.textarray, doctype.start + 5, 6);
             }
             return 0; // unrecognized
         }
@@ -1078,7 +1451,7 @@ public class Lexer
         {
             if (!str1.substring(0, 6).equals("PUBLIC"))
             {
-                System.arraycopy(TidyUtils.getBytes("PUBLIC "), 0, this.lexbuf, doctype.start + 5, 6);
+                System.arraycopy(TidyUtils.getBytes("PUBLIC "), 0, doctype.textarray, doctype.start + 5, 6);
             }
         }
         else
@@ -1088,19 +1461,19 @@ public class Lexer
 
         for (i = doctype.start; i < doctype.end; ++i)
         {
-            if (this.lexbuf[i] == (byte) '"')
+            if (doctype.textarray[i] == (byte) '"')
             {
-                str1 = TidyUtils.getString(this.lexbuf, i + 1, 12);
-                str2 = TidyUtils.getString(this.lexbuf, i + 1, 13);
+                str1 = TidyUtils.getString(doctype.textarray, i + 1, 12);
+                str2 = TidyUtils.getString(doctype.textarray, i + 1, 13);
                 if (str1.equals("-//W3C//DTD "))
                 {
                     // compute length of identifier e.g. "HTML 4.0 Transitional"
-                    for (j = i + 13; j < doctype.end && this.lexbuf[j] != (byte) '/'; ++j)
+                    for (j = i + 13; j < doctype.end && doctype.textarray[j] != (byte) '/'; ++j)
                     {
                         //
                     }
                     len = j - i - 13;
-                    p = TidyUtils.getString(this.lexbuf, i + 13, len);
+                    p = TidyUtils.getString(doctype.textarray, i + 13, len);
 
                     for (j = 1; j < W3CVERSION.length; ++j)
                     {
@@ -1116,13 +1489,13 @@ public class Lexer
                 else if (str2.equals("-//IETF//DTD "))
                 {
                     // compute length of identifier e.g. "HTML 2.0"
-                    for (j = i + 14; j < doctype.end && this.lexbuf[j] != (byte) '/'; ++j)
+                    for (j = i + 14; j < doctype.end && doctype.textarray[j] != (byte) '/'; ++j)
                     {
                         //
                     }
                     len = j - i - 14;
 
-                    p = TidyUtils.getString(this.lexbuf, i + 14, len);
+                    p = TidyUtils.getString(doctype.textarray, i + 14, len);
                     s = W3CVERSION[0].name;
                     if (len == s.length() && s.equals(p))
                     {
@@ -1168,10 +1541,10 @@ public class Lexer
 
             if (attr != null)
             {
-                if (!attr.value.equals(profile))
+                if (!attr.getValue().equals(profile))
                 {
                     report.warning(this, node, null, Report.INCONSISTENT_NAMESPACE);
-                    attr.value = profile;
+                    attr.setValue(profile);
                 }
             }
             else
@@ -1312,7 +1685,7 @@ public class Lexer
             {
 
                 int len = doctype.end - doctype.start + 1;
-                String start = TidyUtils.getString(this.lexbuf, doctype.start, len);
+                String start = TidyUtils.getString(doctype.textarray, doctype.start, len);
 
                 int dtdbeg = start.indexOf('[');
                 if (dtdbeg >= 0)
@@ -1757,6 +2130,7 @@ public class Lexer
         this.lines = this.in.getCurline();
         this.columns = this.in.getCurcol();
         this.waswhite = false;
+        startSegmentIfNeeded();
         this.txtstart = this.lexsize;
         this.txtend = this.lexsize;
 
@@ -1770,6 +2144,16 @@ public class Lexer
                     if (isEmpty && !TidyUtils.isWhite((char) c)) {
                         isEmpty = false;
                     }
+                    /* jump to the next '<', copying the content before it in one go */
+                    if (textRunIn != null) {
+                        int runstart = lexsize;
+                        if (textRunIn.copyCDATARun(this) > 0) {
+                            if (isEmpty) {
+                                isEmpty = isSpaces(lexbuf, runstart, lexsize);
+                            }
+                            txtend = lexsize;
+                        }
+                    }
                     continue;
                 }
             	c = in.readChar();
@@ -1820,8 +2204,7 @@ public class Lexer
             	if (TidyUtils.isLetter((char) c)) {
                      continue;
             	}
-            	matches = container.element.equalsIgnoreCase(TidyUtils.getString(lexbuf, start,
-            			container.element.length()));
+            	matches = matchesElementName(container.element, start);
             	if (matches) {
             		nested++;
             	}
@@ -1831,8 +2214,7 @@ public class Lexer
             	if (TidyUtils.isLetter((char) c)) {
                     continue;
             	}
-            	matches = container.element.equalsIgnoreCase(TidyUtils.getString(lexbuf, start,
-            			container.element.length()));
+            	matches = matchesElementName(container.element, start);
                 if (isEmpty && !matches) {
                     /* ReportError(doc, container, NULL, MISSING_ENDTAG_FOR); */
 
@@ -1888,6 +2270,55 @@ public class Lexer
 //	    #endif
     }
 
+    /**
+     * Checks whether the lexer buffer at <code>start</code> holds the given element name, ignoring case. Only the
+     * length of the name is compared, so that <code>&lt;/scripts</code> still ends a script.
+     * @param element element name
+     * @param start start of the tag name in the lexer buffer
+     * @return <code>true</code> if the name matches
+     */
+    private boolean matchesElementName(String element, int start)
+    {
+        int length = element.length();
+        if (length == 0 || start + length > this.lexbuf.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            int c = element.charAt(i);
+            if (c >= 0x80)
+            {
+                return element.equalsIgnoreCase(TidyUtils.getString(this.lexbuf, start, length));
+            }
+            int b = this.lexbuf[start + i];
+            if (TidyUtils.toLower((char) b) != TidyUtils.toLower((char) c))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Does the given part of a buffer contain only spaces?
+     * @param buf buffer
+     * @param start start offset
+     * @param end end offset, exclusive
+     * @return <code>true</code> if all bytes are spaces
+     */
+    private static boolean isSpaces(byte[] buf, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+        {
+            if (buf[i] != ' ')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      *
      *
@@ -1912,10 +2343,16 @@ public class Lexer
         int c = 0;
         int badcomment = 0;
         // pass by reference
-        boolean[] isempty = new boolean[1];
+        boolean[] isempty = this.isemptyRef;
         boolean inDTDSubset = false;
         AttVal attributes = null;
 
+        if (this.stopped)
+        {
+            // parsing has been stopped
+            return null;
+        }
+
         if (this.pushed)
         {
             // duplicate inlines in preference to pushed text nodes when appropriate
@@ -1936,6 +2373,7 @@ public class Lexer
         this.columns = this.in.getCurcol();
         this.waswhite = false;
 
+        startSegmentIfNeeded();
         this.txtstart = this.lexsize;
         this.txtend = this.lexsize;
 
@@ -2028,6 +2466,12 @@ public class Lexer
                     }
 
                     this.waswhite = false;
+
+                    // plain text following this char needs no further checks, copy it in one go
+                    if (this.textRunIn != null)
+                    {
+                        this.textRunIn.copyTextRun(this);
+                    }
                     continue;
 
                 case LEX_GT :
@@ -2300,11 +2744,7 @@ public class Lexer
                     this.columns -= 2;
 
                     c = parseTagName();
-                    this.token = newNode(Node.END_TAG, // create endtag token
-                        this.lexbuf,
-                        this.txtstart,
-                        this.txtend,
-                        TidyUtils.getString(this.lexbuf, this.txtstart, this.txtend - this.txtstart));
+                    this.token = newTagNode(Node.END_TAG); // create endtag token
                     this.lexsize = this.txtstart;
                     this.txtend = this.txtstart;
 
@@ -2338,12 +2778,7 @@ public class Lexer
                     c = parseTagName();
                     isempty[0] = false;
                     attributes = null;
-                    this.token = newNode(
-                        (isempty[0] ? Node.START_END_TAG : Node.START_TAG),
-                        this.lexbuf,
-                        this.txtstart,
-                        this.txtend,
-                        TidyUtils.getString(this.lexbuf, this.txtstart, this.txtend - this.txtstart));
+                    this.token = newTagNode(isempty[0] ? Node.START_END_TAG : Node.START_TAG);
 
                     // parse attributes, consuming closing ">"
                     if (c != '>')
@@ -2405,7 +2840,7 @@ public class Lexer
                     {
                         report.error(this, null, this.token, Report.UNKNOWN_ELEMENT);
                     }
-                    else if (!this.configuration.xmlTags)
+                    else if (!this.configuration.xmlTags && this.checkTags)
                     {
                         constrainVersion(this.token.tag.versions);
 
@@ -2704,10 +3139,10 @@ public class Lexer
                     if (c != '?')
                     {
                         String name;
-                        Node[] asp = new Node[1];
-                        Node[] php = new Node[1];
+                        Node[] asp = this.aspRef;
+                        Node[] php = this.phpRef;
                         AttVal av = new AttVal();
-                        int[] pdelim = new int[1];
+                        int[] pdelim = this.delimRef;
                         isempty[0] = false;
 
                         this.in.ungetChar(c);
@@ -2715,7 +3150,7 @@ public class Lexer
                         name = this.parseAttribute(isempty, asp, php);
                         av.attribute = name;
 
-                        av.value = this.parseValue(name, true, isempty, pdelim);
+                        av.setValue(this.parseValue(name, true, isempty, pdelim));
                         av.delim = pdelim[0];
                         av.next = attributes;
 
@@ -3202,6 +3637,20 @@ public class Lexer
      * @return parsed value
      */
     public String parseValue(String name, boolean foldCase, boolean[] isempty, int[] pdelim)
+    {
+        int len = scanValue(name, foldCase, isempty, pdelim);
+        return TidyUtils.getString(this.lexbuf, this.valuestart, len);
+    }
+
+    /**
+     * Parses an attribute value, leaving it in the lexer buffer.
+     * @param name attribute name
+     * @param foldCase fold case?
+     * @param isempty is attribute empty? Passed as an array reference to allow modification
+     * @param pdelim delimiter, passed as an array reference to allow modification
+     * @return length of the value, which starts at <code>valuestart</code>; 0 if there is no value
+     */
+    private int scanValue(String name, boolean foldCase, boolean[] isempty, int[] pdelim)
     {
         // values start with "=" or " = " etc.
         // doesn't consume the ">" at end of start tag
@@ -3212,7 +3661,6 @@ public class Lexer
         boolean munge = true;
         int c = 0;
         int lastc, delim, quotewarning;
-        String value;
 
         delim = 0;
         pdelim[0] = '"';
@@ -3247,7 +3695,7 @@ public class Lexer
         if (c != '=' && c != '"' && c != '\'')
         {
             this.in.ungetChar(c);
-            return null;
+            return 0;
         }
 
         // skip white space after '='
@@ -3281,7 +3729,8 @@ public class Lexer
             pdelim[0] = parseServerInstruction();
             len = this.lexsize - start;
             this.lexsize = start;
-            return (len > 0 ? TidyUtils.getString(this.lexbuf, start, len) : null);
+            this.valuestart = start;
+            return len;
         }
         else
         {
@@ -3485,25 +3934,24 @@ public class Lexer
             // --literal-attributes is set to yes
             // #994841 - Whitespace is removed from value attributes
 
-            if (munge && !TidyUtils.isInValuesIgnoreCase(new String[]{"alt", "title", "value", "prompt"}, name))
+            if (munge && !TidyUtils.isInValuesIgnoreCase(WHITESPACE_SIGNIFICANT_ATTRIBUTES, name))
             {
-                while (TidyUtils.isWhite((char) this.lexbuf[start + len - 1]))
+                while (len > 0 && TidyUtils.isWhite((char) this.lexbuf[start + len - 1]))
                 {
                     --len;
                 }
 
-                while (TidyUtils.isWhite((char) this.lexbuf[start]) && start < len)
+                while (len > 0 && TidyUtils.isWhite((char) this.lexbuf[start]))
                 {
                     ++start;
                     --len;
                 }
             }
 
-            value = TidyUtils.getString(this.lexbuf, start, len);
         }
         else
         {
-            value = null;
+            len = 0;
         }
 
         // note delimiter if given
@@ -3516,7 +3964,8 @@ public class Lexer
             pdelim[0] = '"';
         }
 
-        return value;
+        this.valuestart = start;
+        return len;
     }
 
     /**
@@ -3606,6 +4055,31 @@ public class Lexer
         return valid;
     }
 
+    /**
+     * Sets the value of an attribute to the given range of the lexer buffer, without creating a String.
+     * @param av attribute
+     * @param start start of the value in the lexer buffer
+     * @param length length of the value
+     */
+    private void storeValue(AttVal av, int start, int length)
+    {
+        if (length <= 0)
+        {
+            av.setValue(TidyUtils.getString(this.lexbuf, start, length));
+            return;
+        }
+
+        if (this.valuebuf == null || this.valuesize + length > this.valuebuf.length)
+        {
+            this.valuebuf = new byte[Math.max(SEGMENT_SIZE, length)];
+            this.valuesize = 0;
+        }
+
+        System.arraycopy(this.lexbuf, start, this.valuebuf, this.valuesize, length);
+        av.setValue(this.valuebuf, this.valuesize, this.valuesize + length);
+        this.valuesize += length;
+    }
+
     /**
      * Parse tag attributes.
      * @param isempty is tag empty?
@@ -3615,9 +4089,11 @@ public class Lexer
     {
         AttVal av, list;
         String attribute, value;
-        int[] delim = new int[1];
-        Node[] asp = new Node[1];
-        Node[] php = new Node[1];
+        int length;
+        int[] delim = this.delimRef;
+        Node[] asp = this.aspRef;
+        Node[] php = this.phpRef;
+        int count = 0;
 
         list = null;
 
@@ -3625,6 +4101,12 @@ public class Lexer
         {
             attribute = parseAttribute(isempty, asp, php);
 
+            if ((attribute != null || asp[0] != null || php[0] != null) && ++count > this.maxAttributes)
+            {
+                stopParse(this.token, Report.ATTRIBUTE_LIMIT_EXCEEDED);
+                break;
+            }
+
             if (attribute == null)
             {
                 // check if attributes are created by ASP markup
@@ -3646,16 +4128,18 @@ public class Lexer
                 break;
             }
 
-            value = parseValue(attribute, false, isempty, delim);
+            length = scanValue(attribute, false, isempty, delim);
 
             if (attribute != null && isValidAttrName(attribute))
             {
-                av = new AttVal(list, null, null, null, delim[0], attribute, value);
+                av = obtainAttribute(list, delim[0], attribute);
+                storeValue(av, this.valuestart, length);
                 av.dict = AttributeTable.getDefaultAttributeTable().findAttribute(av);
                 list = av;
             }
             else
             {
+                value = TidyUtils.getString(this.lexbuf, this.valuestart, length);
                 av = new AttVal(null, null, null, null, 0, attribute, value);
 
                 // #427664 - fix by Gary Peskin 04 Aug 00; other fixes by Dave Raggett
@@ -3967,14 +4451,14 @@ public class Lexer
         {
             if (id != null)
             {
-                if (id.value != null && !id.value.equals(name.value))
+                if (id.getValue() != null && !id.getValue().equals(name.getValue()))
                 {
                     report.attrError(this, node, name, Report.ID_NAME_MISMATCH);
                 }
             }
             else if (this.configuration.xmlOut)
             {
-                node.addAttribute("id", name.value);
+                node.addAttribute("id", name.getValue());
             }
         }
     }
@@ -256,6 +256,22 @@ public class Node
      * @param end end position
      */
     public Node(short type, byte[] textarray, int start, int end)
+    {
+        init(type, textarray, start, end);
+    }
+
+    /**
+     * Instantiates a new node.
+     * @param type node type: Node.ROOT_NODE | Node.DOCTYPE_TAG | Node.COMMENT_TAG | Node.PROC_INS_TAG | Node.TEXT_NODE |
+     * Node.START_TAG | Node.END_TAG | Node.START_END_TAG | Node.CDATA_TAG | Node.SECTION_TAG | Node. ASP_TAG |
+     * Node.JSTE_TAG | Node.PHP_TAG | Node.XML_DECL
+     * @param textarray array of bytes contained in the Node
+     * @param start start position
+     * @param end end position
+     * @param element tag name
+     * @param tt tag table instance
+     */
+    public Node(short type, byte[] textarray, int start, int end, String element, TagTable tt)
     {
         this.parent = null;
         this.prev = null;
@@ -270,23 +286,24 @@ public class Node
         this.linebreak = false;
         this.was = null;
         this.tag = null;
-        this.element = null;
+        this.element = element;
         this.attributes = null;
         this.content = null;
+        if (type == START_TAG || type == START_END_TAG || type == END_TAG)
+        {
+            tt.findTag(this);
+        }
     }
 
     /**
-     * Instantiates a new node.
-     * @param type node type: Node.ROOT_NODE | Node.DOCTYPE_TAG | Node.COMMENT_TAG | Node.PROC_INS_TAG | Node.TEXT_NODE |
-     * Node.START_TAG | Node.END_TAG | Node.START_END_TAG | Node.CDATA_TAG | Node.SECTION_TAG | Node. ASP_TAG |
-     * Node.JSTE_TAG | Node.PHP_TAG | Node.XML_DECL
+     * Sets all the fields of this node as a new node, so that a token which is no longer used can be reused by the
+     * lexer.
+     * @param type node type
      * @param textarray array of bytes contained in the Node
      * @param start start position
      * @param end end position
-     * @param element tag name
-     * @param tt tag table instance
      */
-    public Node(short type, byte[] textarray, int start, int end, String element, TagTable tt)
+    final void init(short type, byte[] textarray, int start, int end)
     {
         this.parent = null;
         this.prev = null;
@@ -301,13 +318,21 @@ public class Node
         this.linebreak = false;
         this.was = null;
         this.tag = null;
-        this.element = element;
+        this.element = null;
         this.attributes = null;
         this.content = null;
-        if (type == START_TAG || type == START_END_TAG || type == END_TAG)
-        {
-            tt.findTag(this);
-        }
+        this.adapter = null;
+    }
+
+    /**
+     * Returns the array holding the text of this node. Nodes created without one, such as inferred elements, fall back
+     * to the current lexer buffer.
+     * @param lexer Lexer
+     * @return text array
+     */
+    byte[] getTextArray(Lexer lexer)
+    {
+        return (this.textarray != null) ? this.textarray : lexer.lexbuf;
     }
 
     /**
@@ -371,7 +396,7 @@ public class Node
                         if ("class".equalsIgnoreCase(current.attribute) && lexer.configuration.joinClasses)
                         {
                             // concatenate classes
-                            current.value = current.value + " " + attval.value;
+                            current.setValue(current.getValue() + " " + attval.getValue());
 
                             temp = attval.next;
 
@@ -396,22 +421,22 @@ public class Node
                             // this doesn't handle CSS comments and leading/trailing white-space very well see
                             // http://www.w3.org/TR/css-style-attr
 
-                            int end = current.value.length() - 1;
+                            int end = current.getValue().length() - 1;
 
-                            if (current.value.charAt(end) == ';')
+                            if (current.getValue().charAt(end) == ';')
                             {
                                 // attribute ends with declaration seperator
-                                current.value = current.value + " " + attval.value;
+                                current.setValue(current.getValue() + " " + attval.getValue());
                             }
-                            else if (current.value.charAt(end) == '}')
+                            else if (current.getValue().charAt(end) == '}')
                             {
                                 // attribute ends with rule set
-                                current.value = current.value + " { " + attval.value + " }";
+                                current.setValue(current.getValue() + " { " + attval.getValue() + " }");
                             }
                             else
                             {
                                 // attribute ends with property value
-                                current.value = current.value + "; " + attval.value;
+                                current.setValue(current.getValue() + "; " + attval.getValue());
                             }
 
                             temp = attval.next;
@@ -786,7 +811,7 @@ public class Node
             if (last.end > last.start)
 
             {
-                c = lexer.lexbuf[last.end - 1];
+                c = last.getTextArray(lexer)[last.end - 1];
 
                 if (c == 160 || c == (byte) ' ')
                 {
@@ -829,7 +854,6 @@ public class Node
     {
         Node node = lexer.newNode();
         node.start = lexer.lexsize;
-        node.textarray = element.textarray; // TODO check it
         lexer.addByte('<');
 
         if (element.type == END_TAG)
@@ -857,7 +881,7 @@ public class Node
 
             for (i = element.start; i < element.end; ++i)
             {
-                lexer.addByte(lexer.lexbuf[i]);
+                lexer.addByte(element.getTextArray(lexer)[i]);
             }
         }
 
@@ -868,6 +892,7 @@ public class Node
 
         lexer.addByte('>');
         node.end = lexer.lexsize;
+        node.textarray = lexer.lexbuf;
 
         return node;
     }
@@ -885,7 +910,7 @@ public class Node
             {
                 return true;
             }
-            return this.end == this.start + 1 && lexer.lexbuf[this.end - 1] == ' ';
+            return this.end == this.start + 1 && getTextArray(lexer)[this.end - 1] == ' ';
         }
         return false;
     }
@@ -903,7 +928,7 @@ public class Node
     {
         Node prev, node;
 
-        if (text.type == TEXT_NODE && lexer.lexbuf[text.start] == (byte) ' ' && (text.start < text.end))
+        if (text.type == TEXT_NODE && text.getTextArray(lexer)[text.start] == (byte) ' ' && (text.start < text.end))
         {
             if (TidyUtils.toBoolean(element.tag.model & Dict.CM_INLINE)
                 && !TidyUtils.toBoolean(element.tag.model & Dict.CM_FIELD))
@@ -925,7 +950,7 @@ public class Node
                     node = lexer.newNode();
                     node.start = element.start++;
                     node.end = element.start;
-                    lexer.lexbuf[node.start] = (byte) ' ';
+                    element.getTextArray(lexer)[node.start] = (byte) ' ';
                     Node.insertNodeBeforeElement(element, node);
                 }
             }
@@ -1260,13 +1285,56 @@ public class Node
     }
 
     /**
-     * Checks for node integrity.
+     * Checks for node integrity. The tree is walked without recursion, so that deeply nested documents can be checked
+     * on threads with a small stack.
      * @return false if node is not consistent
      */
     public boolean checkNodeIntegrity()
     {
-        Node child;
+        Node node = this;
+
+        while (true)
+        {
+            if (!node.checkLinks())
+            {
+                return false;
+            }
 
+            if (node.content != null)
+            {
+                if (node.content.parent != node)
+                {
+                    return false;
+                }
+                node = node.content;
+                continue;
+            }
+
+            // move on to the next sibling of the node or of its nearest ancestor which has one
+            while (node != this && node.next == null)
+            {
+                node = node.parent;
+            }
+
+            if (node == this)
+            {
+                return true;
+            }
+
+            if (node.next.parent != node.parent)
+            {
+                return false;
+            }
+            node = node.next;
+        }
+    }
+
+    /**
+     * Checks the links between this node and its siblings and parent.
+     * @return false if node is not consistent
+     */
+    private boolean checkLinks()
+    {
         if (this.prev != null)
         {
             if (this.prev.next != this)
@@ -1296,13 +1364,6 @@ public class Node
             }
         }
 
-        for (child = this.content; child != null; child = child.next)
-        {
-            if (child.parent != this || !child.checkNodeIntegrity())
-            {
-                return false;
-            }
-        }
         return true;
     }
 
@@ -1317,7 +1378,7 @@ public class Node
         // if there already is a class attribute then append class name after a space
         if (classattr != null)
         {
-            classattr.value = classattr.value + " " + classname;
+            classattr.setValue(classattr.getValue() + " " + classname);
         }
         else
         {
@@ -1474,7 +1535,7 @@ public class Node
         for (attr = this.attributes; attr != null; attr = attr.next)
         {
             if (("language".equalsIgnoreCase(attr.attribute) || "type".equalsIgnoreCase(attr.attribute))
-                && attr.value.toLowerCase().contains("javascript"))
+                && attr.getValue().toLowerCase().contains("javascript"))
             {
                 result = true;
             }
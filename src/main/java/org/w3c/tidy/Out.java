@@ -53,6 +53,10 @@
  */
 package org.w3c.tidy;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+
 /**
  * Tidy Output interface.
  * @author Dave Raggett <a href="mailto:dsr@w3.org">dsr@w3.org </a>
@@ -75,6 +79,61 @@ public interface Out
      */
     void outc(byte c);
 
+    /**
+     * writes a range of chars, each one as by <code>outc(int)</code>.
+     * @param chars chars to write
+     * @param start index of the first char
+     * @param end index after the last char
+     */
+    default void outc(int[] chars, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+        {
+            outc(chars[i]);
+        }
+    }
+
+    /**
+     * writes a range of chars. Surrogate pairs are written as a single <code>outc(int)</code> call.
+     * @param chars chars to write
+     * @param start index of the first char
+     * @param end index after the last char
+     */
+    default void outc(char[] chars, int start, int end)
+    {
+        int i = start;
+        while (i < end)
+        {
+            int c = Character.codePointAt(chars, i, end);
+            outc(c);
+            i += Character.charCount(c);
+        }
+    }
+
+    /**
+     * writes UTF-8 encoded chars. When the output is UTF-8 encoded too, the bytes can be copied unchanged.
+     * @param bytes valid UTF-8 byte sequence
+     * @param start index of the first byte
+     * @param end index after the last byte
+     */
+    default void outUTF8(byte[] bytes, int start, int end)
+    {
+        char[] chars = new String(bytes, start, end - start, StandardCharsets.UTF_8).toCharArray();
+        outc(chars, 0, chars.length);
+    }
+
+    /**
+     * writes a number of spaces.
+     * @param count number of spaces
+     */
+    default void outSpaces(int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            outc(' ');
+        }
+    }
+
     /**
      * writes a newline.
      */
@@ -85,4 +144,14 @@ public interface Out
      */
     void flush();
 
+    /**
+     * Returns the first I/O error which occurred while writing. Output written after an error may be discarded.
+     * @return the I/O error, or <code>null</code> if all output has been written. Implementations which do not
+     * track errors always return <code>null</code>.
+     */
+    default IOException getError()
+    {
+        return null;
+    }
+
 }
\ No newline at end of file
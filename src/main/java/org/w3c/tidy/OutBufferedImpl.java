@@ -0,0 +1,547 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
+
+
+/**
+ * Out implementation which collects the output in a reusable char buffer. Full buffers are written to a writer, or
+ * encoded in bulk to an output stream, a channel or a byte buffer, instead of passing each char through a synchronized
+ * <code>Writer</code>. A byte buffer is replaced by a larger copy when it is full, see <code>getByteBuffer()</code>.
+ * The first I/O error is kept and returned by <code>getError()</code>; anything written after it is discarded.
+ * @version $Revision$ ($Author$)
+ */
+public class OutBufferedImpl implements Out
+{
+
+    /**
+     * size of the output buffer, in chars.
+     */
+    protected static final int BUFFER_SIZE = 8192;
+
+    /**
+     * chars not yet written.
+     */
+    private char[] buffer = new char[BUFFER_SIZE];
+
+    /**
+     * number of chars in <code>buffer</code>.
+     */
+    private int count;
+
+    /**
+     * Newline string.
+     */
+    private char[] newline;
+
+    /**
+     * Writer receiving the output, <code>null</code> when writing to a stream.
+     */
+    private Writer writer;
+
+    /**
+     * Output stream receiving the encoded output, <code>null</code> when not writing to a stream.
+     */
+    private OutputStream stream;
+
+    /**
+     * Channel receiving the encoded output, <code>null</code> when not writing to a channel.
+     */
+    private WritableByteChannel channel;
+
+    /**
+     * Encoder for the output stream.
+     */
+    private CharsetEncoder encoder;
+
+    /**
+     * Encoded bytes not yet written to the output stream or channel. When neither is set, this is the byte buffer
+     * receiving the output.
+     */
+    private ByteBuffer bytes;
+
+    /**
+     * is the output stream UTF-8 encoded?
+     */
+    private boolean utf8;
+
+    /**
+     * first I/O error, if any.
+     */
+    private IOException error;
+
+    /**
+     * Constructor.
+     * @param configuration actual configuration instance (needed for newline configuration)
+     * @param encoding encoding name
+     * @param out output stream
+     * @throws UnsupportedEncodingException if the requested encoding is not supported
+     */
+    protected OutBufferedImpl(Configuration configuration, String encoding, OutputStream out)
+        throws UnsupportedEncodingException
+    {
+        this(configuration, encoding, ByteBuffer.allocate(BUFFER_SIZE * 2));
+        this.stream = out;
+    }
+
+    /**
+     * Constructor. Bytes are written to the channel from a direct buffer, which most channels can use without a copy.
+     * @param configuration actual configuration instance (needed for newline configuration)
+     * @param encoding encoding name
+     * @param out channel
+     * @throws UnsupportedEncodingException if the requested encoding is not supported
+     */
+    protected OutBufferedImpl(Configuration configuration, String encoding, WritableByteChannel out)
+        throws UnsupportedEncodingException
+    {
+        this(configuration, encoding, ByteBuffer.allocateDirect(BUFFER_SIZE * 2));
+        this.channel = out;
+    }
+
+    /**
+     * Constructor. The output is added at the position of the byte buffer. When the buffer is full it is replaced by a
+     * larger one, heap or direct like the original, holding a copy of its content.
+     * @param configuration actual configuration instance (needed for newline configuration)
+     * @param encoding encoding name
+     * @param out byte buffer
+     * @throws UnsupportedEncodingException if the requested encoding is not supported
+     */
+    protected OutBufferedImpl(Configuration configuration, String encoding, ByteBuffer out)
+        throws UnsupportedEncodingException
+    {
+        Charset charset;
+        try
+        {
+            charset = Charset.forName(encoding);
+        }
+        catch (IllegalCharsetNameException e)
+        {
+            throw new UnsupportedEncodingException(encoding);
+        }
+        catch (UnsupportedCharsetException e)
+        {
+            throw new UnsupportedEncodingException(encoding);
+        }
+
+        // same replacement behaviour as an OutputStreamWriter
+        this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(
+            CodingErrorAction.REPLACE);
+        this.bytes = out;
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        this.newline = configuration.newline;
+    }
+
+    /**
+     * Constructor.
+     * @param configuration actual configuration instance (needed for newline configuration)
+     * @param out Writer
+     */
+    protected OutBufferedImpl(Configuration configuration, Writer out)
+    {
+        this.writer = out;
+        this.newline = configuration.newline;
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outc(int)
+     */
+    @Override
+    public void outc(int c)
+    {
+        if (this.count == this.buffer.length)
+        {
+            writeBuffer();
+        }
+        this.buffer[this.count++] = (char) c;
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outc(byte)
+     */
+    @Override
+    public void outc(byte c)
+    {
+        outc((int) c);
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outc(int[], int, int)
+     */
+    @Override
+    public void outc(int[] chars, int start, int end)
+    {
+        char[] buf = this.buffer;
+        int pos = this.count;
+        for (int i = start; i < end; i++)
+        {
+            if (pos == buf.length)
+            {
+                this.count = pos;
+                writeBuffer();
+                pos = this.count;
+            }
+            buf[pos++] = (char) chars[i];
+        }
+        this.count = pos;
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outc(char[], int, int)
+     */
+    @Override
+    public void outc(char[] chars, int start, int end)
+    {
+        int i = start;
+        while (i < end)
+        {
+            if (this.count == this.buffer.length)
+            {
+                writeBuffer();
+            }
+            int n = Math.min(end - i, this.buffer.length - this.count);
+            System.arraycopy(chars, i, this.buffer, this.count, n);
+            this.count += n;
+            i += n;
+        }
+    }
+
+    /**
+     * Copies the bytes unchanged when writing UTF-8 to a stream, decodes them otherwise.
+     * @see org.w3c.tidy.Out#outUTF8(byte[], int, int)
+     */
+    @Override
+    public void outUTF8(byte[] utf8Bytes, int start, int end)
+    {
+        if (!this.utf8)
+        {
+            String text = new String(utf8Bytes, start, end - start, StandardCharsets.UTF_8);
+            int i = 0;
+            while (i < text.length())
+            {
+                if (this.count == this.buffer.length)
+                {
+                    writeBuffer();
+                }
+                int n = Math.min(text.length() - i, this.buffer.length - this.count);
+                text.getChars(i, i + n, this.buffer, this.count);
+                this.count += n;
+                i += n;
+            }
+            return;
+        }
+
+        writeBuffer();
+        if (this.error != null)
+        {
+            return;
+        }
+
+        try
+        {
+            if (this.count > 0)
+            {
+                // a high surrogate not followed by its low surrogate, replaced as an OutputStreamWriter would
+                if (this.bytes.remaining() < 4)
+                {
+                    writeBytes(4);
+                }
+                this.encoder.encode(CharBuffer.wrap(this.buffer, 0, this.count), this.bytes, true);
+                this.encoder.reset();
+                this.count = 0;
+            }
+
+            int length = end - start;
+            if (length > this.bytes.remaining())
+            {
+                writeBytes(length);
+            }
+            if (length > this.bytes.remaining())
+            {
+                // too large for the buffer, write in place
+                if (this.stream != null)
+                {
+                    this.stream.write(utf8Bytes, start, length);
+                }
+                else
+                {
+                    writeFully(ByteBuffer.wrap(utf8Bytes, start, length));
+                }
+            }
+            else
+            {
+                this.bytes.put(utf8Bytes, start, length);
+            }
+        }
+        catch (IOException e)
+        {
+            this.error = e;
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outSpaces(int)
+     */
+    @Override
+    public void outSpaces(int count)
+    {
+        int left = count;
+        while (left > 0)
+        {
+            if (this.count == this.buffer.length)
+            {
+                writeBuffer();
+            }
+            int n = Math.min(left, this.buffer.length - this.count);
+            Arrays.fill(this.buffer, this.count, this.count + n, ' ');
+            this.count += n;
+            left -= n;
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#newline()
+     */
+    @Override
+    public void newline()
+    {
+        char[] nl = this.newline;
+        if (this.count + nl.length > this.buffer.length)
+        {
+            writeBuffer();
+        }
+        System.arraycopy(nl, 0, this.buffer, this.count, nl.length);
+        this.count += nl.length;
+    }
+
+    /**
+     * Flushes the output, which is then complete: a high surrogate left at the end is replaced as an
+     * OutputStreamWriter does when closed.
+     * @see org.w3c.tidy.Out#flush()
+     */
+    @Override
+    public void flush()
+    {
+        writeBuffer(true);
+        if (this.error != null)
+        {
+            return;
+        }
+
+        try
+        {
+            if (this.writer != null)
+            {
+                this.writer.flush();
+            }
+            else if (this.stream != null)
+            {
+                writeBytes(0);
+                this.stream.flush();
+            }
+            else if (this.channel != null)
+            {
+                writeBytes(0);
+            }
+        }
+        catch (IOException e)
+        {
+            this.error = e;
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#getError()
+     */
+    @Override
+    public IOException getError()
+    {
+        return this.error;
+    }
+
+    /**
+     * Returns the byte buffer receiving the output, which is not the one given to the constructor if that became full.
+     * Its position is after the last byte written; call <code>flush()</code> first.
+     * @return byte buffer holding the output, <code>null</code> if the output is not written to a byte buffer
+     */
+    public ByteBuffer getByteBuffer()
+    {
+        return this.stream == null && this.channel == null ? this.bytes : null;
+    }
+
+    /**
+     * Writes the encoded bytes to the output stream or channel. When writing to a byte buffer, replaces it with a
+     * larger one instead.
+     * @param needed number of bytes which must fit in the byte buffer afterwards
+     * @throws IOException if the output stream or channel fails
+     */
+    private void writeBytes(int needed) throws IOException
+    {
+        if (this.stream != null)
+        {
+            this.stream.write(this.bytes.array(), 0, this.bytes.position());
+            this.bytes.clear();
+        }
+        else if (this.channel != null)
+        {
+            this.bytes.flip();
+            writeFully(this.bytes);
+            this.bytes.clear();
+        }
+        else if (needed > this.bytes.remaining())
+        {
+            int capacity = Math.max(this.bytes.capacity() * 2, this.bytes.position() + Math.max(needed, BUFFER_SIZE));
+            ByteBuffer larger = this.bytes.isDirect()
+                ? ByteBuffer.allocateDirect(capacity)
+                : ByteBuffer.allocate(capacity);
+            this.bytes.flip();
+            larger.put(this.bytes);
+            this.bytes = larger;
+        }
+    }
+
+    /**
+     * Writes all the remaining bytes of a buffer to the channel.
+     * @param src bytes to write
+     * @throws IOException if the channel fails
+     */
+    private void writeFully(ByteBuffer src) throws IOException
+    {
+        while (src.hasRemaining())
+        {
+            this.channel.write(src);
+        }
+    }
+
+    /**
+     * Writes the buffered chars to the writer, or encodes them to the byte buffer. A high surrogate at the end of the
+     * buffer is kept until its low surrogate arrives.
+     */
+    private void writeBuffer()
+    {
+        writeBuffer(false);
+    }
+
+    /**
+     * Writes the buffered chars to the writer, or encodes them to the byte buffer.
+     * @param endOfInput is this the end of the output? If not, a high surrogate at the end of the buffer is kept until
+     * its low surrogate arrives. If it is, the high surrogate is replaced and the encoder is flushed and reset.
+     */
+    private void writeBuffer(boolean endOfInput)
+    {
+        if (this.error != null)
+        {
+            // output is broken, discard
+            this.count = 0;
+            return;
+        }
+
+        try
+        {
+            if (this.writer != null)
+            {
+                this.writer.write(this.buffer, 0, this.count);
+                this.count = 0;
+                return;
+            }
+
+            CharBuffer chars = CharBuffer.wrap(this.buffer, 0, this.count);
+            CoderResult result;
+            do
+            {
+                result = this.encoder.encode(chars, this.bytes, endOfInput);
+                if (result.isOverflow())
+                {
+                    writeBytes(BUFFER_SIZE);
+                }
+            }
+            while (result.isOverflow());
+
+            if (endOfInput)
+            {
+                while (this.encoder.flush(this.bytes).isOverflow())
+                {
+                    writeBytes(BUFFER_SIZE);
+                }
+                // ready for more output
+                this.encoder.reset();
+                this.count = 0;
+                return;
+            }
+
+            int left = chars.remaining();
+            System.arraycopy(this.buffer, chars.position(), this.buffer, 0, left);
+            this.count = left;
+        }
+        catch (IOException e)
+        {
+            this.error = e;
+            this.count = 0;
+        }
+    }
+
+}
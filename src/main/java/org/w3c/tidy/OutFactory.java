@@ -56,6 +56,8 @@ package org.w3c.tidy;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 
 /**
@@ -75,7 +77,7 @@ public final class OutFactory
     }
 
     /**
-     * Returns the appropriate Out implementation.
+     * Returns the appropriate Out implementation. Output is buffered and encoded in blocks by {@link OutBufferedImpl}.
      * @param config configuration instance
      * @param stream output stream
      * @return out instance
@@ -84,7 +86,44 @@ public final class OutFactory
     {
         try
         {
-            return new OutJavaImpl(config, config.getOutCharEncodingName(), stream);
+            return new OutBufferedImpl(config, config.getOutCharEncodingName(), stream);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new RuntimeException("Unsupported encoding: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the appropriate Out implementation.
+     * @param config configuration instance
+     * @param channel output channel
+     * @return out instance
+     */
+    public static Out getOut(Configuration config, WritableByteChannel channel)
+    {
+        try
+        {
+            return new OutBufferedImpl(config, config.getOutCharEncodingName(), channel);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new RuntimeException("Unsupported encoding: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the Out implementation writing to a byte buffer. The buffer is replaced by a larger one if it is too
+     * small, use {@link OutBufferedImpl#getByteBuffer()} to get the output.
+     * @param config configuration instance
+     * @param buffer byte buffer, output is added at its position
+     * @return out instance
+     */
+    public static OutBufferedImpl getOut(Configuration config, ByteBuffer buffer)
+    {
+        try
+        {
+            return new OutBufferedImpl(config, config.getOutCharEncodingName(), buffer);
         }
         catch (UnsupportedEncodingException e)
         {
@@ -100,6 +139,6 @@ public final class OutFactory
      */
     public static Out getOut(Configuration config, Writer writer)
     {
-        return new OutJavaImpl(config, writer);
+        return new OutBufferedImpl(config, writer);
     }
 }
@@ -58,6 +58,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 
 /**
@@ -78,6 +79,11 @@ public class OutJavaImpl implements Out
      */
     private char[] newline;
 
+    /**
+     * first I/O error, if any.
+     */
+    private IOException error;
+
     /**
      * Constructor.
      * @param configuration actual configuration instance (needed for newline configuration)
@@ -114,8 +120,10 @@ public class OutJavaImpl implements Out
         }
         catch (IOException e)
         {
-            // TODO throws exception
-            System.err.println("OutJavaImpl.outc: " + e.getMessage());
+            if (this.error == null)
+            {
+                this.error = e;
+            }
         }
     }
 
@@ -130,8 +138,46 @@ public class OutJavaImpl implements Out
         }
         catch (IOException e)
         {
-            // TODO throws exception
-            System.err.println("OutJavaImpl.outc: " + e.getMessage());
+            if (this.error == null)
+            {
+                this.error = e;
+            }
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outc(char[], int, int)
+     */
+    public void outc(char[] chars, int start, int end)
+    {
+        try
+        {
+            writer.write(chars, start, end - start);
+        }
+        catch (IOException e)
+        {
+            if (this.error == null)
+            {
+                this.error = e;
+            }
+        }
+    }
+
+    /**
+     * @see org.w3c.tidy.Out#outUTF8(byte[], int, int)
+     */
+    public void outUTF8(byte[] bytes, int start, int end)
+    {
+        try
+        {
+            writer.write(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+        }
+        catch (IOException e)
+        {
+            if (this.error == null)
+            {
+                this.error = e;
+            }
         }
     }
 
@@ -146,8 +192,10 @@ public class OutJavaImpl implements Out
         }
         catch (IOException e)
         {
-            // TODO throws exception
-            System.err.println("OutJavaImpl.newline: " + e.getMessage());
+            if (this.error == null)
+            {
+                this.error = e;
+            }
         }
     }
 
@@ -162,8 +210,19 @@ public class OutJavaImpl implements Out
         }
         catch (IOException e)
         {
-            System.err.println("OutJavaImpl.flush: " + e.getMessage());
+            if (this.error == null)
+            {
+                this.error = e;
+            }
         }
     }
 
+    /**
+     * @see org.w3c.tidy.Out#getError()
+     */
+    public IOException getError()
+    {
+        return this.error;
+    }
+
 }
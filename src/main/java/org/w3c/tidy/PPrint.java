@@ -55,8 +55,17 @@ package org.w3c.tidy;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 
 /**
@@ -152,6 +161,21 @@ public class PPrint
      */
     private static final String DEFAULT_COMMENT_END = "";
 
+    /**
+     * Escape tables, by output encoding and escaping options.
+     */
+    private static final Map<String, byte[]> ESCAPE_TABLES = new HashMap<>();
+
+    /**
+     * Escape table entry for a char which is always printed unchanged.
+     */
+    private static final byte PRINT_RAW = 0;
+
+    /**
+     * Escape table entry for a char which may be escaped, replaced or used as a wrap point.
+     */
+    private static final byte PRINT_CHECK = 1;
+
     private int[] linebuf;
 
     private int lbufsize;
@@ -164,6 +188,27 @@ public class PPrint
 
     private boolean inString;
 
+    /**
+     * Has the start of the current line already been written, by copying text straight to the output?
+     */
+    private boolean lineStarted;
+
+    /**
+     * Is the output written as it is built, instead of line by line? Set by printTree when lines are never wrapped
+     * and nothing is indented.
+     */
+    private boolean streaming;
+
+    /**
+     * Escape table for the configuration, see escapeTable().
+     */
+    private byte[] escapes;
+
+    /**
+     * Output of a chunk printed by printChunk.
+     */
+    private char[] chunkOutput;
+
     /**
      * Current slide number.
      */
@@ -179,11 +224,49 @@ public class PPrint
      */
     private Node slidecontent;
 
+    /**
+     * The node starting the next slide, or <code>null</code> for the last slide.
+     */
+    private Node slideEnd;
+
+    /**
+     * The file the current slide is written to.
+     */
+    private File slideFile;
+
+    /**
+     * I/O error which occurred while writing the current slide, or <code>null</code>.
+     */
+    private IOException slideError;
+
     /**
      * current configuration.
      */
     private Configuration configuration;
 
+    /**
+     * Wrap length: the configured one, or a very large one while printing content which must not be wrapped. Kept
+     * here rather than changed in the configuration, which may be shared by other PPrint instances.
+     */
+    private int wraplen;
+
+    /**
+     * Quote marks as entities? The configured value, or false while printing a doctype. Kept here for the same reason
+     * as wraplen.
+     */
+    private boolean quoteMarks;
+
+    /**
+     * Thread whose interruption cancels printing, for PPrint instances printing on behalf of another thread. When
+     * <code>null</code>, the current thread.
+     */
+    private Thread owner;
+
+    /**
+     * Number of nodes printed, for checkInterrupted().
+     */
+    private int printed;
+
     /**
      * Instantiates a new PPrint.
      *
@@ -192,6 +275,21 @@ public class PPrint
     public PPrint(Configuration configuration)
     {
         this.configuration = configuration;
+        this.wraplen = configuration.wraplen;
+        this.quoteMarks = configuration.quoteMarks;
+    }
+
+    /**
+     * Called for each node printed, checks every 256 nodes whether the thread which called Tidy has been interrupted.
+     *
+     * @throws java.util.concurrent.CancellationException if the thread has been interrupted
+     */
+    private void checkInterrupted()
+    {
+        if ((++this.printed & 0xFF) == 0)
+        {
+            TidyUtils.checkInterrupted(this.owner != null ? this.owner : Thread.currentThread());
+        }
     }
 
     /**
@@ -208,14 +306,14 @@ public class PPrint
             // Chinese characters take two positions on a fixed-width screen
             // It would be more accurate to keep a parallel linelen and wraphere incremented by 2 for Chinese characters
             // and 1 otherwise, but this is way simpler.
-            return (ind + ((this.configuration.wraplen - ind) / 2));
+            return (ind + ((this.wraplen - ind) / 2));
         }
         if ("ja".equals(this.configuration.language))
         {
             /* average Japanese text is 30% kanji */
-            return (ind + (((this.configuration.wraplen - ind) * 7) / 10));
+            return (ind + (((this.wraplen - ind) * 7) / 10));
         }
-        return (this.configuration.wraplen);
+        return (this.wraplen);
         /* #431953 - end RJ */
     }
 
@@ -363,22 +461,16 @@ public class PPrint
      */
     private void wrapLine(Out fout, int indent)
     {
-        int i, p, q;
+        int p, q;
 
         if (wraphere == 0)
         {
             return;
         }
 
-        for (i = 0; i < indent; ++i)
-        {
-            fout.outc(' ');
-        }
+        fout.outSpaces(indent);
 
-        for (i = 0; i < wraphere; ++i)
-        {
-            fout.outc(linebuf[i]);
-        }
+        fout.outc(linebuf, 0, wraphere);
 
         if (inString)
         {
@@ -429,17 +521,11 @@ public class PPrint
      */
     private void wrapAttrVal(Out fout, int indent, boolean inString)
     {
-        int i, p, q;
+        int p, q;
 
-        for (i = 0; i < indent; ++i)
-        {
-            fout.outc(' ');
-        }
+        fout.outSpaces(indent);
 
-        for (i = 0; i < wraphere; ++i)
-        {
-            fout.outc(linebuf[i]);
-        }
+        fout.outc(linebuf, 0, wraphere);
 
         fout.outc(' ');
 
@@ -491,27 +577,19 @@ public class PPrint
      */
     public void flushLine(Out fout, int indent, boolean shouldAddNewLine)
     {
-        int i;
-
         if (linelen > 0)
         {
-            if (indent + linelen >= this.configuration.wraplen)
+            if (indent + linelen >= this.wraplen)
             {
                 wrapLine(fout, indent);
             }
 
-            if (!inAttVal || this.configuration.indentAttributes)
+            if (!lineStarted && (!inAttVal || this.configuration.indentAttributes))
             {
-                for (i = 0; i < indent; ++i)
-                {
-                    fout.outc(' ');
-                }
+                fout.outSpaces(indent);
             }
 
-            for (i = 0; i < linelen; ++i)
-            {
-                fout.outc(linebuf[i]);
-            }
+            fout.outc(linebuf, 0, linelen);
         }
 
         if(shouldAddNewLine) {
@@ -520,6 +598,7 @@ public class PPrint
         linelen = 0;
         wraphere = 0;
         inAttVal = false;
+        lineStarted = false;
     }
     
     /**
@@ -530,7 +609,7 @@ public class PPrint
      */
     public void flushLine(Out fout, int indent)
     {
-      flushLine(fout, indent, true);
+      flushLine(fout, indent, !this.configuration.minify);
     }
 
     /**
@@ -542,27 +621,19 @@ public class PPrint
      */
     public void condFlushLine(Out fout, int indent, boolean shouldAddNewLine)
     {
-        int i;
-
-        if (linelen > 0)
+        if (linelen > 0 || lineStarted)
         {
-            if (indent + linelen >= this.configuration.wraplen)
+            if (indent + linelen >= this.wraplen)
             {
                 wrapLine(fout, indent);
             }
 
-            if (!inAttVal || this.configuration.indentAttributes)
+            if (!lineStarted && (!inAttVal || this.configuration.indentAttributes))
             {
-                for (i = 0; i < indent; ++i)
-                {
-                    fout.outc(' ');
-                }
+                fout.outSpaces(indent);
             }
 
-            for (i = 0; i < linelen; ++i)
-            {
-                fout.outc(linebuf[i]);
-            }
+            fout.outc(linebuf, 0, linelen);
 
             if(shouldAddNewLine) {
               fout.newline();
@@ -570,6 +641,7 @@ public class PPrint
             linelen = 0;
             wraphere = 0;
             inAttVal = false;
+            lineStarted = false;
         }
     }
     
@@ -581,7 +653,153 @@ public class PPrint
      */
     public void condFlushLine(Out fout, int indent)
     {
-      condFlushLine(fout, indent, true);
+      condFlushLine(fout, indent, !this.configuration.minify);
+    }
+
+    /**
+     * Is c a punctuation or space char after which lines of UTF-8 output can be broken?
+     *
+     * @param c the char
+     * @return <code>true</code> if a line can be broken after c
+     */
+    private static boolean isUTF8BreakChar(int c)
+    {
+        if (((c >= 0x2000) && (c <= 0x2006))
+            || ((c >= 0x2008) && (c <= 0x2010))
+            || ((c >= 0x2011) && (c <= 0x2046))
+            || ((c >= 0x207D) && (c <= 0x207E))
+            || ((c >= 0x208D) && (c <= 0x208E))
+            || ((c >= 0x2329) && (c <= 0x232A))
+            || ((c >= 0x3001) && (c <= 0x3003))
+            || ((c >= 0x3008) && (c <= 0x3011))
+            || ((c >= 0x3014) && (c <= 0x301F))
+            || ((c >= 0xFD3E) && (c <= 0xFD3F))
+            || ((c >= 0xFE30) && (c <= 0xFE44))
+            || ((c >= 0xFE49) && (c <= 0xFE52))
+            || ((c >= 0xFE54) && (c <= 0xFE61))
+            || ((c >= 0xFE6A) && (c <= 0xFE6B))
+            || ((c >= 0xFF01) && (c <= 0xFF03))
+            || ((c >= 0xFF05) && (c <= 0xFF0A))
+            || ((c >= 0xFF0C) && (c <= 0xFF0F))
+            || ((c >= 0xFF1A) && (c <= 0xFF1B))
+            || ((c >= 0xFF1F) && (c <= 0xFF20))
+            || ((c >= 0xFF3B) && (c <= 0xFF3D))
+            || ((c >= 0xFF61) && (c <= 0xFF65)))
+        {
+            return true;
+        }
+
+        switch (c)
+        {
+            case 0xFE63:
+            case 0xFE68:
+            case 0x3030:
+            case 0x30FB:
+            case 0xFF3F:
+            case 0xFF5B:
+            case 0xFF5D:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the escape table for the given configuration, building it the first time. For each BMP char the table
+     * tells whether printChar adds it to the line unchanged in every mode (<code>PRINT_RAW</code>), or it must go
+     * through the escaping rules (<code>PRINT_CHECK</code>). Spaces always need a check.
+     *
+     * @param configuration configuration
+     * @param quoteMarks    are quote marks printed as entities?
+     * @return escape table
+     */
+    private static byte[] escapeTable(Configuration configuration, boolean quoteMarks)
+    {
+        String encoding = configuration.getOutCharEncodingName();
+        boolean asciiQuotes = configuration.makeClean && configuration.asciiChars || configuration.makeBare;
+        String key = encoding
+            + (configuration.quoteAmpersand ? "&" : "")
+            + (quoteMarks ? "\"" : "")
+            + (asciiQuotes ? "'" : "")
+            + (configuration.xmlTags ? "<" : "");
+
+        synchronized (ESCAPE_TABLES)
+        {
+            byte[] table = ESCAPE_TABLES.get(key);
+            if (table == null)
+            {
+                table = buildEscapeTable(configuration, encoding, quoteMarks, asciiQuotes);
+                ESCAPE_TABLES.put(key, table);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Builds an escape table, following the rules in printChar.
+     *
+     * @param configuration configuration
+     * @param encoding      output encoding name
+     * @param quoteMarks    are quote marks printed as entities?
+     * @param asciiQuotes   are smart quotes and dashes replaced by ASCII chars?
+     * @return escape table
+     */
+    private static byte[] buildEscapeTable(Configuration configuration, String encoding, boolean quoteMarks,
+        boolean asciiQuotes)
+    {
+        byte[] table = new byte[0x10000];
+
+        // spaces depend on the mode, nbsp on several options
+        table[' '] = PRINT_CHECK;
+        table[160] = PRINT_CHECK;
+
+        table['<'] = PRINT_CHECK;
+        table['>'] = PRINT_CHECK;
+        if (configuration.quoteAmpersand)
+        {
+            table['&'] = PRINT_CHECK;
+        }
+        if (quoteMarks)
+        {
+            table['"'] = PRINT_CHECK;
+            table['\''] = PRINT_CHECK;
+        }
+        if (asciiQuotes)
+        {
+            Arrays.fill(table, 0x2013, 0x201F, PRINT_CHECK);
+        }
+
+        for (int c = 0; c < table.length; c++)
+        {
+            if ("UTF8".equals(encoding) && isUTF8BreakChar(c))
+            {
+                // sets a wrap point
+                table[c] = PRINT_CHECK;
+            }
+            else if ("ISO8859_1".equals(encoding))
+            {
+                if (c > 255 || c > 126 && c < 160)
+                {
+                    table[c] = PRINT_CHECK;
+                }
+            }
+            else if (encoding.startsWith("UTF"))
+            {
+                continue;
+            }
+            else if (configuration.xmlTags)
+            {
+                if (c > 127 && "ASCII".equals(encoding))
+                {
+                    table[c] = PRINT_CHECK;
+                }
+            }
+            else if ("ASCII".equals(encoding) && (c > 126 || (c < ' ' && c != '\t')))
+            {
+                table[c] = PRINT_CHECK;
+            }
+        }
+        return table;
     }
 
     /**
@@ -595,6 +813,17 @@ public class PPrint
         String entity;
         boolean breakable = false; // #431953 - RJ
 
+        // most chars are added unchanged, whatever the mode
+        if (escapes == null)
+        {
+            escapes = escapeTable(this.configuration, this.quoteMarks);
+        }
+        if (c < 0x10000 && escapes[c] == PRINT_RAW)
+        {
+            addC(c, linelen++);
+            return;
+        }
+
         if (c == ' ' && !TidyUtils.toBoolean(mode & (PREFORMATTED | COMMENT | ATTRIBVALUE | CDATA)))
         {
             // coerce a space character to a non-breaking space
@@ -665,7 +894,7 @@ public class PPrint
                 return;
             }
 
-            if (c == '"' && this.configuration.quoteMarks)
+            if (c == '"' && this.quoteMarks)
             {
                 addC('&', linelen++);
                 addC('q', linelen++);
@@ -676,7 +905,7 @@ public class PPrint
                 return;
             }
 
-            if (c == '\'' && this.configuration.quoteMarks)
+            if (c == '\'' && this.quoteMarks)
             {
                 addC('&', linelen++);
                 addC('#', linelen++);
@@ -734,48 +963,11 @@ public class PPrint
             // Break after any punctuation or spaces characters
             if ((c >= 0x2000) && !TidyUtils.toBoolean(mode & PREFORMATTED))
             {
-                if (((c >= 0x2000) && (c <= 0x2006))
-                    || ((c >= 0x2008) && (c <= 0x2010))
-                    || ((c >= 0x2011) && (c <= 0x2046))
-                    || ((c >= 0x207D) && (c <= 0x207E))
-                    || ((c >= 0x208D) && (c <= 0x208E))
-                    || ((c >= 0x2329) && (c <= 0x232A))
-                    || ((c >= 0x3001) && (c <= 0x3003))
-                    || ((c >= 0x3008) && (c <= 0x3011))
-                    || ((c >= 0x3014) && (c <= 0x301F))
-                    || ((c >= 0xFD3E) && (c <= 0xFD3F))
-                    || ((c >= 0xFE30) && (c <= 0xFE44))
-                    || ((c >= 0xFE49) && (c <= 0xFE52))
-                    || ((c >= 0xFE54) && (c <= 0xFE61))
-                    || ((c >= 0xFE6A) && (c <= 0xFE6B))
-                    || ((c >= 0xFF01) && (c <= 0xFF03))
-                    || ((c >= 0xFF05) && (c <= 0xFF0A))
-                    || ((c >= 0xFF0C) && (c <= 0xFF0F))
-                    || ((c >= 0xFF1A) && (c <= 0xFF1B))
-                    || ((c >= 0xFF1F) && (c <= 0xFF20))
-                    || ((c >= 0xFF3B) && (c <= 0xFF3D))
-                    || ((c >= 0xFF61) && (c <= 0xFF65)))
+                if (isUTF8BreakChar(c))
                 {
                     wraphere = linelen + 2; // 2, because AddChar is not till later
                     breakable = true;
                 }
-                else
-                {
-                    switch (c)
-                    {
-                        case 0xFE63:
-                        case 0xFE68:
-                        case 0x3030:
-                        case 0x30FB:
-                        case 0xFF3F:
-                        case 0xFF5B:
-                        case 0xFF5D:
-                            wraphere = linelen + 2;
-                            breakable = true;
-                        default:
-                            break;
-                    }
-                }
                 // but break before a left punctuation
                 if (breakable)
                 {
@@ -1015,10 +1207,27 @@ public class PPrint
     {
         int i, c;
         int[] ci = new int[1];
+        boolean utf8 = "UTF8".equals(this.configuration.getOutCharEncodingName());
+        int plainEnd = start;
 
         for (i = start; textarray != null && i < end; ++i)
         {
-            if (indent + linelen >= this.configuration.wraplen)
+            // text which printChar would leave unchanged is copied as is, if it ends the line or when streaming
+            if (utf8 && i >= plainEnd)
+            {
+                plainEnd = plainTextEnd(mode, textarray, i, end);
+                if (plainEnd > i
+                    && (streaming && !TidyUtils.toBoolean(mode & CDATA)
+                    || endsLine(indent, textarray, i, plainEnd, end)))
+                {
+                    writeLineStart(fout, indent);
+                    fout.outUTF8(textarray, i, plainEnd);
+                    i = plainEnd - 1;
+                    continue;
+                }
+            }
+
+            if (indent + linelen >= this.wraplen)
             {
                 wrapLine(fout, indent);
             }
@@ -1034,7 +1243,7 @@ public class PPrint
 
             if (c == '\n')
             {
-                flushLine(fout, indent);
+                flushLine(fout, indent, true);
                 continue;
             }
 
@@ -1042,6 +1251,134 @@ public class PPrint
         }
     }
 
+    /**
+     * Writes what has been built of the current line so far, leaving the line open.
+     *
+     * @param fout   where to write output
+     * @param indent the indent amount
+     */
+    private void writeLineStart(Out fout, int indent)
+    {
+        if (!lineStarted && (!inAttVal || this.configuration.indentAttributes))
+        {
+            fout.outSpaces(indent);
+        }
+        fout.outc(linebuf, 0, linelen);
+        linelen = 0;
+        wraphere = 0;
+        lineStarted = true;
+    }
+
+    /**
+     * Can the output be streamed? The indentation of a line is decided when the line is flushed, and may differ from
+     * the indentation of the nodes on it. This is safe only if nothing is indented and lines are never wrapped.
+     *
+     * @return <code>true</code> if lines can be written as they are built
+     */
+    private boolean canStream()
+    {
+        return this.wraplen == Integer.MAX_VALUE
+            && !this.configuration.indentContent
+            && !this.configuration.smartIndent
+            && !this.configuration.indentAttributes;
+    }
+
+    /**
+     * Finds the end of the run of UTF-8 text which printChar would add to the line buffer unchanged, with UTF-8 output.
+     *
+     * @param mode      the mode to use
+     * @param textarray the text
+     * @param start     offset to start from
+     * @param end       offset to read up to (exclusive)
+     * @return offset after the last byte of the run
+     */
+    private int plainTextEnd(short mode, byte[] textarray, int start, int end)
+    {
+        boolean spaces = !TidyUtils.toBoolean(mode & NOWRAP);
+        boolean quotes = this.quoteMarks;
+        boolean asciiQuotes = this.configuration.makeClean && this.configuration.asciiChars
+            || this.configuration.makeBare;
+        int i = start;
+
+        while (i < end)
+        {
+            int c = textarray[i] & 0xFF;
+
+            if (c < 0x80)
+            {
+                if (c == '\n' || c == '<' || c == '>' || c == '&' || c == ' ' && !spaces
+                    || (c == '"' || c == '\'') && quotes)
+                {
+                    break;
+                }
+                i++;
+            }
+            else if (c >= 0xC2 && c <= 0xDF)
+            {
+                // 0xC2 0xA0 is &nbsp;
+                if (i + 1 >= end || (textarray[i + 1] & 0xC0) != 0x80 || c == 0xC2 && (textarray[i + 1] & 0xFF) == 0xA0)
+                {
+                    break;
+                }
+                i += 2;
+            }
+            else if ((c & 0xF0) == 0xE0)
+            {
+                if (i + 2 >= end || (textarray[i + 1] & 0xC0) != 0x80 || (textarray[i + 2] & 0xC0) != 0x80)
+                {
+                    break;
+                }
+                int n = ((c & 0x0F) << 12) | ((textarray[i + 1] & 0x3F) << 6) | (textarray[i + 2] & 0x3F);
+                if (!EncodingUtils.isValidUTF8Sequence(n, textarray, i, 3) || asciiQuotes && n >= 0x2013 && n <= 0x201E)
+                {
+                    break;
+                }
+                i += 3;
+            }
+            else
+            {
+                // chars outside the BMP and invalid sequences take the slow path
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Can a run of text be written straight away, completing the current line? The indentation of a line is only known
+     * when the line is flushed, so the run must be followed by a line end in the same text. The whole line must also
+     * be short enough not to be wrapped.
+     *
+     * @param indent    the indent amount
+     * @param textarray the text
+     * @param start     offset of the run
+     * @param runEnd    offset after the run
+     * @param end       offset after the text
+     * @return <code>true</code> if the run ends the line and needs no wrapping
+     */
+    private boolean endsLine(int indent, byte[] textarray, int start, int runEnd, int end)
+    {
+        if (runEnd == end || textarray[runEnd] != '\n')
+        {
+            return false;
+        }
+        if (this.wraplen == Integer.MAX_VALUE)
+        {
+            return true;
+        }
+
+        int length = indent + linelen;
+        for (int i = start; i < runEnd; i++)
+        {
+            // count the first byte of each char
+            if ((textarray[i] & 0xC0) != 0x80)
+            {
+                length++;
+            }
+        }
+        return length < this.wraplen;
+    }
+
     /**
      * @param str the string to print
      */
@@ -1063,23 +1400,37 @@ public class PPrint
      * @param wrappable wrappable or not
      */
     private void printAttrValue(Out fout, int indent, String value, int delim, boolean wrappable)
+    {
+        byte[] valueChars = TidyUtils.getBytes(value);
+        printAttrValue(fout, indent, valueChars, 0, valueChars.length, delim, wrappable);
+    }
+
+    /**
+     * Print the attribute value.
+     *
+     * @param fout       where to write output
+     * @param indent     the indent amount
+     * @param valueChars array holding the UTF-8 encoded value
+     * @param start      start position of the value
+     * @param end        end position of the value
+     * @param delim      the delimiter
+     * @param wrappable  wrappable or not
+     */
+    private void printAttrValue(Out fout, int indent, byte[] valueChars, int start, int end, int delim,
+        boolean wrappable)
     {
         int c;
         int[] ci = new int[1];
         boolean wasinstring = false;
-        byte[] valueChars = null;
         int i;
         short mode = (wrappable ? (short) (NORMAL | ATTRIBVALUE) : (short) (PREFORMATTED | ATTRIBVALUE));
 
-        if (value != null)
-        {
-            valueChars = TidyUtils.getBytes(value);
-        }
-
         // look for ASP, Tango or PHP instructions for computed attribute value
-        if (valueChars != null && valueChars.length >= 5 && valueChars[0] == '<')
+        if (end - start >= 5 && valueChars[start] == '<')
         {
-            if (valueChars[1] == '%' || valueChars[1] == '@' || (new String(valueChars, 0, 5)).equals("<?php"))
+            if (valueChars[start + 1] == '%'
+                || valueChars[start + 1] == '@'
+                || (new String(valueChars, start, 5)).equals("<?php"))
             {
                 mode |= CDATA;
             }
@@ -1096,17 +1447,17 @@ public class PPrint
         if (!this.configuration.xmlOut)
         {
 
-            if (indent + linelen < this.configuration.wraplen)
+            if (indent + linelen < this.wraplen)
             {
                 wraphere = linelen;
             }
 
-            if (indent + linelen >= this.configuration.wraplen)
+            if (indent + linelen >= this.wraplen)
             {
                 wrapLine(fout, indent);
             }
 
-            if (indent + linelen < this.configuration.wraplen)
+            if (indent + linelen < this.wraplen)
             {
                 wraphere = linelen;
             }
@@ -1116,24 +1467,32 @@ public class PPrint
             }
         }
 
-        addC(delim, linelen++);
+        // minified HTML leaves out the quotes where they are not needed
+        boolean quoted = !this.configuration.minify
+            || this.configuration.xmlOut
+            || !canOmitQuotes(valueChars, start, end);
+
+        if (quoted)
+        {
+            addC(delim, linelen++);
+        }
 
-        if (value != null)
+        if (valueChars != null)
         {
             inString = false;
 
-            i = 0;
-            while (i < valueChars.length)
+            i = start;
+            while (i < end)
             {
                 c = (valueChars[i]) & 0xFF; // Convert to unsigned.
 
-                if (wrappable && c == ' ' && indent + linelen < this.configuration.wraplen)
+                if (wrappable && c == ' ' && indent + linelen < this.wraplen)
                 {
                     wraphere = linelen;
                     wasinstring = inString;
                 }
 
-                if (wrappable && wraphere > 0 && indent + linelen >= this.configuration.wraplen)
+                if (wrappable && wraphere > 0 && indent + linelen >= this.wraplen)
                 {
                     wrapAttrVal(fout, indent, wasinstring);
                 }
@@ -1154,7 +1513,7 @@ public class PPrint
                 }
                 else if (c == '"')
                 {
-                    if (this.configuration.quoteMarks)
+                    if (this.quoteMarks)
                     {
                         addC('&', linelen++);
                         addC('q', linelen++);
@@ -1178,7 +1537,7 @@ public class PPrint
                 }
                 else if (c == '\'')
                 {
-                    if (this.configuration.quoteMarks)
+                    if (this.quoteMarks)
                     {
                         addC('&', linelen++);
                         addC('#', linelen++);
@@ -1211,7 +1570,7 @@ public class PPrint
 
                 if (c == '\n')
                 {
-                    flushLine(fout, indent);
+                    flushLine(fout, indent, true);
                     continue;
                 }
 
@@ -1220,7 +1579,50 @@ public class PPrint
         }
 
         inString = false;
-        addC(delim, linelen++);
+        if (quoted)
+        {
+            addC(delim, linelen++);
+        }
+    }
+
+    /**
+     * Can the attribute value be written without quotes? HTML allows unquoted values which are not empty and contain
+     * no spaces, quotes, <code>=</code>, <code>&lt;</code>, <code>&gt;</code> or <code>`</code>. Values ending with
+     * <code>/</code> are quoted too, as they could be read as the end of an empty tag.
+     *
+     * @param valueChars array holding the UTF-8 encoded value
+     * @param start      start position of the value
+     * @param end        end position of the value
+     * @return <code>true</code> if the value needs no quotes
+     */
+    private static boolean canOmitQuotes(byte[] valueChars, int start, int end)
+    {
+        if (valueChars == null || end <= start || valueChars[end - 1] == '/')
+        {
+            return false;
+        }
+
+        for (int i = start; i < end; i++)
+        {
+            switch (valueChars[i])
+            {
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\r':
+                case '\f':
+                case '"':
+                case '\'':
+                case '=':
+                case '<':
+                case '>':
+                case '`':
+                    return false;
+                default:
+                    break;
+            }
+        }
+        return true;
     }
 
     /**
@@ -1244,7 +1646,7 @@ public class PPrint
 
         name = attr.attribute;
 
-        if (indent + linelen >= this.configuration.wraplen)
+        if (indent + linelen >= this.wraplen)
         {
             wrapLine(fout, indent);
         }
@@ -1261,7 +1663,7 @@ public class PPrint
             }
         }
 
-        if (indent + linelen < this.configuration.wraplen)
+        if (indent + linelen < this.wraplen)
         {
             wraphere = linelen;
             addC(' ', linelen++);
@@ -1279,12 +1681,14 @@ public class PPrint
                 linelen++);
         }
 
-        if (indent + linelen >= this.configuration.wraplen)
+        if (indent + linelen >= this.wraplen)
         {
             wrapLine(fout, indent);
         }
 
-        if (attr.value == null)
+        // read once: the tree may be printed by several threads, see AttVal.getValue()
+        byte[] valueBytes = attr.valueBytes;
+        if (valueBytes == null && attr.getValue() == null)
         {
             if (this.configuration.xmlTags || this.configuration.xmlOut)
             {
@@ -1294,7 +1698,7 @@ public class PPrint
             {
                 printAttrValue(fout, indent, "", attr.delim, true);
             }
-            else if (indent + linelen < this.configuration.wraplen)
+            else if (indent + linelen < this.wraplen)
             {
                 wraphere = linelen;
             }
@@ -1302,7 +1706,15 @@ public class PPrint
         }
         else
         {
-            printAttrValue(fout, indent, attr.value, attr.delim, wrappable);
+            if (valueBytes != null)
+            {
+                // not modified since it was read: print the lexer's bytes, no need to create a String
+                printAttrValue(fout, indent, valueBytes, attr.valueStart, attr.valueEnd, attr.delim, wrappable);
+            }
+            else
+            {
+                printAttrValue(fout, indent, attr.getValue(), attr.delim, wrappable);
+            }
         }
     }
 
@@ -1436,12 +1848,12 @@ public class PPrint
 
         if ((node.type != Node.START_END_TAG || configuration.xHTML) && !TidyUtils.toBoolean(mode & PREFORMATTED))
         {
-            if (indent + linelen >= this.configuration.wraplen)
+            if (indent + linelen >= this.wraplen)
             {
                 wrapLine(fout, indent);
             }
 
-            if (indent + linelen < this.configuration.wraplen)
+            if (indent + linelen < this.wraplen)
             {
 
                 // wrap after start tag if is <br/> or if it's not inline
@@ -1457,7 +1869,7 @@ public class PPrint
         }
         else
         {
-            condFlushLine(fout, indent, !hasPreAncestor(node));
+            condFlushLine(fout, indent, !this.configuration.minify && !hasPreAncestor(node));
         }
 
     }
@@ -1497,7 +1909,7 @@ public class PPrint
         // Netscape ignores SGML standard by not ignoring a line break before </A> or </U> etc.
         // To avoid rendering this as an underlined space, I disable line wrapping before inline end tags
 
-        // if (indent + linelen < this.configuration.wraplen && !TidyUtils.toBoolean(mode & NOWRAP))
+        // if (indent + linelen < this.wraplen && !TidyUtils.toBoolean(mode & NOWRAP))
         // {
         // wraphere = linelen;
         // }
@@ -1530,7 +1942,13 @@ public class PPrint
             return;
         }
 
-        if (indent + linelen < this.configuration.wraplen)
+        // conditional comments are kept, they may change the rendering
+        if (this.configuration.minify && !this.configuration.keepComments && !isConditionalComment(node))
+        {
+            return;
+        }
+
+        if (indent + linelen < this.wraplen)
         {
             wraphere = linelen;
         }
@@ -1553,6 +1971,42 @@ public class PPrint
         }
     }
 
+    /**
+     * Is the comment an Internet Explorer conditional comment, <code>&lt;!--[if ...]&gt;</code> or
+     * <code>&lt;![endif]--&gt;</code>?
+     *
+     * @param node comment node
+     * @return <code>true</code> if the comment is a conditional comment
+     */
+    private static boolean isConditionalComment(Node node)
+    {
+        return startsWith(node, "[if") || startsWith(node, "<![endif]");
+    }
+
+    /**
+     * Does the text of the node start with the given ASCII string?
+     *
+     * @param node   node
+     * @param prefix ASCII string
+     * @return <code>true</code> if the text starts with prefix
+     */
+    private static boolean startsWith(Node node, String prefix)
+    {
+        if (node.textarray == null || node.end - node.start < prefix.length())
+        {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length(); i++)
+        {
+            if (node.textarray[node.start + i] != prefix.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Print document type.
      *
@@ -1565,11 +2019,12 @@ public class PPrint
     {
         int i, c = 0;
         short mode = 0;
-        boolean q = this.configuration.quoteMarks;
+        boolean q = this.quoteMarks;
 
-        this.configuration.quoteMarks = false;
+        this.quoteMarks = false;
+        escapes = null;
 
-        if (indent + linelen < this.configuration.wraplen)
+        if (indent + linelen < this.wraplen)
         {
             wraphere = linelen;
         }
@@ -1587,14 +2042,14 @@ public class PPrint
         addC('E', linelen++);
         addC(' ', linelen++);
 
-        if (indent + linelen < this.configuration.wraplen)
+        if (indent + linelen < this.wraplen)
         {
             wraphere = linelen;
         }
 
         for (i = node.start; i < node.end; ++i)
         {
-            if (indent + linelen >= this.configuration.wraplen)
+            if (indent + linelen >= this.wraplen)
             {
                 wrapLine(fout, indent);
             }
@@ -1624,20 +2079,21 @@ public class PPrint
 
             if (c == '\n')
             {
-                flushLine(fout, indent);
+                flushLine(fout, indent, true);
                 continue;
             }
 
             printChar(c, mode);
         }
 
-        if (linelen < this.configuration.wraplen)
+        if (linelen < this.wraplen)
         {
             wraphere = linelen;
         }
 
         addC('>', linelen++);
-        this.configuration.quoteMarks = q;
+        this.quoteMarks = q;
+        escapes = null;
         condFlushLine(fout, indent);
     }
 
@@ -1650,7 +2106,7 @@ public class PPrint
      */
     private void printPI(Out fout, int indent, Node node)
     {
-        if (indent + linelen < this.configuration.wraplen)
+        if (indent + linelen < this.wraplen)
         {
             wraphere = linelen;
         }
@@ -1679,7 +2135,7 @@ public class PPrint
      */
     private void printXmlDecl(Out fout, int indent, Node node)
     {
-        if (indent + linelen < this.configuration.wraplen)
+        if (indent + linelen < this.wraplen)
         {
             wraphere = linelen;
         }
@@ -1711,13 +2167,13 @@ public class PPrint
      */
     private void printAsp(Out fout, int indent, Node node)
     {
-        int savewraplen = this.configuration.wraplen;
+        int savewraplen = this.wraplen;
 
         // disable wrapping if so requested
 
         if (!this.configuration.wrapAsp || !this.configuration.wrapJste)
         {
-            this.configuration.wraplen = 0xFFFFFF; // a very large number
+            this.wraplen = 0xFFFFFF; // a very large number
         }
 
         addC('<', linelen++);
@@ -1728,7 +2184,7 @@ public class PPrint
         addC('%', linelen++);
         addC('>', linelen++);
         /* condFlushLine(fout, indent); */
-        this.configuration.wraplen = savewraplen;
+        this.wraplen = savewraplen;
     }
 
     /**
@@ -1740,13 +2196,13 @@ public class PPrint
      */
     private void printJste(Out fout, int indent, Node node)
     {
-        int savewraplen = this.configuration.wraplen;
+        int savewraplen = this.wraplen;
 
         // disable wrapping if so requested
 
         if (!this.configuration.wrapJste)
         {
-            this.configuration.wraplen = 0xFFFFFF; // a very large number
+            this.wraplen = 0xFFFFFF; // a very large number
         }
 
         addC('<', linelen++);
@@ -1757,7 +2213,7 @@ public class PPrint
         addC('#', linelen++);
         addC('>', linelen++);
         // condFlushLine(fout, indent);
-        this.configuration.wraplen = savewraplen;
+        this.wraplen = savewraplen;
     }
 
     /**
@@ -1769,13 +2225,13 @@ public class PPrint
      */
     private void printPhp(Out fout, int indent, Node node)
     {
-        int savewraplen = this.configuration.wraplen;
+        int savewraplen = this.wraplen;
 
         // disable wrapping if so requested
 
         if (!this.configuration.wrapPhp)
         {
-            this.configuration.wraplen = 0xFFFFFF; // a very large number
+            this.wraplen = 0xFFFFFF; // a very large number
         }
 
         addC('<', linelen++);
@@ -1786,7 +2242,7 @@ public class PPrint
         addC('?', linelen++);
         addC('>', linelen++);
         // PCondFlushLine(fout, indent);
-        this.configuration.wraplen = savewraplen;
+        this.wraplen = savewraplen;
     }
 
     /**
@@ -1796,7 +2252,7 @@ public class PPrint
      */
     private void printCDATA(Out fout, int indent, Node node)
     {
-        int savewraplen = this.configuration.wraplen;
+        int savewraplen = this.wraplen;
 
         if (!this.configuration.indentCdata)
         {
@@ -1806,7 +2262,7 @@ public class PPrint
         condFlushLine(fout, indent);
 
         // disable wrapping
-        this.configuration.wraplen = 0xFFFFFF; // a very large number
+        this.wraplen = 0xFFFFFF; // a very large number
 
         addC('<', linelen++);
         addC('!', linelen++);
@@ -1824,7 +2280,7 @@ public class PPrint
         addC(']', linelen++);
         addC('>', linelen++);
         condFlushLine(fout, indent);
-        this.configuration.wraplen = savewraplen;
+        this.wraplen = savewraplen;
     }
 
     /**
@@ -1834,13 +2290,13 @@ public class PPrint
      */
     private void printSection(Out fout, int indent, Node node)
     {
-        int savewraplen = this.configuration.wraplen;
+        int savewraplen = this.wraplen;
 
         // disable wrapping if so requested
 
         if (!this.configuration.wrapSection)
         {
-            this.configuration.wraplen = 0xFFFFFF; // a very large number
+            this.wraplen = 0xFFFFFF; // a very large number
         }
 
         addC('<', linelen++);
@@ -1858,7 +2314,7 @@ public class PPrint
         addC(']', linelen++);
         addC('>', linelen++);
         // PCondFlushLine(fout, indent);
-        this.configuration.wraplen = savewraplen;
+        this.wraplen = savewraplen;
     }
 
     /**
@@ -1986,17 +2442,17 @@ public class PPrint
             AttVal type = node.getAttrByName("type");
             if (type != null)
             {
-                if ("text/javascript".equalsIgnoreCase(type.value))
+                if ("text/javascript".equalsIgnoreCase(type.getValue()))
                 {
                     commentStart = JS_COMMENT_START;
                     commentEnd = JS_COMMENT_END;
                 }
-                else if ("text/css".equalsIgnoreCase(type.value))
+                else if ("text/css".equalsIgnoreCase(type.getValue()))
                 {
                     commentStart = CSS_COMMENT_START;
                     commentEnd = CSS_COMMENT_END;
                 }
-                else if ("text/vbscript".equalsIgnoreCase(type.value))
+                else if ("text/vbscript".equalsIgnoreCase(type.getValue()))
                 {
                     commentStart = VB_COMMENT_START;
                     commentEnd = VB_COMMENT_END;
@@ -2007,16 +2463,16 @@ public class PPrint
             if (!hasCData)
             {
                 // disable wrapping
-                int savewraplen = lexer.configuration.wraplen;
-                lexer.configuration.wraplen = 0xFFFFFF; // a very large number
+                int savewraplen = this.wraplen;
+                this.wraplen = 0xFFFFFF; // a very large number
 
                 linelen = addAsciiString(commentStart, linelen);
                 linelen = addAsciiString(CDATA_START, linelen);
                 linelen = addAsciiString(commentEnd, linelen);
-                condFlushLine(fout, indent);
+                condFlushLine(fout, indent, true);
 
                 // restore wrapping
-                lexer.configuration.wraplen = savewraplen;
+                this.wraplen = savewraplen;
             }
         }
 
@@ -2042,8 +2498,8 @@ public class PPrint
             if (!hasCData)
             {
                 // disable wrapping
-                int ix, savewraplen = lexer.configuration.wraplen;
-                lexer.configuration.wraplen = 0xFFFFFF; // a very large number
+                int ix, savewraplen = this.wraplen;
+                this.wraplen = 0xFFFFFF; // a very large number
 
                 // Add spaces to last text node to align w/ indent
                 if (contentIndent > 0 && linelen < contentIndent)
@@ -2060,7 +2516,7 @@ public class PPrint
                 linelen = addAsciiString(commentEnd, linelen);
 
                 // restore wrapping
-                lexer.configuration.wraplen = savewraplen;
+                this.wraplen = savewraplen;
                 condFlushLine(fout, 0);
             }
         }
@@ -2178,7 +2634,7 @@ public class PPrint
      */
     public void printTree(Out fout, short mode, int indent, Lexer lexer, Node node)
     {
-        Node content, last;
+        Node content;
         TagTable tt = this.configuration.tt;
 
         if (node == null)
@@ -2186,6 +2642,16 @@ public class PPrint
             return;
         }
 
+        checkInterrupted();
+
+        // when streaming, nothing is kept in the line buffer between nodes. CDATA content is excluded: printScriptStyle
+        // looks at the line buffer after printing it
+        streaming = canStream();
+        if (streaming && linelen > 0 && !TidyUtils.toBoolean(mode & CDATA))
+        {
+            writeLineStart(fout, indent);
+        }
+
         if (node.type == Node.TEXT_NODE || (node.type == Node.CDATA_TAG && lexer.configuration.escapeCdata))
         {
             printText(fout, mode, indent, node.textarray, node.start, node.end);
@@ -2393,31 +2859,15 @@ public class PPrint
                         ? indent + this.configuration.spaces
                         : indent), lexer);
                 }
+                else if (node.tag == tt.tagBody
+                    && this.configuration.parallelPrint
+                    && printContentInParallel(fout, mode, indent, lexer, node))
+                {
+                    // printed
+                }
                 else
                 {
-                    last = null;
-
-                    for (content = node.content; content != null; content = content.next)
-                    {
-                        // kludge for naked text before block level tag
-                        if (last != null
-                            && !this.configuration.indentContent
-                            && last.type == Node.TEXT_NODE
-                            && content.tag != null
-                            && !TidyUtils.toBoolean(content.tag.model & Dict.CM_INLINE))
-                        {
-                            flushLine(fout, indent);
-                        }
-
-                        printTree(
-                            fout,
-                            mode,
-                            (shouldIndent(node) ? indent + this.configuration.spaces : indent),
-                            lexer,
-                            content);
-
-                        last = content;
-                    }
+                    printContent(fout, mode, indent, lexer, node, node.content, null);
                 }
 
                 // don't flush line for td and th
@@ -2466,6 +2916,189 @@ public class PPrint
         }
     }
 
+    /**
+     * Prints a range of the content of an element.
+     *
+     * @param fout   where to write output
+     * @param mode   the mode to use
+     * @param indent the indent amount of the element
+     * @param lexer  the Lexer to use
+     * @param node   the element
+     * @param from   first node to print
+     * @param to     node after the last one to print, or <code>null</code>
+     */
+    private void printContent(Out fout, short mode, int indent, Lexer lexer, Node node, Node from, Node to)
+    {
+        Node last = null;
+
+        for (Node content = from; content != to; content = content.next)
+        {
+            // kludge for naked text before block level tag
+            if (last != null
+                && !this.configuration.indentContent
+                && last.type == Node.TEXT_NODE
+                && content.tag != null
+                && !TidyUtils.toBoolean(content.tag.model & Dict.CM_INLINE))
+            {
+                flushLine(fout, indent);
+            }
+
+            printTree(fout, mode, (shouldIndent(node) ? indent + this.configuration.spaces : indent), lexer, content);
+
+            last = content;
+        }
+    }
+
+    /**
+     * Prints the content of a large element in chunks, each but the first one on the common fork join pool. A chunk
+     * starts with a block level element following another element: printing it starts by flushing the line, so it
+     * does not depend on anything printed before and can be printed by another PPrint. Chunks are printed to their
+     * own buffers, written out in order, and the line left open by the last one is taken over, which gives the same
+     * output as printing serially. Each chunk is printed by printContent(), as the content is when printed serially.
+     *
+     * @param fout   where to write output
+     * @param mode   the mode to use
+     * @param indent the indent amount of the element
+     * @param lexer  the Lexer to use
+     * @param node   the element
+     * @return <code>false</code> if the content is too small to be split, in which case nothing has been printed
+     */
+    private boolean printContentInParallel(final Out fout, final short mode, final int indent, final Lexer lexer,
+        final Node node)
+    {
+        int threshold = Math.max(1, this.configuration.parallelPrintThreshold);
+        List<Node> starts = new ArrayList<Node>();
+        int size = 0;
+        Node last = null;
+
+        starts.add(node.content);
+        for (Node content = node.content; content != null; content = content.next)
+        {
+            if (size >= threshold && last.type != Node.TEXT_NODE && startsWithFlush(content))
+            {
+                starts.add(content);
+                size = 0;
+            }
+            size += countNodes(content);
+            last = content;
+        }
+        starts.add(null);
+
+        if (size < threshold && starts.size() > 2)
+        {
+            // the last chunk is too small to be worth a task, add it to the one before
+            starts.remove(starts.size() - 2);
+        }
+        if (starts.size() < 3)
+        {
+            // a single chunk
+            return false;
+        }
+
+        if (this.owner == null)
+        {
+            this.owner = Thread.currentThread();
+        }
+
+        List<ForkJoinTask<PPrint>> tasks = new ArrayList<ForkJoinTask<PPrint>>();
+        for (int i = 1; i < starts.size() - 1; i++)
+        {
+            final Node from = starts.get(i);
+            final Node to = starts.get(i + 1);
+            tasks.add(ForkJoinPool.commonPool().submit(new Callable<PPrint>()
+            {
+
+                @Override
+                public PPrint call()
+                {
+                    return printChunk(mode, indent, lexer, node, from, to);
+                }
+            }));
+        }
+
+        printContent(fout, mode, indent, lexer, node, starts.get(0), starts.get(1));
+
+        int contentIndent = shouldIndent(node) ? indent + this.configuration.spaces : indent;
+        for (ForkJoinTask<PPrint> task : tasks)
+        {
+            // the next chunk starts by flushing the line
+            condFlushLine(fout, contentIndent);
+
+            PPrint chunk = task.join();
+            fout.outc(chunk.chunkOutput, 0, chunk.chunkOutput.length);
+
+            this.linebuf = chunk.linebuf;
+            this.lbufsize = chunk.lbufsize;
+            this.linelen = chunk.linelen;
+            this.wraphere = chunk.wraphere;
+            this.lineStarted = chunk.lineStarted;
+            this.inAttVal = chunk.inAttVal;
+            this.inString = chunk.inString;
+        }
+        return true;
+    }
+
+    /**
+     * Prints a chunk of content, for printContentInParallel.
+     *
+     * @param mode   the mode to use
+     * @param indent the indent amount of the element
+     * @param lexer  the Lexer to use
+     * @param node   the element
+     * @param from   first node of the chunk
+     * @param to     node after the chunk, or <code>null</code>
+     * @return a PPrint holding the output and the line left open
+     */
+    private PPrint printChunk(short mode, int indent, Lexer lexer, Node node, Node from, Node to)
+    {
+        // chunks may be smaller than the interval between checks
+        TidyUtils.checkInterrupted(this.owner);
+
+        PPrint chunk = new PPrint(this.configuration);
+        chunk.owner = this.owner;
+        CharArrayWriter writer = new CharArrayWriter();
+        Out out = new OutBufferedImpl(this.configuration, writer);
+
+        chunk.printContent(out, mode, indent, lexer, node, from, to);
+        out.flush();
+
+        chunk.chunkOutput = writer.toCharArray();
+        return chunk;
+    }
+
+    /**
+     * Does printTree start by flushing the line when printing this node? True for block level elements, except script
+     * and style.
+     *
+     * @param node the node
+     * @return <code>true</code> if printing the node starts with condFlushLine
+     */
+    private boolean startsWithFlush(Node node)
+    {
+        TagTable tt = this.configuration.tt;
+        return (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+            && node.tag != null
+            && !TidyUtils.toBoolean(node.tag.model & Dict.CM_INLINE)
+            && node.tag != tt.tagScript
+            && node.tag != tt.tagStyle;
+    }
+
+    /**
+     * Counts the nodes in a subtree.
+     *
+     * @param node root of the subtree
+     * @return number of nodes
+     */
+    private static int countNodes(Node node)
+    {
+        int count = 1;
+        for (Node content = node.content; content != null; content = content.next)
+        {
+            count += countNodes(content);
+        }
+        return count;
+    }
+
     /**
      * @param fout   where to write output
      * @param mode   the mode to use
@@ -2482,6 +3115,11 @@ public class PPrint
             return;
         }
 
+        checkInterrupted();
+
+        // content is indented in XML
+        streaming = false;
+
         if (node.type == Node.TEXT_NODE || (node.type == Node.CDATA_TAG && lexer.configuration.escapeCdata))
         {
             printText(fout, mode, indent, node.textarray, node.start, node.end);
@@ -2613,30 +3251,36 @@ public class PPrint
      */
     public int countSlides(Node node)
     {
-        // assume minimum of 1 slide
-        int n = 1;
+        return slideStarts(node).size();
+    }
 
+    /**
+     * Splits the body content into slides, in one pass. A slide starts at each h2 element, and at the first node of
+     * the body if it is not an h2: an empty first slide is avoided (fix for [431716]), but there is at least one slide.
+     *
+     * @param body the body node
+     * @return the first node of each slide, <code>null</code> for an empty slide
+     */
+    private List<Node> slideStarts(Node body)
+    {
         TagTable tt = this.configuration.tt;
+        List<Node> starts = new ArrayList<Node>();
+        Node first = body != null ? body.content : null;
 
-        // fix for [431716] avoid empty slides
-        if (node != null && node.content != null && node.content.tag == tt.tagH2)
+        if (first == null || first.tag != tt.tagH2)
         {
-            // "first" slide is empty, so ignore it
-            n--;
+            starts.add(first);
         }
 
-        if (node != null)
+        for (Node node = first; node != null; node = node.next)
         {
-            for (node = node.content; node != null; node = node.next)
+            if (node.tag == tt.tagH2)
             {
-                if (node.tag == tt.tagH2)
-                {
-                    ++n;
-                }
+                starts.add(node);
             }
         }
 
-        return n;
+        return starts;
     }
 
     /**
@@ -2686,8 +3330,7 @@ public class PPrint
     }
 
     /**
-     * Called from printTree to print the content of a slide from the node slide content.
-     * On return slide content points to the node starting the next slide or null.
+     * Called from printTree to print the content of a slide, from the node slidecontent up to slideEnd.
      * The variables slide and count are used to customise the navigation
      * bar.
      *
@@ -2754,18 +3397,13 @@ public class PPrint
             slidecontent = slidecontent.next;
         }
 
-        // now continue until we reach the next h2
+        // now continue until we reach the next slide
 
         last = null;
         content = slidecontent;
 
-        for (; content != null; content = content.next)
+        for (; content != slideEnd; content = content.next)
         {
-            if (content.tag == tt.tagH2)
-            {
-                break;
-            }
-
             // kludge for naked text before block level tag
             if (last != null
                 && !this.configuration.indentContent
@@ -2787,8 +3425,6 @@ public class PPrint
             last = content;
         }
 
-        slidecontent = content;
-
         // now print epilog
 
         condFlushLine(fout, indent);
@@ -2846,43 +3482,63 @@ public class PPrint
     }
 
     /**
-     * Creates slides from h2.
+     * Creates slides from h2. The body is split into slides first, then the slide files are printed and written
+     * concurrently on the common fork join pool, each one by its own PPrint. Slide files which can't be written are
+     * reported in slide order once all slides are done.
      *
      * @param lexer Lexer
      * @param root  root node
+     * @return number of slide files which could not be written
      */
-    public void createSlides(Lexer lexer, Node root)
+    public int createSlides(final Lexer lexer, final Node root)
     {
         final File slidesDir = createSlidesDir();
         Node body;
-        File slideFile;
 
         NumberFormat numberFormat = NumberFormat.getInstance();
         numberFormat.setMinimumIntegerDigits(3);
 
         body = root.findBody(lexer.configuration.tt);
-        count = countSlides(body);
-        slidecontent = body.content;
+        List<Node> starts = slideStarts(body);
+        count = starts.size();
 
         addTransitionEffect(lexer, root, 3.0);
 
-        for (slide = 1; slide <= count; ++slide)
+        List<PPrint> slidePrinters = new ArrayList<PPrint>();
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for (int i = 0; i < count; i++)
         {
-            slideFile = createSlideFile(slidesDir, numberFormat);
+            final PPrint slidePrinter = new PPrint(this.configuration);
+            slidePrinter.slide = i + 1;
+            slidePrinter.count = count;
+            slidePrinter.slidecontent = starts.get(i);
+            slidePrinter.slideEnd = i + 1 < count ? starts.get(i + 1) : null;
+            slidePrinter.owner = this.owner != null ? this.owner : Thread.currentThread();
+            slidePrinters.add(slidePrinter);
 
-            try
+            tasks.add(ForkJoinPool.commonPool().submit(new Runnable()
             {
-                FileOutputStream fis = new FileOutputStream(slideFile);
-                Out out = OutFactory.getOut(configuration, fis);
 
-                printTree(out, (short) 0, 0, lexer, root);
-                flushLine(out, 0);
+                @Override
+                public void run()
+                {
+                    slidePrinter.printSlideFile(slidesDir, lexer, root);
+                }
+            }));
+        }
 
-                fis.close();
-            }
-            catch (IOException e)
+        for (ForkJoinTask<?> task : tasks)
+        {
+            task.join();
+        }
+
+        int failed = 0;
+        for (PPrint slidePrinter : slidePrinters)
+        {
+            if (slidePrinter.slideError != null)
             {
-                System.err.println(slideFile + e.toString());
+                failed++;
+                lexer.report.outputError(lexer.errout, slidePrinter.slideFile.getPath(), slidePrinter.slideError);
             }
         }
 
@@ -2890,20 +3546,73 @@ public class PPrint
         // until no such file is found.
 
         // #427666 - fix by Eric Rossen 02 Aug 00
-        while (createSlideFile(slidesDir, numberFormat).delete())
+        slide = count + 1;
+        while (createSlideFile(slidesDir, numberFormat, slide).delete())
         {
             ++slide;
         }
+
+        return failed;
     }
 
     /**
-     * Create the slides output directory if necessary.
+     * Prints the current slide to its file, for createSlides. An I/O error is kept in <code>slideError</code>, to be
+     * reported by createSlides.
+     *
+     * @param slidesDir the slides directory or null for working directory
+     * @param lexer     Lexer
+     * @param root      root node
+     */
+    private void printSlideFile(File slidesDir, Lexer lexer, Node root)
+    {
+        // slides may be smaller than the interval between checks
+        TidyUtils.checkInterrupted(this.owner);
+
+        NumberFormat numberFormat = NumberFormat.getInstance();
+        numberFormat.setMinimumIntegerDigits(3);
+
+        slideFile = createSlideFile(slidesDir, numberFormat, slide);
+
+        try
+        {
+            FileOutputStream fos = new FileOutputStream(slideFile);
+            try
+            {
+                Out out = OutFactory.getOut(configuration, fos.getChannel());
+
+                printTree(out, (short) 0, 0, lexer, root);
+                flushLine(out, 0);
+                out.flush();
+
+                if (out.getError() != null)
+                {
+                    throw out.getError();
+                }
+            }
+            finally
+            {
+                fos.close();
+            }
+        }
+        catch (IOException e)
+        {
+            slideError = e;
+        }
+    }
+
+    /**
+     * Create the slides output directory if necessary. The directory is the <code>slides-dir</code> option, or the
+     * <code>org.jtidy.slides.dir</code> system property if the option is not set.
      *
      * @return the path to the directory created or null if not set
      */
     private File createSlidesDir()
     {
-        final String path = System.getProperty("org.jtidy.slides.dir");
+        String path = this.configuration.slidesDir;
+        if (path == null || path.isEmpty())
+        {
+            path = System.getProperty("org.jtidy.slides.dir");
+        }
         if (path == null || path.isEmpty())
             return null;
         final File d = new File(path);
@@ -2916,11 +3625,12 @@ public class PPrint
      *
      * @param parent the parent directory to use or null for working directory
      * @param frm    the number format to use for file name
+     * @param number the slide number
      * @return file instance
      */
-    private File createSlideFile(final File parent, final NumberFormat frm)
+    private File createSlideFile(final File parent, final NumberFormat frm, final int number)
     {
-        final String fname = "slide" + frm.format(slide) + ".html";
+        final String fname = "slide" + frm.format(number) + ".html";
         if (parent == null)
         {
             return new File(fname);
@@ -172,79 +172,215 @@ public final class ParserImpl
     }
 
     /**
-     * Parse tag.
-     * @param lexer the Lexer to use
-     * @param node the node to use
-     * @param mode the mode to use
+     * Parses an element with the given state, and the child elements with theirs. Parsing states are kept on a stack
+     * rather than by recursive calls, so parsing deeply nested documents doesn't need a deep thread stack: a state
+     * returns the state of a child element instead of parsing it, and is resumed when the child element is done. Past
+     * max-depth the content of child elements is not parsed, and the parse is stopped.
+     * @param state parsing state of the element
      */
-    protected static void parseTag(Lexer lexer, Node node, short mode)
+    static void run(ParseState state)
     {
-        // Fix by GLP 2000-12-21. Need to reset insertspace if this
-        // is both a non-inline and empty tag (base, link, meta, isindex, hr, area).
-        if ((node.tag.model & Dict.CM_EMPTY) != 0)
-        {
-            lexer.waswhite = false;
-        }
-        else if ((node.tag.model & Dict.CM_INLINE) == 0)
-        {
-            lexer.insertspace = false;
-        }
+        int maxDepth = state.lexer.configuration.maxDepth > 0 ? state.lexer.configuration.maxDepth : Integer.MAX_VALUE;
+        state.depth = 1;
+        ParseState next = state.start();
 
-        if (node.tag.getParser() == null)
+        while (true)
         {
-            return;
+            if (next == null)
+            {
+                // element done, resume its parent
+                state = state.parent;
+                if (state == null)
+                {
+                    return;
+                }
+                next = state.resume();
+            }
+            else if (next == state)
+            {
+                next = state.resume();
+            }
+            else if (state.depth >= maxDepth)
+            {
+                // the child element is left empty
+                state.lexer.stopParse(null, Report.DEPTH_LIMIT_EXCEEDED);
+                next = state.resume();
+            }
+            else
+            {
+                next.parent = state;
+                next.depth = state.depth + 1;
+                state = next;
+                next = state.start();
+            }
         }
+    }
+
+    /**
+     * Parser keeping the state of the element on the parse stack, see {@link ParserImpl#run(ParseState)}.
+     */
+    public abstract static class ElementParser implements Parser
+    {
 
-        if (node.type == Node.START_END_TAG)
+        /**
+         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         */
+        @Override
+        public final void parse(Lexer lexer, Node node, short mode)
         {
-            Node.trimEmptyElement(lexer, node);
-            return;
+            run(newState(lexer, node, mode));
         }
 
-        node.tag.getParser().parse(lexer, node, mode);
+        /**
+         * Creates the parsing state for an element.
+         * @param lexer the Lexer to use
+         * @param node node created by the lexer upon seeing the start tag, or by the parser when the start tag is
+         * inferred
+         * @param mode content mode
+         * @return parsing state
+         */
+        abstract ParseState newState(Lexer lexer, Node node, short mode);
+
     }
 
     /**
-     * Move node to the head, where element is used as starting point in hunt for head. 
-     * Normally called during parsing.
-     * @param lexer the Lexer to use
-     * @param element the element to use
-     * @param node the node to use
+     * Parsing state of an element, see {@link ParserImpl#run(ParseState)}.
      */
-    protected static void moveToHead(Lexer lexer, Node element, Node node)
+    abstract static class ParseState
     {
-        Node head;
-        node.removeNode(); // make sure that node is isolated
 
-        TagTable tt = lexer.configuration.tt;
+        /**
+         * the Lexer to use.
+         */
+        protected final Lexer lexer;
+
+        /**
+         * content mode.
+         */
+        protected short mode;
+
+        /**
+         * state of the parent element, resumed when this element is done.
+         */
+        ParseState parent;
+
+        /**
+         * number of elements on the parse stack, up to this one.
+         */
+        int depth;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param mode content mode
+         */
+        ParseState(Lexer lexer, short mode)
+        {
+            this.lexer = lexer;
+            this.mode = mode;
+        }
 
-        if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+        /**
+         * Starts parsing the element, same as resume() unless there is something to do first.
+         * @return see resume()
+         */
+        ParseState start()
         {
-            lexer.report.warning(lexer, element, node, Report.TAG_NOT_ALLOWED_IN);
+            return resume();
+        }
+
+        /**
+         * Parses the element until it is done or the content of a child element has to be parsed.
+         * @return the state of the child element, this state if it has to be resumed right away, or
+         * <code>null</code> if the element is done
+         */
+        abstract ParseState resume();
 
-            while (element.tag != tt.tagHtml)
+        /**
+         * Parse tag.
+         * @param node the node to use
+         * @param mode the mode to use
+         * @return the state parsing the node, or this state if the node has no content to parse
+         */
+        protected final ParseState parseTag(Node node, short mode)
+        {
+            // Fix by GLP 2000-12-21. Need to reset insertspace if this
+            // is both a non-inline and empty tag (base, link, meta, isindex, hr, area).
+            if ((node.tag.model & Dict.CM_EMPTY) != 0)
             {
-                element = element.parent;
+                lexer.waswhite = false;
+            }
+            else if ((node.tag.model & Dict.CM_INLINE) == 0)
+            {
+                lexer.insertspace = false;
             }
 
-            for (head = element.content; head != null; head = head.next)
+            Parser parser = node.tag.getParser();
+
+            if (parser == null)
             {
-                if (head.tag == tt.tagHead)
-                {
-                    head.insertNodeAtEnd(node);
-                    break;
-                }
+                return this;
+            }
+
+            if (node.type == Node.START_END_TAG)
+            {
+                Node.trimEmptyElement(lexer, node);
+                return this;
             }
 
-            if (node.tag.getParser() != null)
+            if (parser instanceof ElementParser)
             {
-                parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
+                return ((ElementParser) parser).newState(lexer, node, mode);
             }
+
+            parser.parse(lexer, node, mode);
+            return this;
         }
-        else
+
+        /**
+         * Move node to the head, where element is used as starting point in hunt for head.
+         * @param element the element to use
+         * @param node the node to use
+         * @return the state parsing the node, or this state if the node has no content to parse
+         */
+        protected final ParseState moveToHead(Node element, Node node)
         {
-            lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+            Node head;
+            node.removeNode(); // make sure that node is isolated
+
+            TagTable tt = lexer.configuration.tt;
+
+            if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+            {
+                lexer.report.warning(lexer, element, node, Report.TAG_NOT_ALLOWED_IN);
+
+                while (element.tag != tt.tagHtml)
+                {
+                    element = element.parent;
+                }
+
+                for (head = element.content; head != null; head = head.next)
+                {
+                    if (head.tag == tt.tagHead)
+                    {
+                        head.insertNodeAtEnd(node);
+                        break;
+                    }
+                }
+
+                if (node.tag.getParser() != null)
+                {
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE);
+                }
+            }
+            else
+            {
+                lexer.report.warning(lexer, element, node, Report.DISCARDING_UNEXPECTED);
+            }
+
+            return this;
         }
+
     }
 
     /**
@@ -262,17 +398,85 @@ public final class ParserImpl
     /**
      * Parser for HTML.
      */
-    public static class ParseHTML implements Parser
+    public static class ParseHTML extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         */
+        @Override
+        ParseState newState(Lexer lexer, Node html, short mode)
+        {
+            return new HtmlState(lexer, html, mode);
+        }
+
+    }
+
+    /**
+     * Parsing state for HTML.
+     */
+    private static final class HtmlState extends ParseState
+    {
+
+        /**
+         * parsing the content after the head.
+         */
+        private static final int CONTENT = 0;
+
+        /**
+         * a frameset element has been parsed.
+         */
+        private static final int FRAMESET_DONE = 1;
+
+        /**
+         * the body element has been parsed.
+         */
+        private static final int BODY_DONE = 2;
+
+        /**
+         * the implied body element has been parsed.
+         */
+        private static final int DONE = 3;
+
+        /**
+         * the html element.
+         */
+        private final Node html;
+
+        /**
+         * the first frameset element.
+         */
+        private Node frameset;
+
+        /**
+         * the noframes element of the frameset.
+         */
+        private Node noframes;
+
+        /**
+         * what to do on resume.
+         */
+        private int next = CONTENT;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param html the html element
+         * @param mode content mode
+         */
+        HtmlState(Lexer lexer, Node html, short mode)
+        {
+            super(lexer, mode);
+            this.html = html;
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
          */
-        public void parse(Lexer lexer, Node html, short mode)
+        @Override
+        ParseState start()
         {
             Node node, head;
-            Node frameset = null;
-            Node noframes = null;
 
             lexer.configuration.xmlTags = false;
             lexer.seenEndBody = false;
@@ -312,7 +516,47 @@ public final class ParserImpl
 
             head = node;
             html.insertNodeAtEnd(head);
-            HEAD.parse(lexer, head, mode);
+            return new HeadState(lexer, head, mode);
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node;
+            TagTable tt = lexer.configuration.tt;
+
+            if (next == CONTENT && lexer.configuration.headOnly)
+            {
+                // the head is done, skip the rest of the input
+                lexer.stopped = true;
+                return null;
+            }
+
+            if (next == FRAMESET_DONE)
+            {
+                // see if it includes a noframes element so that we can merge subsequent noframes elements
+
+                for (node = frameset.content; node != null; node = node.next)
+                {
+                    if (node.tag == tt.tagNoframes)
+                    {
+                        noframes = node;
+                    }
+                }
+                next = CONTENT;
+            }
+            else if (next == BODY_DONE)
+            {
+                lexer.seenEndHtml = true;
+                return null;
+            }
+            else if (next == DONE)
+            {
+                return null;
+            }
 
             while (true)
             {
@@ -325,10 +569,11 @@ public final class ParserImpl
                         // implied body
                         node = lexer.inferredTag("body");
                         html.insertNodeAtEnd(node);
-                        BODY.parse(lexer, node, mode);
+                        next = DONE;
+                        return new BodyState(lexer, node, mode);
                     }
 
-                    return;
+                    return null;
                 }
 
                 // robustly handle html tags
@@ -372,8 +617,7 @@ public final class ParserImpl
                             lexer.report.warning(lexer, html, noframes, Report.INSERTING_TAG);
                         }
 
-                        parseTag(lexer, noframes, mode);
-                        continue;
+                        return parseTag(noframes, mode);
                     }
 
                     lexer.constrainVersion(~Dict.VERS_FRAMESET);
@@ -399,18 +643,8 @@ public final class ParserImpl
                     }
 
                     html.insertNodeAtEnd(node);
-                    parseTag(lexer, node, mode);
-
-                    // see if it includes a noframes element so that we can merge subsequent noframes elements
-
-                    for (node = frameset.content; node != null; node = node.next)
-                    {
-                        if (node.tag == tt.tagNoframes)
-                        {
-                            noframes = node;
-                        }
-                    }
-                    continue;
+                    next = FRAMESET_DONE;
+                    return parseTag(node, mode);
                 }
 
                 // if not a frameset document coerce <noframes> to <body>
@@ -435,16 +669,14 @@ public final class ParserImpl
                         frameset.insertNodeAtEnd(noframes);
                     }
 
-                    parseTag(lexer, noframes, mode);
-                    continue;
+                    return parseTag(noframes, mode);
                 }
 
                 if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
                 {
                     if (node.tag != null && (node.tag.model & Dict.CM_HEAD) != 0)
                     {
-                        moveToHead(lexer, html, node);
-                        continue;
+                        return moveToHead(html, node);
                     }
 
                     // #427675 - discard illegal frame element following a frameset - fix by Randy Waki 11 Oct 00
@@ -471,8 +703,7 @@ public final class ParserImpl
                     }
 
                     lexer.constrainVersion(Dict.VERS_FRAMESET);
-                    parseTag(lexer, noframes, mode);
-                    continue;
+                    return parseTag(noframes, mode);
                 }
 
                 node = lexer.inferredTag("body");
@@ -482,8 +713,8 @@ public final class ParserImpl
 
             // node must be body
             html.insertNodeAtEnd(node);
-            parseTag(lexer, node, mode);
-            lexer.seenEndHtml = true;
+            next = BODY_DONE;
+            return parseTag(node, mode);
         }
 
     }
@@ -491,17 +722,60 @@ public final class ParserImpl
     /**
      * Parser for HEAD.
      */
-    public static class ParseHead implements Parser
+    public static class ParseHead extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         */
+        @Override
+        ParseState newState(Lexer lexer, Node head, short mode)
+        {
+            return new HeadState(lexer, head, mode);
+        }
+
+    }
+
+    /**
+     * Parsing state for HEAD.
+     */
+    private static final class HeadState extends ParseState
+    {
+
+        /**
+         * the head element.
+         */
+        private final Node head;
+
+        /**
+         * number of title elements seen.
+         */
+        private int hasTitle;
+
+        /**
+         * number of base elements seen.
+         */
+        private int hasBase;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param head the head element
+         * @param mode content mode
+         */
+        HeadState(Lexer lexer, Node head, short mode)
+        {
+            super(lexer, mode);
+            this.head = head;
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
          */
-        public void parse(Lexer lexer, Node head, short mode)
+        @Override
+        ParseState resume()
         {
             Node node;
-            int hasTitle = 0;
-            int hasBase = 0;
             TagTable tt = lexer.configuration.tt;
 
             while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
@@ -575,13 +849,14 @@ public final class ParserImpl
                     }
 
                     head.insertNodeAtEnd(node);
-                    parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
-                    continue;
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE);
                 }
 
                 // discard unexpected text nodes and end tags
                 lexer.report.warning(lexer, head, node, Report.DISCARDING_UNEXPECTED);
             }
+
+            return null;
         }
     }
 
@@ -688,23 +963,72 @@ public final class ParserImpl
     /**
      * Parser for BODY.
      */
-    public static class ParseBody implements Parser
+    public static class ParseBody extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
          */
-        public void parse(Lexer lexer, Node body, short mode)
+        @Override
+        ParseState newState(Lexer lexer, Node body, short mode)
         {
-            Node node;
-            boolean checkstack, iswhitenode;
+            return new BodyState(lexer, body, mode);
+        }
+
+    }
+
+    /**
+     * Parsing state for BODY.
+     */
+    private static final class BodyState extends ParseState
+    {
+
+        /**
+         * the body element.
+         */
+        private final Node body;
+
+        /**
+         * check the inline stack before the next inline content?
+         */
+        private boolean checkstack;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param body the body element
+         * @param mode content mode
+         */
+        BodyState(Lexer lexer, Node body, short mode)
+        {
+            super(lexer, mode);
+            this.body = body;
+        }
 
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
+        {
             mode = Lexer.IGNORE_WHITESPACE;
             checkstack = true;
-            TagTable tt = lexer.configuration.tt;
 
             Clean.bumpObject(lexer, body.parent);
 
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node;
+            boolean iswhitenode;
+            TagTable tt = lexer.configuration.tt;
+
             while ((node = lexer.getToken(mode)) != null)
             {
               if (node.tag == null)
@@ -756,8 +1080,7 @@ public final class ParserImpl
                     if (node.type == Node.START_TAG)
                     {
                         body.insertNodeAtEnd(node);
-                        BLOCK.parse(lexer, node, mode);
-                        continue;
+                        return new BlockState(lexer, node, mode);
                     }
 
                     if (node.type == Node.END_TAG && body.parent.tag == tt.tagNoframes)
@@ -807,9 +1130,9 @@ public final class ParserImpl
                         lexer.ungetToken();
                         para = lexer.inferredTag("p");
                         body.insertNodeAtEnd(para);
-                        parseTag(lexer, para, mode);
+                        ParseState child = parseTag(para, mode);
                         mode = Lexer.MIXED_CONTENT;
-                        continue;
+                        return child;
                     }
 
                     // HTML2 and HTML4 strict doesn't allow text here
@@ -870,8 +1193,7 @@ public final class ParserImpl
 
                     if ((node.tag.model & Dict.CM_HEAD) != 0)
                     {
-                        moveToHead(lexer, body, node);
-                        continue;
+                        return moveToHead(body, node);
                     }
 
                     if ((node.tag.model & Dict.CM_LIST) != 0)
@@ -907,7 +1229,7 @@ public final class ParserImpl
                         if ((node.tag.model & (Dict.CM_ROW | Dict.CM_FIELD)) == 0)
                         {
                             lexer.ungetToken();
-                            return;
+                            return null;
                         }
 
                         // ignore </td></th> <option> etc.
@@ -972,13 +1294,14 @@ public final class ParserImpl
                     }
 
                     body.insertNodeAtEnd(node);
-                    parseTag(lexer, node, mode);
-                    continue;
+                    return parseTag(node, mode);
                 }
 
                 // discard unexpected tags
                 lexer.report.warning(lexer, body, node, Report.DISCARDING_UNEXPECTED);
             }
+
+            return null;
         }
 
     }
@@ -986,32 +1309,76 @@ public final class ParserImpl
     /**
      * Parser for FRAMESET.
      */
-    public static class ParseFrameSet implements Parser
+    public static class ParseFrameSet extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
          */
-        public void parse(Lexer lexer, Node frameset, short mode)
+        @Override
+        ParseState newState(Lexer lexer, Node frameset, short mode)
         {
-            Node node;
-            TagTable tt = lexer.configuration.tt;
+            return new FrameSetState(lexer, frameset, mode);
+        }
 
-            lexer.badAccess |= Report.USING_FRAMES;
+    }
 
-            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
-            {
-                if (node.tag == frameset.tag && node.type == Node.END_TAG)
-                {
-                    frameset.closed = true;
-                    Node.trimSpaces(lexer, frameset);
-                    return;
-                }
+    /**
+     * Parsing state for FRAMESET.
+     */
+    private static final class FrameSetState extends ParseState
+    {
 
-                // deal with comments etc.
-                if (Node.insertMisc(frameset, node))
-                {
-                    continue;
+        /**
+         * the frameset element.
+         */
+        private final Node frameset;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param frameset the frameset element
+         * @param mode content mode
+         */
+        FrameSetState(Lexer lexer, Node frameset, short mode)
+        {
+            super(lexer, mode);
+            this.frameset = frameset;
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
+        {
+            lexer.badAccess |= Report.USING_FRAMES;
+
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node;
+            TagTable tt = lexer.configuration.tt;
+
+            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+            {
+                if (node.tag == frameset.tag && node.type == Node.END_TAG)
+                {
+                    frameset.closed = true;
+                    Node.trimSpaces(lexer, frameset);
+                    return null;
+                }
+
+                // deal with comments etc.
+                if (Node.insertMisc(frameset, node))
+                {
+                    continue;
                 }
 
                 if (node.tag == null)
@@ -1024,8 +1391,7 @@ public final class ParserImpl
                 {
                     if (node.tag != null && (node.tag.model & Dict.CM_HEAD) != 0)
                     {
-                        moveToHead(lexer, frameset, node);
-                        continue;
+                        return moveToHead(frameset, node);
                     }
                 }
 
@@ -1040,8 +1406,7 @@ public final class ParserImpl
                 {
                     frameset.insertNodeAtEnd(node);
                     lexer.excludeBlocks = false;
-                    parseTag(lexer, node, Lexer.MIXED_CONTENT);
-                    continue;
+                    return parseTag(node, Lexer.MIXED_CONTENT);
                 }
                 else if (node.type == Node.START_END_TAG && (node.tag.model & Dict.CM_FRAMES) != 0)
                 {
@@ -1054,6 +1419,7 @@ public final class ParserImpl
             }
 
             lexer.report.warning(lexer, frameset, node, Report.MISSING_ENDTAG_FOR);
+            return null;
         }
 
     }
@@ -1061,20 +1427,54 @@ public final class ParserImpl
     /**
      * Parser for INLINE.
      */
-    public static class ParseInline implements Parser
+    public static class ParseInline extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
          */
-        public void parse(Lexer lexer, Node element, short mode)
+        @Override
+        ParseState newState(Lexer lexer, Node element, short mode)
+        {
+            return new InlineState(lexer, element, mode);
+        }
+
+    }
+
+    /**
+     * Parsing state for INLINE.
+     */
+    private static final class InlineState extends ParseState
+    {
+
+        /**
+         * the element, replaced by a clone when a heading or dt is split.
+         */
+        private Node element;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param element the element
+         * @param mode content mode
+         */
+        InlineState(Lexer lexer, Node element, short mode)
+        {
+            super(lexer, mode);
+            this.element = element;
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
         {
-            Node node, parent;
             TagTable tt = lexer.configuration.tt;
 
             if (TidyUtils.toBoolean(element.tag.model & Dict.CM_EMPTY))
             {
-                return;
+                return null;
             }
 
             // ParseInline is used for some block level elements like H1 to H6 For such elements we need to insert
@@ -1110,6 +1510,18 @@ public final class ParserImpl
                 mode = Lexer.MIXED_CONTENT;
             }
 
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node, parent;
+            TagTable tt = lexer.configuration.tt;
+
             while ((node = lexer.getToken(mode)) != null)
             {
                 // end tag for current element
@@ -1172,7 +1584,7 @@ public final class ParserImpl
                     element.closed = true;
                     Node.trimSpaces(lexer, element);
                     Node.trimEmptyElement(lexer, element);
-                    return;
+                    return null;
                 }
 
                 // <u> ... <u> map 2nd <u> to </u> if 1st is explicit
@@ -1245,7 +1657,7 @@ public final class ParserImpl
                         Node.trimSpaces(lexer, element);
                     }
                     Node.trimEmptyElement(lexer, element);
-                    return;
+                    return null;
                 }
 
                 // within <dt> or <pre> map <p> to <br>
@@ -1321,7 +1733,7 @@ public final class ParserImpl
                                 Node.trimSpaces(lexer, element);
                             }
                             Node.trimEmptyElement(lexer, element);
-                            return;
+                            return null;
                         }
 
                         // if parent is <a> then discard unexpected inline end tag
@@ -1333,7 +1745,7 @@ public final class ParserImpl
                         lexer.ungetToken();
                         Node.trimSpaces(lexer, element);
                         Node.trimEmptyElement(lexer, element);
-                        return;
+                        return null;
                     }
                 }
 
@@ -1354,7 +1766,7 @@ public final class ParserImpl
                         Node.trimSpaces(lexer, element);
                     }
                     Node.trimEmptyElement(lexer, element);
-                    return;
+                    return null;
                 }
 
                 // an <A> tag to ends any open <A> element but <A href=...> is mapped to </A><A href=...>
@@ -1386,7 +1798,7 @@ public final class ParserImpl
                         Node.trimSpaces(lexer, element);
                     }
                     Node.trimEmptyElement(lexer, element);
-                    return;
+                    return null;
                 }
 
                 if ((element.tag.model & Dict.CM_HEADING) != 0)
@@ -1522,7 +1934,7 @@ public final class ParserImpl
                             }
 
                             Node.trimEmptyElement(lexer, element);
-                            return;
+                            return null;
                         }
                     }
                 }
@@ -1543,8 +1955,7 @@ public final class ParserImpl
 
                     if ((node.tag.model & Dict.CM_HEAD) != 0 && (node.tag.model & Dict.CM_BLOCK) == 0)
                     {
-                        moveToHead(lexer, element, node);
-                        continue;
+                        return moveToHead(element, node);
                     }
 
                     // prevent anchors from propagating into block tags except for headings h1 to h6
@@ -1559,7 +1970,7 @@ public final class ParserImpl
                         {
                             Node.discardElement(element);
                             lexer.ungetToken();
-                            return;
+                            return null;
                         }
                     }
 
@@ -1571,7 +1982,7 @@ public final class ParserImpl
                     }
 
                     Node.trimEmptyElement(lexer, element);
-                    return;
+                    return null;
                 }
 
                 // parse inline element
@@ -1589,8 +2000,7 @@ public final class ParserImpl
                     }
 
                     element.insertNodeAtEnd(node);
-                    parseTag(lexer, node, mode);
-                    continue;
+                    return parseTag(node, mode);
                 }
 
                 // discard unexpected tags
@@ -1603,28 +2013,76 @@ public final class ParserImpl
             }
 
             Node.trimEmptyElement(lexer, element);
+            return null;
         }
     }
 
     /**
      * Parser for LIST.
      */
-    public static class ParseList implements Parser
+    public static class ParseList extends ElementParser
     {
 
-        public void parse(Lexer lexer, Node list, short mode)
+        /**
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         */
+        @Override
+        ParseState newState(Lexer lexer, Node list, short mode)
         {
-            Node node;
-            Node parent;
-            TagTable tt = lexer.configuration.tt;
+            return new ListState(lexer, list, mode);
+        }
+
+    }
+
+    /**
+     * Parsing state for LIST.
+     */
+    private static final class ListState extends ParseState
+    {
+
+        /**
+         * the list element.
+         */
+        private final Node list;
 
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param list the list element
+         * @param mode content mode
+         */
+        ListState(Lexer lexer, Node list, short mode)
+        {
+            super(lexer, mode);
+            this.list = list;
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
+        {
             if ((list.tag.model & Dict.CM_EMPTY) != 0)
             {
-                return;
+                return null;
             }
 
             lexer.insert = -1; // defer implicit inline start tags
 
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node;
+            Node parent;
+            TagTable tt = lexer.configuration.tt;
+
             while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
             {
                 if (node.tag == list.tag && node.type == Node.END_TAG)
@@ -1636,7 +2094,7 @@ public final class ParserImpl
 
                     list.closed = true;
                     Node.trimEmptyElement(lexer, list);
-                    return;
+                    return null;
                 }
 
                 // deal with comments etc.
@@ -1682,7 +2140,7 @@ public final class ParserImpl
                             }
 
                             Node.trimEmptyElement(lexer, list);
-                            return;
+                            return null;
                         }
                     }
 
@@ -1698,7 +2156,7 @@ public final class ParserImpl
                     {
                         lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_BEFORE);
                         Node.trimEmptyElement(lexer, list);
-                        return;
+                        return null;
                     }
 
                     node = lexer.inferredTag("li");
@@ -1708,7 +2166,7 @@ public final class ParserImpl
 
                 // node should be <LI>
                 list.insertNodeAtEnd(node);
-                parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
+                return parseTag(node, Lexer.IGNORE_WHITESPACE);
             }
 
             if ((list.tag.model & Dict.CM_OBSOLETE) != 0)
@@ -1718,6 +2176,7 @@ public final class ParserImpl
 
             lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_FOR);
             Node.trimEmptyElement(lexer, list);
+            return null;
         }
 
     }
@@ -1748,31 +2207,88 @@ public final class ParserImpl
     /**
      * Parser for DEFLIST.
      */
-    public static class ParseDefList implements Parser
+    public static class ParseDefList extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
          */
-        public void parse(Lexer lexer, Node list, short mode)
+        @Override
+        ParseState newState(Lexer lexer, Node list, short mode)
         {
-            Node node, parent;
-            TagTable tt = lexer.configuration.tt;
+            return new DefListState(lexer, list, mode);
+        }
+
+    }
+
+    /**
+     * Parsing state for DEFLIST.
+     */
+    private static final class DefListState extends ParseState
+    {
+
+        /**
+         * the list element, replaced by a new one after a center element.
+         */
+        private Node list;
+
+        /**
+         * center element being parsed, which breaks the list in two.
+         */
+        private Node center;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param list the list element
+         * @param mode content mode
+         */
+        DefListState(Lexer lexer, Node list, short mode)
+        {
+            super(lexer, mode);
+            this.list = list;
+        }
 
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
+        {
             if ((list.tag.model & Dict.CM_EMPTY) != 0)
             {
-                return;
+                return null;
             }
 
             lexer.insert = -1; // defer implicit inline start tags
 
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node, parent;
+            TagTable tt = lexer.configuration.tt;
+
+            if (center != null)
+            {
+                // now create a new dl element
+                list = lexer.inferredTag("dl");
+                center.insertNodeAfterElement(list);
+                center = null;
+            }
+
             while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
             {
                 if (node.tag == list.tag && node.type == Node.END_TAG)
                 {
                     list.closed = true;
                     Node.trimEmptyElement(lexer, list);
-                    return;
+                    return null;
                 }
 
                 // deal with comments etc.
@@ -1813,7 +2329,7 @@ public final class ParserImpl
 
                             lexer.ungetToken();
                             Node.trimEmptyElement(lexer, list);
-                            return;
+                            return null;
                         }
                     }
                 }
@@ -1835,12 +2351,8 @@ public final class ParserImpl
                     }
 
                     // and parse contents of center
-                    parseTag(lexer, node, mode);
-
-                    // now create a new dl element
-                    list = lexer.inferredTag("dl");
-                    node.insertNodeAfterElement(list);
-                    continue;
+                    center = node;
+                    return parseTag(node, mode);
                 }
 
                 if (!(node.tag == tt.tagDt || node.tag == tt.tagDd))
@@ -1851,14 +2363,14 @@ public final class ParserImpl
                     {
                         lexer.report.warning(lexer, list, node, Report.TAG_NOT_ALLOWED_IN);
                         Node.trimEmptyElement(lexer, list);
-                        return;
+                        return null;
                     }
 
                     // if DD appeared directly in BODY then exclude blocks
                     if ((node.tag.model & Dict.CM_INLINE) == 0 && lexer.excludeBlocks)
                     {
                         Node.trimEmptyElement(lexer, list);
-                        return;
+                        return null;
                     }
 
                     node = lexer.inferredTag("dd");
@@ -1873,11 +2385,12 @@ public final class ParserImpl
 
                 // node should be <DT> or <DD>
                 list.insertNodeAtEnd(node);
-                parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
+                return parseTag(node, Lexer.IGNORE_WHITESPACE);
             }
 
             lexer.report.warning(lexer, list, node, Report.MISSING_ENDTAG_FOR);
             Node.trimEmptyElement(lexer, list);
+            return null;
         }
 
     }
@@ -1885,20 +2398,54 @@ public final class ParserImpl
     /**
      * Parser for PRE.
      */
-    public static class ParsePre implements Parser
+    public static class ParsePre extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
          */
-        public void parse(Lexer lexer, Node pre, short mode)
+        @Override
+        ParseState newState(Lexer lexer, Node pre, short mode)
+        {
+            return new PreState(lexer, pre, mode);
+        }
+
+    }
+
+    /**
+     * Parsing state for PRE.
+     */
+    private static final class PreState extends ParseState
+    {
+
+        /**
+         * the pre element.
+         */
+        private final Node pre;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param pre the pre element
+         * @param mode content mode
+         */
+        PreState(Lexer lexer, Node pre, short mode)
+        {
+            super(lexer, mode);
+            this.pre = pre;
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
         {
-            Node node;
             TagTable tt = lexer.configuration.tt;
 
             if ((pre.tag.model & Dict.CM_EMPTY) != 0)
             {
-                return;
+                return null;
             }
 
             if ((pre.tag.model & Dict.CM_OBSOLETE) != 0)
@@ -1908,6 +2455,18 @@ public final class ParserImpl
 
             lexer.inlineDup(null); // tell lexer to insert inlines if needed
 
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node;
+            TagTable tt = lexer.configuration.tt;
+
             while ((node = lexer.getToken(Lexer.PREFORMATTED)) != null)
             {
                 if (node.tag == pre.tag && node.type == Node.END_TAG)
@@ -1915,7 +2474,7 @@ public final class ParserImpl
                     Node.trimSpaces(lexer, pre);
                     pre.closed = true;
                     Node.trimEmptyElement(lexer, pre);
-                    return;
+                    return null;
                 }
 
                 if (node.tag == tt.tagHtml)
@@ -1994,8 +2553,7 @@ public final class ParserImpl
                     }
 
                     pre.insertNodeAtEnd(node);
-                    parseTag(lexer, node, Lexer.PREFORMATTED);
-                    continue;
+                    return parseTag(node, Lexer.PREFORMATTED);
                 }
 
                 // discard unexpected tags
@@ -2004,6 +2562,7 @@ public final class ParserImpl
 
             lexer.report.warning(lexer, pre, node, Report.MISSING_ENDTAG_FOR);
             Node.trimEmptyElement(lexer, pre);
+            return null;
         }
 
     }
@@ -2011,26 +2570,67 @@ public final class ParserImpl
     /**
      * Parser for block elements.
      */
-    public static class ParseBlock implements Parser
+    public static class ParseBlock extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
          */
-        public void parse(Lexer lexer, Node element, short mode)
+        @Override
+        ParseState newState(Lexer lexer, Node element, short mode)
+        {
+            return new BlockState(lexer, element, mode);
+        }
+
+    }
+
+    /**
+     * Parsing state for block elements.
+     */
+    private static final class BlockState extends ParseState
+    {
+
+        /**
+         * the element, created by the lexer upon seeing the start tag, or by the parser when the start tag is
+         * inferred.
+         */
+        private final Node element;
+
+        /**
+         * check the inline stack before the next inline content?
+         */
+        private boolean checkstack;
+
+        /**
+         * inline stack base of the enclosing context, for OBJECT and APPLET.
+         */
+        private int istackbase;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param element the element
+         * @param mode content mode
+         */
+        BlockState(Lexer lexer, Node element, short mode)
+        {
+            super(lexer, mode);
+            this.element = element;
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
         {
-            // element is node created by the lexer upon seeing the start tag, or by the parser when the start tag is
-            // inferred.
-            Node node, parent;
-            boolean checkstack;
-            int istackbase = 0;
             TagTable tt = lexer.configuration.tt;
 
             checkstack = true;
 
             if ((element.tag.model & Dict.CM_EMPTY) != 0)
             {
-                return;
+                return null;
             }
 
             if (element.tag == tt.tagForm && element.isDescendantOf(tt.tagForm))
@@ -2056,6 +2656,18 @@ public final class ParserImpl
 
             mode = Lexer.IGNORE_WHITESPACE;
 
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node, parent;
+            TagTable tt = lexer.configuration.tt;
+
             while ((node = lexer.getToken(mode)) != null)
             {
             	// Closing unrecognized tags
@@ -2084,7 +2696,7 @@ public final class ParserImpl
                     element.closed = true;
                     Node.trimSpaces(lexer, element);
                     Node.trimEmptyElement(lexer, element);
-                    return;
+                    return null;
                 }
 
                 if (node.tag == tt.tagHtml || node.tag == tt.tagHead || node.tag == tt.tagBody)
@@ -2142,7 +2754,7 @@ public final class ParserImpl
 
                                 Node.trimSpaces(lexer, element);
                                 Node.trimEmptyElement(lexer, element);
-                                return;
+                                return null;
                             }
                         }
                         // special case </tr> etc. for stuff moved in front of table
@@ -2151,7 +2763,7 @@ public final class ParserImpl
                             lexer.ungetToken();
                             Node.trimSpaces(lexer, element);
                             Node.trimEmptyElement(lexer, element);
-                            return;
+                            return null;
                         }
                     }
                 }
@@ -2163,7 +2775,7 @@ public final class ParserImpl
 
                     if (node.type == Node.TEXT_NODE
                         && node.end <= node.start + 1
-                        && lexer.lexbuf[node.start] == (byte) ' ')
+                        && node.getTextArray(lexer)[node.start] == (byte) ' ')
                     {
                         iswhitenode = true;
                     }
@@ -2173,8 +2785,7 @@ public final class ParserImpl
                         lexer.ungetToken();
                         node = lexer.inferredTag("p");
                         element.insertNodeAtEnd(node);
-                        parseTag(lexer, node, Lexer.MIXED_CONTENT);
-                        continue;
+                        return parseTag(node, Lexer.MIXED_CONTENT);
                     }
 
                     if (checkstack)
@@ -2294,8 +2905,7 @@ public final class ParserImpl
 
                         if ((node.tag.model & Dict.CM_HEAD) != 0)
                         {
-                            moveToHead(lexer, element, node);
-                            continue;
+                            return moveToHead(element, node);
                         }
 
                         if ((node.tag.model & Dict.CM_LIST) != 0)
@@ -2318,7 +2928,7 @@ public final class ParserImpl
                             lexer.ungetToken();
                             Node.trimSpaces(lexer, element);
                             Node.trimEmptyElement(lexer, element);
-                            return;
+                            return null;
                         }
                     }
                     else if ((node.tag.model & Dict.CM_BLOCK) != 0)
@@ -2339,7 +2949,7 @@ public final class ParserImpl
 
                             Node.trimSpaces(lexer, element);
                             Node.trimEmptyElement(lexer, element);
-                            return;
+                            return null;
                         }
                     }
                     else
@@ -2348,8 +2958,7 @@ public final class ParserImpl
 
                         if ((node.tag.model & Dict.CM_HEAD) != 0)
                         {
-                            moveToHead(lexer, element, node);
-                            continue;
+                            return moveToHead(element, node);
                         }
 
                         // special case where a form start tag occurs in a tr and is followed by td or th
@@ -2386,7 +2995,7 @@ public final class ParserImpl
                             {
                                 Node.trimSpaces(lexer, element);
                                 Node.trimEmptyElement(lexer, element);
-                                return;
+                                return null;
                             }
 
                             node = lexer.inferredTag("ul");
@@ -2398,7 +3007,7 @@ public final class ParserImpl
                             {
                                 Node.trimSpaces(lexer, element);
                                 Node.trimEmptyElement(lexer, element);
-                                return;
+                                return null;
                             }
 
                             node = lexer.inferredTag("dl");
@@ -2417,14 +3026,14 @@ public final class ParserImpl
                             lexer.istackbase = istackbase;
                             Node.trimSpaces(lexer, element);
                             Node.trimEmptyElement(lexer, element);
-                            return;
+                            return null;
 
                         }
                         else
                         {
                             Node.trimSpaces(lexer, element);
                             Node.trimEmptyElement(lexer, element);
-                            return;
+                            return null;
                         }
                     }
                 }
@@ -2480,9 +3089,7 @@ public final class ParserImpl
                         lexer.report.warning(lexer, element, node, Report.INSERTING_TAG);
                     }
 
-                    parseTag(lexer, node, Lexer.IGNORE_WHITESPACE // Lexer.MixedContent
-                    );
-                    continue;
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE); // Lexer.MixedContent
                 }
 
                 // discard unexpected tags
@@ -2511,6 +3118,7 @@ public final class ParserImpl
 
             Node.trimSpaces(lexer, element);
             Node.trimEmptyElement(lexer, element);
+            return null;
         }
 
     }
@@ -2518,30 +3126,89 @@ public final class ParserImpl
     /**
      * Parser for TABLE.
      */
-    public static class ParseTableTag implements Parser
+    public static class ParseTableTag extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
          */
-        public void parse(Lexer lexer, Node table, short mode)
+        @Override
+        ParseState newState(Lexer lexer, Node table, short mode)
         {
-            Node node, parent;
-            int istackbase;
-            TagTable tt = lexer.configuration.tt;
+            return new TableState(lexer, table, mode);
+        }
 
+    }
+
+    /**
+     * Parsing state for TABLE.
+     */
+    private static final class TableState extends ParseState
+    {
+
+        /**
+         * the table element.
+         */
+        private final Node table;
+
+        /**
+         * inline stack base of the enclosing context.
+         */
+        private int istackbase;
+
+        /**
+         * is an element moved in front of the table being parsed?
+         */
+        private boolean exiled;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param table the table element
+         * @param mode content mode
+         */
+        TableState(Lexer lexer, Node table, short mode)
+        {
+            super(lexer, mode);
+            this.table = table;
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
+        {
             lexer.deferDup();
             istackbase = lexer.istackbase;
             lexer.istackbase = lexer.istack.size();
 
-            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node, parent;
+            TagTable tt = lexer.configuration.tt;
+
+            if (exiled)
+            {
+                exiled = false;
+                lexer.exiled = false;
+            }
+
+            while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
             {
                 if (node.tag == table.tag && node.type == Node.END_TAG)
                 {
                     lexer.istackbase = istackbase;
                     table.closed = true;
                     Node.trimEmptyElement(lexer, table);
-                    return;
+                    return null;
                 }
 
                 // deal with comments etc.
@@ -2575,7 +3242,8 @@ public final class ParserImpl
 
                         if (!(node.type == Node.TEXT_NODE)) // #427662 - was (!node.type == TextNode) - fix by Young
                         {
-                            parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
+                            exiled = true;
+                            return parseTag(node, Lexer.IGNORE_WHITESPACE);
                         }
 
                         lexer.exiled = false;
@@ -2583,8 +3251,7 @@ public final class ParserImpl
                     }
                     else if ((node.tag.model & Dict.CM_HEAD) != 0)
                     {
-                        moveToHead(lexer, table, node);
-                        continue;
+                        return moveToHead(table, node);
                     }
                 }
 
@@ -2613,7 +3280,7 @@ public final class ParserImpl
                             lexer.ungetToken();
                             lexer.istackbase = istackbase;
                             Node.trimEmptyElement(lexer, table);
-                            return;
+                            return null;
                         }
                     }
                 }
@@ -2624,15 +3291,14 @@ public final class ParserImpl
                     lexer.report.warning(lexer, table, node, Report.TAG_NOT_ALLOWED_IN);
                     lexer.istackbase = istackbase;
                     Node.trimEmptyElement(lexer, table);
-                    return;
+                    return null;
                 }
 
                 if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
                 {
                     table.insertNodeAtEnd(node);
 
-                    parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
-                    continue;
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE);
                 }
 
                 // discard unexpected text nodes and end tags
@@ -2642,6 +3308,7 @@ public final class ParserImpl
             lexer.report.warning(lexer, table, node, Report.MISSING_ENDTAG_FOR);
             Node.trimEmptyElement(lexer, table);
             lexer.istackbase = istackbase;
+            return null;
         }
 
     }
@@ -2649,28 +3316,72 @@ public final class ParserImpl
     /**
      * Parser for COLGROUP.
      */
-    public static class ParseColGroup implements Parser
+    public static class ParseColGroup extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
          */
-        public void parse(Lexer lexer, Node colgroup, short mode)
+        @Override
+        ParseState newState(Lexer lexer, Node colgroup, short mode)
         {
-            Node node, parent;
-            TagTable tt = lexer.configuration.tt;
+            return new ColGroupState(lexer, colgroup, mode);
+        }
+
+    }
+
+    /**
+     * Parsing state for COLGROUP.
+     */
+    private static final class ColGroupState extends ParseState
+    {
+
+        /**
+         * the colgroup element.
+         */
+        private final Node colgroup;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param colgroup the colgroup element
+         * @param mode content mode
+         */
+        ColGroupState(Lexer lexer, Node colgroup, short mode)
+        {
+            super(lexer, mode);
+            this.colgroup = colgroup;
+        }
 
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
+        {
             if ((colgroup.tag.model & Dict.CM_EMPTY) != 0)
             {
-                return;
+                return null;
             }
 
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node, parent;
+            TagTable tt = lexer.configuration.tt;
+
             while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
             {
                 if (node.tag == colgroup.tag && node.type == Node.END_TAG)
                 {
                     colgroup.closed = true;
-                    return;
+                    return null;
                 }
 
                 // if this is the end tag for an ancestor element then infer end tag for this element
@@ -2690,7 +3401,7 @@ public final class ParserImpl
                         if (node.tag == parent.tag)
                         {
                             lexer.ungetToken();
-                            return;
+                            return null;
                         }
                     }
                 }
@@ -2698,7 +3409,7 @@ public final class ParserImpl
                 if (node.type == Node.TEXT_NODE)
                 {
                     lexer.ungetToken();
-                    return;
+                    return null;
                 }
 
                 // deal with comments etc.
@@ -2717,7 +3428,7 @@ public final class ParserImpl
                 if (node.tag != tt.tagCol)
                 {
                     lexer.ungetToken();
-                    return;
+                    return null;
                 }
 
                 if (node.type == Node.END_TAG)
@@ -2728,8 +3439,10 @@ public final class ParserImpl
 
                 // node should be <COL>
                 colgroup.insertNodeAtEnd(node);
-                parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
+                return parseTag(node, Lexer.IGNORE_WHITESPACE);
             }
+
+            return null;
         }
 
     }
@@ -2737,20 +3450,75 @@ public final class ParserImpl
     /**
      * Parser for ROWGROUP.
      */
-    public static class ParseRowGroup implements Parser
+    public static class ParseRowGroup extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         */
+        @Override
+        ParseState newState(Lexer lexer, Node rowgroup, short mode)
+        {
+            return new RowGroupState(lexer, rowgroup, mode);
+        }
+
+    }
+
+    /**
+     * Parsing state for ROWGROUP.
+     */
+    private static final class RowGroupState extends ParseState
+    {
+
+        /**
+         * the rowgroup element.
+         */
+        private final Node rowgroup;
+
+        /**
+         * is an element moved in front of the table being parsed?
+         */
+        private boolean exiled;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param rowgroup the rowgroup element
+         * @param mode content mode
          */
-        public void parse(Lexer lexer, Node rowgroup, short mode)
+        RowGroupState(Lexer lexer, Node rowgroup, short mode)
+        {
+            super(lexer, mode);
+            this.rowgroup = rowgroup;
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
+        {
+            if ((rowgroup.tag.model & Dict.CM_EMPTY) != 0)
+            {
+                return null;
+            }
+
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
         {
             Node node, parent;
             TagTable tt = lexer.configuration.tt;
 
-            if ((rowgroup.tag.model & Dict.CM_EMPTY) != 0)
+            if (exiled)
             {
-                return;
+                exiled = false;
+                lexer.exiled = false;
             }
 
             while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
@@ -2761,11 +3529,11 @@ public final class ParserImpl
                     {
                         rowgroup.closed = true;
                         Node.trimEmptyElement(lexer, rowgroup);
-                        return;
+                        return null;
                     }
 
                     lexer.ungetToken();
-                    return;
+                    return null;
                 }
 
                 // if </table> infer end tag
@@ -2773,7 +3541,7 @@ public final class ParserImpl
                 {
                     lexer.ungetToken();
                     Node.trimEmptyElement(lexer, rowgroup);
-                    return;
+                    return null;
                 }
 
                 // deal with comments etc.
@@ -2809,7 +3577,8 @@ public final class ParserImpl
                         // #427662 was (!node.type == TextNode) fix by Young 04 Aug 00
                         if (node.type != Node.TEXT_NODE)
                         {
-                            parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
+                            exiled = true;
+                            return parseTag(node, Lexer.IGNORE_WHITESPACE);
                         }
 
                         lexer.exiled = false;
@@ -2818,8 +3587,7 @@ public final class ParserImpl
                     else if ((node.tag.model & Dict.CM_HEAD) != 0)
                     {
                         lexer.report.warning(lexer, rowgroup, node, Report.TAG_NOT_ALLOWED_IN);
-                        moveToHead(lexer, rowgroup, node);
-                        continue;
+                        return moveToHead(rowgroup, node);
                     }
                 }
 
@@ -2851,7 +3619,7 @@ public final class ParserImpl
                         {
                             lexer.ungetToken();
                             Node.trimEmptyElement(lexer, rowgroup);
-                            return;
+                            return null;
                         }
                     }
 
@@ -2867,7 +3635,7 @@ public final class ParserImpl
                     }
 
                     Node.trimEmptyElement(lexer, rowgroup);
-                    return;
+                    return null;
                 }
 
                 if (node.type == Node.END_TAG)
@@ -2885,30 +3653,108 @@ public final class ParserImpl
 
                 // node should be <TR>
                 rowgroup.insertNodeAtEnd(node);
-                parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
+                return parseTag(node, Lexer.IGNORE_WHITESPACE);
             }
             Node.trimEmptyElement(lexer, rowgroup);
+            return null;
         }
     }
 
     /**
      * Parser for ROW.
      */
-    public static class ParseRow implements Parser
+    public static class ParseRow extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         */
+        @Override
+        ParseState newState(Lexer lexer, Node row, short mode)
+        {
+            return new RowState(lexer, row, mode);
+        }
+
+    }
+
+    /**
+     * Parsing state for ROW.
+     */
+    private static final class RowState extends ParseState
+    {
+
+        /**
+         * the row element.
+         */
+        private final Node row;
+
+        /**
+         * is an element moved in front of the table being parsed?
+         */
+        private boolean exiled;
+
+        /**
+         * is a cell being parsed?
+         */
+        private boolean inCell;
+
+        /**
+         * lexer.excludeBlocks before the cell.
+         */
+        private boolean excludeState;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param row the row element
+         * @param mode content mode
+         */
+        RowState(Lexer lexer, Node row, short mode)
+        {
+            super(lexer, mode);
+            this.row = row;
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
+        {
+            if ((row.tag.model & Dict.CM_EMPTY) != 0)
+            {
+                return null;
+            }
+
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
          */
-        public void parse(Lexer lexer, Node row, short mode)
+        @Override
+        ParseState resume()
         {
             Node node, parent;
-            boolean excludeState;
             TagTable tt = lexer.configuration.tt;
 
-            if ((row.tag.model & Dict.CM_EMPTY) != 0)
+            if (exiled)
             {
-                return;
+                exiled = false;
+                lexer.exiled = false;
+            }
+
+            if (inCell)
+            {
+                inCell = false;
+                lexer.excludeBlocks = excludeState;
+
+                // pop inline stack
+
+                while (lexer.istack.size() > lexer.istackbase)
+                {
+                    lexer.popInline(null);
+                }
             }
 
             while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
@@ -2919,12 +3765,12 @@ public final class ParserImpl
                     {
                         row.closed = true;
                         Node.fixEmptyRow(lexer, row);
-                        return;
+                        return null;
                     }
 
                     lexer.ungetToken();
                     Node.fixEmptyRow(lexer, row);
-                    return;
+                    return null;
                 }
 
                 // if this is the end tag for an ancestor element then infer end tag for this element
@@ -2934,7 +3780,7 @@ public final class ParserImpl
                 			|| node.tag == tt.tagTable)
                             && row.isDescendantOf(node.tag)) {
                 		lexer.ungetToken();
-                		return;
+                		return null;
                 	}
                 	
                     if (node.tag == tt.tagForm
@@ -2960,7 +3806,7 @@ public final class ParserImpl
                         {
                             lexer.ungetToken();
                             Node.trimEmptyElement(lexer, row);
-                            return;
+                            return null;
                         }
                     }
                 }
@@ -2990,7 +3836,7 @@ public final class ParserImpl
                 {
                     lexer.ungetToken();
                     Node.trimEmptyElement(lexer, row);
-                    return;
+                    return null;
                 }
 
                 if (node.type == Node.END_TAG)
@@ -3017,7 +3863,8 @@ public final class ParserImpl
 
                         if (node.type != Node.TEXT_NODE)
                         {
-                            parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
+                            exiled = true;
+                            return parseTag(node, Lexer.IGNORE_WHITESPACE);
                         }
 
                         lexer.exiled = false;
@@ -3026,8 +3873,7 @@ public final class ParserImpl
                     else if ((node.tag.model & Dict.CM_HEAD) != 0)
                     {
                         lexer.report.warning(lexer, row, node, Report.TAG_NOT_ALLOWED_IN);
-                        moveToHead(lexer, row, node);
-                        continue;
+                        return moveToHead(row, node);
                     }
                 }
 
@@ -3041,18 +3887,12 @@ public final class ParserImpl
                 row.insertNodeAtEnd(node);
                 excludeState = lexer.excludeBlocks;
                 lexer.excludeBlocks = false;
-                parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
-                lexer.excludeBlocks = excludeState;
-
-                // pop inline stack
-
-                while (lexer.istack.size() > lexer.istackbase)
-                {
-                    lexer.popInline(null);
-                }
+                inCell = true;
+                return parseTag(node, Lexer.IGNORE_WHITESPACE);
             }
 
             Node.trimEmptyElement(lexer, row);
+            return null;
         }
 
     }
@@ -3060,27 +3900,91 @@ public final class ParserImpl
     /**
      * Parser for NOFRAMES.
      */
-    public static class ParseNoFrames implements Parser
+    public static class ParseNoFrames extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
          */
-        public void parse(Lexer lexer, Node noframes, short mode)
+        @Override
+        ParseState newState(Lexer lexer, Node noframes, short mode)
         {
-            Node node;
-            TagTable tt = lexer.configuration.tt;
+            return new NoFramesState(lexer, noframes, mode);
+        }
+
+    }
+
+    /**
+     * Parsing state for NOFRAMES.
+     */
+    private static final class NoFramesState extends ParseState
+    {
+
+        /**
+         * the noframes element.
+         */
+        private final Node noframes;
+
+        /**
+         * body element being parsed, moved to the document body if it had been closed already.
+         */
+        private Node body;
+
+        /**
+         * had the body been closed before the body element?
+         */
+        private boolean seenbody;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param noframes the noframes element
+         * @param mode content mode
+         */
+        NoFramesState(Lexer lexer, Node noframes, short mode)
+        {
+            super(lexer, mode);
+            this.noframes = noframes;
+        }
 
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
+        {
             lexer.badAccess |= Report.USING_NOFRAMES;
             mode = Lexer.IGNORE_WHITESPACE;
 
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node;
+            TagTable tt = lexer.configuration.tt;
+
+            if (body != null)
+            {
+                if (seenbody)
+                {
+                    Node.coerceNode(lexer, body, tt.tagDiv);
+                    moveNodeToBody(lexer, body);
+                }
+                body = null;
+            }
+
             while ((node = lexer.getToken(mode)) != null)
             {
                 if (node.tag == noframes.tag && node.type == Node.END_TAG)
                 {
                     noframes.closed = true;
                     Node.trimSpaces(lexer, noframes);
-                    return;
+                    return null;
                 }
 
                 if ((node.tag == tt.tagFrame || node.tag == tt.tagFrameset))
@@ -3100,7 +4004,7 @@ public final class ParserImpl
 
                         lexer.ungetToken();
                     }
-                    return;
+                    return null;
                 }
 
                 if (node.tag == tt.tagHtml)
@@ -3121,16 +4025,10 @@ public final class ParserImpl
 
                 if (node.tag == tt.tagBody && node.type == Node.START_TAG)
                 {
-                    boolean seenbody = lexer.seenEndBody;
+                    seenbody = lexer.seenEndBody;
                     noframes.insertNodeAtEnd(node);
-                    parseTag(lexer, node, Lexer.IGNORE_WHITESPACE); // MixedContent
-
-                    if (seenbody)
-                    {
-                        Node.coerceNode(lexer, node, tt.tagDiv);
-                        moveNodeToBody(lexer, node);
-                    }
-                    continue;
+                    body = node;
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE); // MixedContent
                 }
 
                 // implicit body element inferred
@@ -3159,15 +4057,15 @@ public final class ParserImpl
                         }
                         noframes.insertNodeAtEnd(node);
                     }
-                    parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE);
                     // MixedContent
-                    continue;
                 }
                 // discard unexpected end tags
                 lexer.report.warning(lexer, noframes, node, Report.DISCARDING_UNEXPECTED);
             }
 
             lexer.report.warning(lexer, noframes, node, Report.MISSING_ENDTAG_FOR);
+            return null;
         }
 
     }
@@ -3175,26 +4073,70 @@ public final class ParserImpl
     /**
      * Parser for SELECT.
      */
-    public static class ParseSelect implements Parser
+    public static class ParseSelect extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
          */
-        public void parse(Lexer lexer, Node field, short mode)
+        @Override
+        ParseState newState(Lexer lexer, Node field, short mode)
         {
-            Node node;
-            TagTable tt = lexer.configuration.tt;
+            return new SelectState(lexer, field, mode);
+        }
 
+    }
+
+    /**
+     * Parsing state for SELECT.
+     */
+    private static final class SelectState extends ParseState
+    {
+
+        /**
+         * the select element.
+         */
+        private final Node field;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param field the select element
+         * @param mode content mode
+         */
+        SelectState(Lexer lexer, Node field, short mode)
+        {
+            super(lexer, mode);
+            this.field = field;
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
+        {
             lexer.insert = -1; // defer implicit inline start tags
 
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node;
+            TagTable tt = lexer.configuration.tt;
+
             while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
             {
                 if (node.tag == field.tag && node.type == Node.END_TAG)
                 {
                     field.closed = true;
                     Node.trimSpaces(lexer, field);
-                    return;
+                    return null;
                 }
 
                 // deal with comments etc.
@@ -3207,8 +4149,7 @@ public final class ParserImpl
                     && (node.tag == tt.tagOption || node.tag == tt.tagOptgroup || node.tag == tt.tagScript))
                 {
                     field.insertNodeAtEnd(node);
-                    parseTag(lexer, node, Lexer.IGNORE_WHITESPACE);
-                    continue;
+                    return parseTag(node, Lexer.IGNORE_WHITESPACE);
                 }
 
                 // discard unexpected tags
@@ -3216,6 +4157,7 @@ public final class ParserImpl
             }
 
             lexer.report.warning(lexer, field, node, Report.MISSING_ENDTAG_FOR);
+            return null;
         }
 
     }
@@ -3309,26 +4251,70 @@ public final class ParserImpl
     /**
      * Parser for OPTGROUP.
      */
-    public static class ParseOptGroup implements Parser
+    public static class ParseOptGroup extends ElementParser
     {
 
         /**
-         * @see org.w3c.tidy.Parser#parse(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
+         * @see org.w3c.tidy.ParserImpl.ElementParser#newState(org.w3c.tidy.Lexer, org.w3c.tidy.Node, short)
          */
-        public void parse(Lexer lexer, Node field, short mode)
+        @Override
+        ParseState newState(Lexer lexer, Node field, short mode)
         {
-            Node node;
-            TagTable tt = lexer.configuration.tt;
+            return new OptGroupState(lexer, field, mode);
+        }
 
+    }
+
+    /**
+     * Parsing state for OPTGROUP.
+     */
+    private static final class OptGroupState extends ParseState
+    {
+
+        /**
+         * the optgroup element.
+         */
+        private final Node field;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param field the optgroup element
+         * @param mode content mode
+         */
+        OptGroupState(Lexer lexer, Node field, short mode)
+        {
+            super(lexer, mode);
+            this.field = field;
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
+        {
             lexer.insert = -1; // defer implicit inline start tags
 
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node;
+            TagTable tt = lexer.configuration.tt;
+
             while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
             {
                 if (node.tag == field.tag && node.type == Node.END_TAG)
                 {
                     field.closed = true;
                     Node.trimSpaces(lexer, field);
-                    return;
+                    return null;
                 }
 
                 // deal with comments etc.
@@ -3345,13 +4331,14 @@ public final class ParserImpl
                     }
 
                     field.insertNodeAtEnd(node);
-                    parseTag(lexer, node, Lexer.MIXED_CONTENT);
-                    continue;
+                    return parseTag(node, Lexer.MIXED_CONTENT);
                 }
 
                 // discard unexpected tags
                 lexer.report.warning(lexer, field, node, Report.DISCARDING_UNEXPECTED);
             }
+
+            return null;
         }
 
     }
@@ -3459,7 +4446,7 @@ public final class ParserImpl
         {
             if ("xml:space".equals(attribute.attribute))
             {
-                return "preserve".equals(attribute.value);
+                return "preserve".equals(attribute.getValue());
             }
         }
 
@@ -3494,72 +4481,129 @@ public final class ParserImpl
      */
     public static void parseXMLElement(Lexer lexer, Node element, short mode)
     {
-        Node node;
+        run(new XMLElementState(lexer, element, mode));
+    }
 
-        // if node is pre or has xml:space="preserve" then do so
+    /**
+     * Parsing state for XML elements.
+     */
+    private static final class XMLElementState extends ParseState
+    {
+
+        /**
+         * the element.
+         */
+        private final Node element;
 
-        if (XMLPreserveWhiteSpace(element, lexer.configuration.tt))
+        /**
+         * child element being parsed, inserted when done.
+         */
+        private Node child;
+
+        /**
+         * Instantiates a new parsing state.
+         * @param lexer the Lexer to use
+         * @param element the element to parse
+         * @param mode content mode
+         */
+        XMLElementState(Lexer lexer, Node element, short mode)
         {
-            mode = Lexer.PREFORMATTED;
+            super(lexer, mode);
+            this.element = element;
         }
 
-        while ((node = lexer.getToken(mode)) != null)
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#start()
+         */
+        @Override
+        ParseState start()
         {
-            if (node.type == Node.END_TAG && node.element.equals(element.element))
+            // if node is pre or has xml:space="preserve" then do so
+
+            if (XMLPreserveWhiteSpace(element, lexer.configuration.tt))
             {
-                element.closed = true;
-                break;
+                mode = Lexer.PREFORMATTED;
             }
 
-            // discard unexpected end tags
-            if (node.type == Node.END_TAG)
+            return resume();
+        }
+
+        /**
+         * @see org.w3c.tidy.ParserImpl.ParseState#resume()
+         */
+        @Override
+        ParseState resume()
+        {
+            Node node;
+
+            if (child != null)
             {
-                lexer.report.error(lexer, element, node, Report.UNEXPECTED_ENDTAG);
-                continue;
+                element.insertNodeAtEnd(child);
+                child = null;
             }
 
-            // parse content on seeing start tag
-            if (node.type == Node.START_TAG)
+            while ((node = lexer.getToken(mode)) != null)
             {
-                parseXMLElement(lexer, node, mode);
-            }
+                if (node.type == Node.END_TAG && node.element.equals(element.element))
+                {
+                    element.closed = true;
+                    break;
+                }
 
-            element.insertNodeAtEnd(node);
-        }
+                // discard unexpected end tags
+                if (node.type == Node.END_TAG)
+                {
+                    lexer.report.error(lexer, element, node, Report.UNEXPECTED_ENDTAG);
+                    continue;
+                }
 
-        // if first child is text then trim initial space and delete text node if it is empty.
+                // parse content on seeing start tag
+                if (node.type == Node.START_TAG)
+                {
+                    child = node;
+                    return new XMLElementState(lexer, node, mode);
+                }
 
-        node = element.content;
+                element.insertNodeAtEnd(node);
+            }
 
-        if (node != null && node.type == Node.TEXT_NODE && mode != Lexer.PREFORMATTED)
-        {
-            if (node.textarray[node.start] == (byte) ' ')
-            {
-                node.start++;
+            // if first child is text then trim initial space and delete text node if it is empty.
+
+            node = element.content;
 
-                if (node.start >= node.end)
+            if (node != null && node.type == Node.TEXT_NODE && mode != Lexer.PREFORMATTED)
+            {
+                if (node.textarray[node.start] == (byte) ' ')
                 {
-                    Node.discardElement(node);
+                    node.start++;
+
+                    if (node.start >= node.end)
+                    {
+                        Node.discardElement(node);
+                    }
                 }
             }
-        }
 
-        // if last child is text then trim final space and delete the text node if it is empty
+            // if last child is text then trim final space and delete the text node if it is empty
 
-        node = element.last;
+            node = element.last;
 
-        if (node != null && node.type == Node.TEXT_NODE && mode != Lexer.PREFORMATTED)
-        {
-            if (node.textarray[node.end - 1] == (byte) ' ')
+            if (node != null && node.type == Node.TEXT_NODE && mode != Lexer.PREFORMATTED)
             {
-                node.end--;
-
-                if (node.start >= node.end)
+                if (node.textarray[node.end - 1] == (byte) ' ')
                 {
-                    Node.discardElement(node);
+                    node.end--;
+
+                    if (node.start >= node.end)
+                    {
+                        Node.discardElement(node);
+                    }
                 }
             }
+
+            return null;
         }
+
     }
 
     
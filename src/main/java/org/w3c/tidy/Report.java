@@ -53,6 +53,7 @@
  */
 package org.w3c.tidy;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.text.MessageFormat;
@@ -521,6 +522,36 @@ public final class Report
      */
     public static final short INVALID_NCR = 82;
 
+    /**
+     * parse limit: input exceeds max-input-bytes.
+     */
+    public static final short INPUT_LIMIT_EXCEEDED = 86;
+
+    /**
+     * parse limit: more nodes than max-nodes.
+     */
+    public static final short NODE_LIMIT_EXCEEDED = 87;
+
+    /**
+     * parse limit: elements nested deeper than max-depth.
+     */
+    public static final short DEPTH_LIMIT_EXCEEDED = 88;
+
+    /**
+     * parse limit: element with more attributes than max-attributes.
+     */
+    public static final short ATTRIBUTE_LIMIT_EXCEEDED = 89;
+
+    /**
+     * parse limit: parsing takes longer than max-parse-time.
+     */
+    public static final short PARSE_TIME_EXCEEDED = 90;
+
+    /**
+     * input: error while reading the input stream.
+     */
+    public static final short INPUT_ERROR = 91;
+
     /**
      * Constant used for reporting of given doctype.
      */
@@ -1083,7 +1114,7 @@ public final class Report
                 printMessage(code, lexer, "bad_attribute_value", new Object[]{
                     getTagName(node),
                     attribute.attribute,
-                    attribute.value}, Level.WARNING);
+                    attribute.getValue()}, Level.WARNING);
                 break;
 
             case XML_ID_SYNTAX :
@@ -1115,7 +1146,7 @@ public final class Report
             case REPEATED_ATTRIBUTE :
                 printMessage(code, lexer, "repeated_attribute", new Object[]{
                     getTagName(node),
-                    attribute.value,
+                    attribute.getValue(),
                     attribute.attribute}, Level.WARNING);
                 break;
 
@@ -1124,7 +1155,7 @@ public final class Report
                     code,
                     lexer,
                     "proprietary_attr_value",
-                    new Object[]{getTagName(node), attribute.value},
+                    new Object[]{getTagName(node), attribute.getValue()},
                     Level.WARNING);
                 break;
 
@@ -1173,7 +1204,7 @@ public final class Report
                     code,
                     lexer,
                     "anchor_not_unique",
-                    new Object[]{getTagName(node), attribute.value},
+                    new Object[]{getTagName(node), attribute.getValue()},
                     Level.WARNING);
                 break;
 
@@ -1197,7 +1228,7 @@ public final class Report
             case ATTR_VALUE_NOT_LCASE :
                 printMessage(code, lexer, "attr_value_not_lcase", new Object[]{
                     getTagName(node),
-                    attribute.value,
+                    attribute.getValue(),
                     attribute.attribute}, Level.WARNING);
                 break;
 
@@ -1511,6 +1542,64 @@ public final class Report
         }
     }
 
+    /**
+     * Prints the error for a parse limit which has been exceeded. Unlike other errors it is never kept quiet, since it
+     * explains why the document has been cut short.
+     * @param lexer Lexer
+     * @param node current tag, for ATTRIBUTE_LIMIT_EXCEEDED
+     * @param code error code
+     */
+    public void limitExceeded(Lexer lexer, Node node, short code)
+    {
+        lexer.errors++;
+
+        Configuration config = lexer.configuration;
+        switch (code)
+        {
+            case INPUT_LIMIT_EXCEEDED :
+                printMessage(code, lexer, "input_limit_exceeded", new Object[]{
+                    Integer.valueOf(config.maxInputBytes)}, Level.ERROR);
+                break;
+
+            case NODE_LIMIT_EXCEEDED :
+                printMessage(code, lexer, "node_limit_exceeded", new Object[]{
+                    Integer.valueOf(config.maxNodes)}, Level.ERROR);
+                break;
+
+            case DEPTH_LIMIT_EXCEEDED :
+                printMessage(code, lexer, "depth_limit_exceeded", new Object[]{
+                    Integer.valueOf(config.maxDepth)}, Level.ERROR);
+                break;
+
+            case ATTRIBUTE_LIMIT_EXCEEDED :
+                printMessage(code, lexer, "attribute_limit_exceeded", new Object[]{
+                    getTagName(node),
+                    Integer.valueOf(config.maxAttributes)}, Level.ERROR);
+                break;
+
+            case PARSE_TIME_EXCEEDED :
+                printMessage(code, lexer, "parse_time_exceeded", new Object[]{
+                    Integer.valueOf(config.maxParseTime)}, Level.ERROR);
+                break;
+
+            default :
+                break;
+        }
+    }
+
+    /**
+     * Prints the error for an I/O error while reading the input, which is then handled as the end of input.
+     * @param lexer Lexer
+     * @param e error which occurred while reading the input
+     */
+    public void inputError(Lexer lexer, IOException e)
+    {
+        lexer.errors++;
+
+        String reason = e.getMessage() != null ? e.getMessage() : e.toString();
+        printMessage(INPUT_ERROR, lexer, "input_error", new Object[]{reason}, Level.ERROR);
+    }
+
     /**
      * Prints error summary.
      * @param lexer Lexer
@@ -1659,6 +1748,28 @@ public final class Report
         printMessage(errout, "unknown_file", new Object[]{"Tidy", file}, Level.ERROR);
     }
 
+    /**
+     * Prints the "output error" message.
+     * @param errout PrintWriter
+     * @param e error which occurred while writing the output
+     */
+    public void outputError(PrintWriter errout, IOException e)
+    {
+        outputError(errout, "Tidy", e);
+    }
+
+    /**
+     * Prints the "can't write output" message for the given output.
+     * @param errout PrintWriter
+     * @param name name of the output, e.g. a file name
+     * @param e I/O error
+     */
+    public void outputError(PrintWriter errout, String name, IOException e)
+    {
+        String reason = e.getMessage() != null ? e.getMessage() : e.toString();
+        printMessage(errout, "output_error", new Object[]{name, reason}, Level.ERROR);
+    }
+
     /**
      * Prints the "needs author intervention" message.
      * @param errout PrintWriter
@@ -0,0 +1,494 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+
+
+/**
+ * StreamIn implementation which decodes the input in large blocks. Characters are read from the underlying reader
+ * into a reusable window and then served one at a time by <code>readChar()</code>, avoiding a synchronized
+ * <code>Reader.read()</code> call for each character of the document. Line, column and tab handling are the same as
+ * in {@link StreamInJavaImpl}.
+ * @version $Revision$ ($Author$)
+ */
+public class StreamInBufferedImpl implements StreamIn
+{
+
+    /**
+     * size of the decoding window, in chars.
+     */
+    protected static final int WINDOW_SIZE = 16384;
+
+    /**
+     * number of characters kept in the push back buffer.
+     */
+    private static final int CHARBUF_SIZE = 16;
+
+    /**
+     * push back buffer.
+     */
+    private int[] charbuf = new int[CHARBUF_SIZE];
+
+    /**
+     * actual position in push back buffer.
+     */
+    private int bufpos;
+
+    /**
+     * decoded characters not yet consumed.
+     */
+    protected char[] window;
+
+    /**
+     * position of the next char to read in <code>window</code>.
+     */
+    protected int windowpos;
+
+    /**
+     * number of valid chars in <code>window</code>.
+     */
+    protected int windowlen;
+
+    /**
+     * Java input stream reader.
+     */
+    private Reader reader;
+
+    /**
+     * has end of stream been reached?
+     */
+    protected boolean endOfStream;
+
+    /**
+     * Is char pushed?
+     */
+    private boolean pushed;
+
+    /**
+     * current column number.
+     */
+    private int curcol;
+
+    /**
+     * last column.
+     */
+    private int lastcol;
+
+    /**
+     * current line number.
+     */
+    private int curline;
+
+    /**
+     * tab size in chars.
+     */
+    private int tabsize;
+
+    /**
+     * spaces still to be returned for the last tab.
+     */
+    private int tabs;
+
+    /**
+     * lexer, for error reporting and parse limits.
+     */
+    protected Lexer lexer;
+
+    /**
+     * Instantiates a new StreamInBufferedImpl.
+     * @param stream the stream to read from
+     * @param encoding the streams text encoding
+     * @param tabsize the tab size
+     * @throws UnsupportedEncodingException if encoding not supported
+     */
+    protected StreamInBufferedImpl(InputStream stream, String encoding, int tabsize)
+        throws UnsupportedEncodingException
+    {
+        this(new InputStreamReader(stream, encoding), tabsize);
+    }
+
+    /**
+     * Instantiates a new StreamInBufferedImpl.
+     * @param reader the reader
+     * @param tabsize the tab size
+     */
+    protected StreamInBufferedImpl(Reader reader, int tabsize)
+    {
+        this(tabsize);
+        this.reader = reader;
+        this.window = new char[WINDOW_SIZE];
+    }
+
+    /**
+     * Instantiates a new StreamInBufferedImpl without a reader. Used by subclasses which decode the input themselves
+     * and override <code>readCharFromStream()</code>.
+     * @param tabsize the tab size
+     */
+    protected StreamInBufferedImpl(int tabsize)
+    {
+        this.pushed = false;
+        this.tabsize = tabsize;
+        this.curline = 1;
+        this.curcol = 1;
+        this.endOfStream = false;
+    }
+
+    /**
+     * Refills the decoding window from the reader.
+     * @return <code>false</code> if no more chars are available
+     */
+    protected boolean fillWindow()
+    {
+        int count;
+        try
+        {
+            do
+            {
+                count = reader.read(this.window, 0, this.window.length);
+            }
+            while (count == 0);
+        }
+        catch (IOException e)
+        {
+            if (this.lexer != null)
+            {
+                this.lexer.report.inputError(this.lexer, e);
+            }
+            count = -1;
+        }
+
+        if (this.lexer != null)
+        {
+            count = this.lexer.acceptInput(count);
+        }
+
+        if (count <= 0)
+        {
+            this.windowpos = 0;
+            this.windowlen = 0;
+            return false;
+        }
+
+        this.windowpos = 0;
+        this.windowlen = count;
+        return true;
+    }
+
+    /**
+     * @see org.w3c.tidy.StreamIn#readCharFromStream()
+     */
+    @Override
+    public int readCharFromStream()
+    {
+        if (this.windowpos >= this.windowlen && !fillWindow())
+        {
+            endOfStream = true;
+            return END_OF_STREAM;
+        }
+
+        return this.window[this.windowpos++];
+    }
+
+    /**
+     * @see org.w3c.tidy.StreamIn#readChar()
+     */
+    @Override
+    public int readChar()
+    {
+        int c;
+
+        if (this.pushed)
+        {
+            c = this.charbuf[--(this.bufpos)];
+            if ((this.bufpos) == 0)
+            {
+                this.pushed = false;
+            }
+
+            if (c == '\n')
+            {
+                this.curcol = 1;
+                this.curline++;
+                return c;
+            }
+
+            this.curcol++;
+            return c;
+        }
+
+        this.lastcol = this.curcol;
+
+        if (this.tabs > 0)
+        {
+            this.curcol++;
+            this.tabs--;
+            return ' ';
+        }
+
+        c = readCharFromStream();
+
+        if (c < 0)
+        {
+            endOfStream = true;
+            return END_OF_STREAM;
+        }
+
+        // plain characters are by far the most common case, check them first
+        if (c > '\r')
+        {
+            this.curcol++;
+            return c;
+        }
+
+        if (c == '\n')
+        {
+            this.curcol = 1;
+            this.curline++;
+            return c;
+        }
+        else if (c == '\r') // \r\n
+        {
+            c = readCharFromStream();
+            if (c != '\n')
+            {
+                if (c != END_OF_STREAM)
+                {
+                    ungetChar(c);
+                }
+                c = '\n';
+            }
+            this.curcol = 1;
+            this.curline++;
+            return c;
+        }
+
+        if (c == '\t')
+        {
+            this.tabs = tabsize > 0 ? this.tabsize - ((this.curcol - 1) % this.tabsize) - 1 : 0;
+            this.curcol++;
+            c = ' ';
+            return c;
+        }
+
+        this.curcol++;
+
+        return c;
+    }
+
+    /**
+     * Appends to the lexer buffer the run of plain text characters which immediately follows in the input, as if each
+     * of them had been read by <code>readChar()</code> and stored by <code>Lexer.addCharToLexer()</code>. Nothing is
+     * copied while characters are pushed back or a tab is being expanded.
+     * @param lexer Lexer whose buffer receives the text
+     * @return number of characters consumed
+     */
+    int copyTextRun(Lexer lexer)
+    {
+        return copyRun(lexer, false);
+    }
+
+    /**
+     * Appends to the lexer buffer the script or style content which immediately follows in the input, up to the next
+     * <code>&lt;</code> or line end. Like <code>copyTextRun()</code>, but spaces and <code>&amp;</code> are part of
+     * the run, since there is no markup to recognize in CDATA content except for end tags.
+     * @param lexer Lexer whose buffer receives the text
+     * @return number of characters consumed
+     */
+    int copyCDATARun(Lexer lexer)
+    {
+        return copyRun(lexer, true);
+    }
+
+    /**
+     * Copies a run of characters to the lexer buffer and updates the current column.
+     * @param lexer Lexer whose buffer receives the text
+     * @param cdata is the run part of CDATA content?
+     * @return number of characters consumed
+     */
+    private int copyRun(Lexer lexer, boolean cdata)
+    {
+        if (this.pushed || this.tabs > 0)
+        {
+            return 0;
+        }
+
+        int count = scanTextRun(lexer, cdata);
+        if (count > 0)
+        {
+            this.curcol += count;
+            this.lastcol = this.curcol - 1;
+        }
+        return count;
+    }
+
+    /**
+     * Copies a run of plain text characters from the current window to the lexer buffer. Plain characters are the ones
+     * the lexer stores unchanged in content: anything but white space, control characters, <code>&lt;</code> and
+     * <code>&amp;</code>. A single space between two plain characters is stored unchanged too, so it is part of the
+     * run. In CDATA content every space and <code>&amp;</code> is plain as well. Only characters already in the window
+     * are considered.
+     * @param lexer Lexer whose buffer receives the text
+     * @param cdata is the run part of CDATA content?
+     * @return number of characters consumed
+     */
+    protected int scanTextRun(Lexer lexer, boolean cdata)
+    {
+        char[] buf = this.window;
+        int start = this.windowpos;
+        int pos = start;
+        int limit = this.windowlen;
+
+        while (pos < limit)
+        {
+            char c = buf[pos];
+            if (isPlainChar(c) || (cdata && (c == ' ' || c == '&')))
+            {
+                pos++;
+            }
+            else if (c == ' ' && pos + 1 < limit && isPlainChar(buf[pos + 1]))
+            {
+                pos += 2;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        if (pos > start)
+        {
+            lexer.addChars(buf, start, pos);
+            this.windowpos = pos;
+        }
+        return pos - start;
+    }
+
+    /**
+     * Is this a plain text character, which the lexer stores unchanged in content? Surrogates and the FFFE/FFFF non
+     * characters are not, since the lexer replaces them.
+     * @param c char
+     * @return <code>true</code> if c can be part of a text run
+     */
+    private static boolean isPlainChar(char c)
+    {
+        return c > ' ' && c != '<' && c != '&' && (c < 0xD800 || (c > 0xDFFF && c < 0xFFFE));
+    }
+
+    /**
+     * @see org.w3c.tidy.StreamIn#ungetChar(int)
+     */
+    @Override
+    public void ungetChar(int c)
+    {
+        this.pushed = true;
+        if (this.bufpos >= CHARBUF_SIZE)
+        {
+            // pop last element
+            System.arraycopy(this.charbuf, 0, this.charbuf, 1, CHARBUF_SIZE - 1);
+            this.bufpos--;
+        }
+        this.charbuf[(this.bufpos)++] = c;
+
+        if (c == '\n')
+        {
+            --this.curline;
+        }
+
+        this.curcol = this.lastcol;
+    }
+
+    /**
+     * @see org.w3c.tidy.StreamIn#isEndOfStream()
+     */
+    @Override
+    public boolean isEndOfStream()
+    {
+        return endOfStream;
+    }
+
+    /**
+     * Getter for <code>curcol</code>.
+     * @return Returns the curcol.
+     */
+    @Override
+    public int getCurcol()
+    {
+        return this.curcol;
+    }
+
+    /**
+     * Getter for <code>curline</code>.
+     * @return Returns the curline.
+     */
+    @Override
+    public int getCurline()
+    {
+        return this.curline;
+    }
+
+    /**
+     * @see org.w3c.tidy.StreamIn#setLexer(org.w3c.tidy.Lexer)
+     */
+    @Override
+    public void setLexer(Lexer lexer)
+    {
+        this.lexer = lexer;
+    }
+
+}
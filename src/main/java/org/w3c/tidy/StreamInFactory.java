@@ -75,16 +75,24 @@ public final class StreamInFactory
     }
 
     /**
-     * Returns the appropriate StreamIn implementation.
+     * Returns the appropriate StreamIn implementation. UTF-8 and ASCII input is decoded by {@link StreamInUTF8Impl},
+     * other encodings are decoded in blocks by {@link StreamInBufferedImpl}.
      * @param config configuration instance
      * @param stream input stream
      * @return StreamIn instance
      */
     public static StreamIn getStreamIn(Configuration config, InputStream stream)
     {
+        String encoding = config.getInCharEncodingName();
+        if ("UTF8".equals(encoding) || "ASCII".equals(encoding))
+        {
+            // decoded directly from bytes
+            return new StreamInUTF8Impl(stream, "ASCII".equals(encoding), config.tabsize);
+        }
+
         try
         {
-            return new StreamInJavaImpl(stream, config.getInCharEncodingName(), config.tabsize);
+            return new StreamInBufferedImpl(stream, encoding, config.tabsize);
         }
         catch (UnsupportedEncodingException e)
         {
@@ -100,6 +108,6 @@ public final class StreamInFactory
      */
     public static StreamIn getStreamIn(Configuration config, Reader reader)
     {
-        return new StreamInJavaImpl(reader, config.tabsize);
+        return new StreamInBufferedImpl(reader, config.tabsize);
     }
 }
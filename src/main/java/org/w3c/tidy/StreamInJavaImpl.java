@@ -61,7 +61,9 @@ import java.io.UnsupportedEncodingException;
 
 
 /**
- * StreamIn Implementation using java writers.
+ * StreamIn Implementation using java writers, reading one character at a time. {@link StreamInFactory} no longer
+ * returns it, but it is kept as part of the public API and as the reference implementation which the block decoding
+ * streams are tested against.
  * @author Fabrizio Giustina
  * @version $Revision$ ($Author$)
  */
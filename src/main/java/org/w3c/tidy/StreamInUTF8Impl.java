@@ -0,0 +1,383 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * StreamIn implementation for UTF-8 and ASCII input which decodes the raw bytes itself instead of going through an
+ * <code>InputStreamReader</code>. Malformed UTF-8 sequences are reported with <code>Report.encodingError()</code> and
+ * replaced by U+FFFD. Since the lexer stores text as UTF-8, runs of plain text are copied byte for byte into the lexer
+ * buffer without being decoded and encoded again.
+ * @version $Revision$ ($Author$)
+ */
+public class StreamInUTF8Impl extends StreamInBufferedImpl
+{
+
+    /**
+     * Unicode replacement character.
+     */
+    private static final int REPLACEMENT_CHAR = 0xFFFD;
+
+    /**
+     * input stream.
+     */
+    private InputStream stream;
+
+    /**
+     * raw bytes not yet consumed.
+     */
+    private byte[] bytes = new byte[WINDOW_SIZE];
+
+    /**
+     * position of the next byte to read in <code>bytes</code>.
+     */
+    private int bytepos;
+
+    /**
+     * number of valid bytes in <code>bytes</code>.
+     */
+    private int bytelen;
+
+    /**
+     * bytes of the multi-byte sequence being decoded.
+     */
+    private byte[] sequence = new byte[4];
+
+    /**
+     * low surrogate still to be returned for a character outside the BMP, 0 if none.
+     */
+    private int lowSurrogate;
+
+    /**
+     * Is the input ASCII? If so any byte above 127 is replaced by U+FFFD, as the java ASCII decoder does.
+     */
+    private boolean ascii;
+
+    /**
+     * Instantiates a new StreamInUTF8Impl.
+     * @param stream the stream to read from
+     * @param ascii <code>true</code> if the stream is ASCII rather than UTF-8 encoded
+     * @param tabsize the tab size
+     */
+    protected StreamInUTF8Impl(InputStream stream, boolean ascii, int tabsize)
+    {
+        super(tabsize);
+        this.stream = stream;
+        this.ascii = ascii;
+    }
+
+    /**
+     * Refills the byte window from the stream.
+     * @return <code>false</code> if no more bytes are available
+     */
+    private boolean fillBytes()
+    {
+        int count;
+        try
+        {
+            do
+            {
+                count = stream.read(this.bytes, 0, this.bytes.length);
+            }
+            while (count == 0);
+        }
+        catch (IOException e)
+        {
+            if (this.lexer != null)
+            {
+                this.lexer.report.inputError(this.lexer, e);
+            }
+            count = -1;
+        }
+
+        if (this.lexer != null)
+        {
+            count = this.lexer.acceptInput(count);
+        }
+
+        this.bytepos = 0;
+        this.bytelen = count < 0 ? 0 : count;
+        return count > 0;
+    }
+
+    /**
+     * Returns the next byte without consuming it.
+     * @return next byte, or -1 at end of stream
+     */
+    private int peekByte()
+    {
+        if (this.bytepos >= this.bytelen && !fillBytes())
+        {
+            return -1;
+        }
+        return this.bytes[this.bytepos] & 0xFF;
+    }
+
+    /**
+     * @see org.w3c.tidy.StreamIn#readCharFromStream()
+     */
+    @Override
+    public int readCharFromStream()
+    {
+        int c;
+
+        if (this.lowSurrogate != 0)
+        {
+            c = this.lowSurrogate;
+            this.lowSurrogate = 0;
+            return c;
+        }
+
+        c = peekByte();
+        if (c < 0)
+        {
+            endOfStream = true;
+            return END_OF_STREAM;
+        }
+        this.bytepos++;
+
+        if (c < 0x80)
+        {
+            return c;
+        }
+
+        if (this.ascii)
+        {
+            return REPLACEMENT_CHAR;
+        }
+
+        return decodeSequence(c);
+    }
+
+    /**
+     * Decodes a multi-byte UTF-8 sequence. Successor bytes which don't belong to the sequence are left in the stream.
+     * @param lead first byte of the sequence, already consumed
+     * @return decoded char, the high surrogate for chars outside the BMP, or U+FFFD if the sequence is invalid
+     */
+    private int decodeSequence(int lead)
+    {
+        int n;
+        int count;
+
+        if ((lead & 0xE0) == 0xC0)
+        {
+            n = lead & 0x1F;
+            count = 2;
+        }
+        else if ((lead & 0xF0) == 0xE0)
+        {
+            n = lead & 0x0F;
+            count = 3;
+        }
+        else if ((lead & 0xF8) == 0xF0)
+        {
+            n = lead & 0x07;
+            count = 4;
+        }
+        else
+        {
+            // not a valid first byte of a UTF-8 sequence
+            return invalidSequence(lead);
+        }
+
+        this.sequence[0] = (byte) lead;
+        for (int i = 1; i < count; i++)
+        {
+            int b = peekByte();
+            if (b < 0 || (b & 0xC0) != 0x80)
+            {
+                // illegal successor byte value
+                return invalidSequence(lead);
+            }
+            this.bytepos++;
+            this.sequence[i] = (byte) b;
+            n = (n << 6) | (b & 0x3F);
+        }
+
+        if (!EncodingUtils.isValidUTF8Sequence(n, this.sequence, 0, count))
+        {
+            return invalidSequence(lead);
+        }
+
+        if (n >= EncodingUtils.UTF16_SURROGATES_BEGIN)
+        {
+            // the lexer works on UTF-16 chars, as returned by java readers
+            n -= EncodingUtils.UTF16_SURROGATES_BEGIN;
+            this.lowSurrogate = EncodingUtils.UTF16_HIGH_SURROGATE_BEGIN + (n & 0x3FF);
+            return EncodingUtils.UTF16_LOW_SURROGATE_BEGIN + (n >> 10);
+        }
+
+        return n;
+    }
+
+    /**
+     * Reports an invalid UTF-8 sequence with the value of its first byte, which is where the replaced bytes start.
+     * @param lead first byte of the sequence
+     * @return replacement char
+     */
+    private int invalidSequence(int lead)
+    {
+        if (this.lexer != null)
+        {
+            // set error position just before offending character, keeping the position of the current token
+            int lines = this.lexer.lines;
+            int columns = this.lexer.columns;
+            this.lexer.lines = getCurline();
+            this.lexer.columns = getCurcol();
+            this.lexer.report.encodingError(this.lexer, Report.INVALID_UTF8 | Report.REPLACED_CHAR, lead);
+            this.lexer.lines = lines;
+            this.lexer.columns = columns;
+        }
+        return REPLACEMENT_CHAR;
+    }
+
+    /**
+     * Copies plain ASCII chars and complete, valid two and three byte sequences straight from the byte window.
+     * @see org.w3c.tidy.StreamInBufferedImpl#scanTextRun(org.w3c.tidy.Lexer, boolean)
+     */
+    @Override
+    protected int scanTextRun(Lexer lexer, boolean cdata)
+    {
+        if (this.lowSurrogate != 0)
+        {
+            return 0;
+        }
+
+        byte[] buf = this.bytes;
+        int start = this.bytepos;
+        int pos = start;
+        int limit = this.bytelen;
+        int count = 0;
+
+        while (pos < limit)
+        {
+            int b = buf[pos] & 0xFF;
+
+            if (b < 0x80)
+            {
+                if (cdata)
+                {
+                    // line ends, tabs and the start of a tag end the run
+                    if (b < ' ' || b == '<')
+                    {
+                        break;
+                    }
+                }
+                else if (b == ' ' && pos + 1 < limit && isPlainAscii(buf[pos + 1]))
+                {
+                    // a single space between plain chars is stored as is
+                    pos++;
+                    count++;
+                }
+                else if (!isPlainAscii(b))
+                {
+                    break;
+                }
+                pos++;
+            }
+            else if (this.ascii)
+            {
+                break;
+            }
+            else if (b >= 0xC2 && b <= 0xDF)
+            {
+                if (pos + 1 >= limit || (buf[pos + 1] & 0xC0) != 0x80)
+                {
+                    break;
+                }
+                pos += 2;
+            }
+            else if ((b & 0xF0) == 0xE0)
+            {
+                if (pos + 2 >= limit || (buf[pos + 1] & 0xC0) != 0x80 || (buf[pos + 2] & 0xC0) != 0x80)
+                {
+                    break;
+                }
+                int n = ((b & 0x0F) << 12) | ((buf[pos + 1] & 0x3F) << 6) | (buf[pos + 2] & 0x3F);
+                if (!EncodingUtils.isValidUTF8Sequence(n, buf, pos, 3))
+                {
+                    break;
+                }
+                pos += 3;
+            }
+            else
+            {
+                // four byte sequences and errors take the slow path
+                break;
+            }
+            count++;
+        }
+
+        if (pos > start)
+        {
+            lexer.addBytes(buf, start, pos - start);
+            this.bytepos = pos;
+        }
+        return count;
+    }
+
+    /**
+     * Is this byte a plain text ASCII char, which the lexer stores unchanged in content?
+     * @param b byte
+     * @return <code>true</code> if b can be part of a text run
+     */
+    private static boolean isPlainAscii(int b)
+    {
+        return b > ' ' && b < 0x80 && b != '<' && b != '&';
+    }
+
+}
@@ -163,7 +163,7 @@ public final class TagCheckImpl
 
             xmlns = node.getAttrByName("xmlns");
 
-            if (xmlns != null && XHTML_NAMESPACE.equals(xmlns.value))
+            if (xmlns != null && XHTML_NAMESPACE.equals(xmlns.getValue()))
             {
                 lexer.isvoyager = true;
                 if (!lexer.configuration.htmlOut) // Unless user has specified plain HTML output,
@@ -210,7 +210,7 @@ public final class TagCheckImpl
                 // check for javascript
                 if (lang != null)
                 {
-                    String str = lang.value;
+                    String str = lang.getValue();
                     if ("javascript".equalsIgnoreCase(str) || "jscript".equalsIgnoreCase(str))
                     {
                         node.addAttribute("type", "text/javascript");
@@ -271,9 +271,9 @@ public final class TagCheckImpl
                 attval = node.getAttrByName("border");
                 if (attval != null)
                 {
-                    if (attval.value == null)
+                    if (attval.getValue() == null)
                     {
-                        attval.value = "1";
+                        attval.setValue("1");
                     }
                 }
             }
@@ -309,7 +309,7 @@ public final class TagCheckImpl
             {
                 if ("align".equalsIgnoreCase(attval.attribute))
                 {
-                    value = attval.value;
+                    value = attval.getValue();
                     break;
                 }
             }
@@ -619,7 +619,7 @@ public final class TagCheckImpl
 
             node.checkAttributes(lexer);
 
-            if (rel != null && rel.value != null && rel.value.equals("stylesheet"))
+            if (rel != null && rel.getValue() != null && rel.getValue().equals("stylesheet"))
             {
                 AttVal type = node.getAttrByName("type");
 
@@ -54,6 +54,7 @@
 package org.w3c.tidy;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -340,6 +341,36 @@ public final class TagTable
         new Dict("picture", Dict.VERS_HTML5, Dict.CM_BLOCK, ParserImpl.BLOCK, null),
     };
 
+    /**
+     * size of the perfect hash table for known tags, a power of two.
+     */
+    private static final int TAG_HASH_SIZE = 2048;
+
+    /**
+     * known tags, indexed by the hash of their name.
+     */
+    private static final Dict[] TAG_HASH = new Dict[TAG_HASH_SIZE];
+
+    /**
+     * UTF-8 encoded names of the tags in TAG_HASH.
+     */
+    private static final byte[][] TAG_HASH_NAMES = new byte[TAG_HASH_SIZE][];
+
+    /**
+     * hash seed for which no two known tag names collide.
+     */
+    private static final int TAG_HASH_SEED;
+
+    static
+    {
+        int seed = 0;
+        while (!fillTagHash(seed))
+        {
+            seed++;
+        }
+        TAG_HASH_SEED = seed;
+    }
+
     /**
      * html tag.
      */
@@ -830,6 +861,12 @@ public final class TagTable
      */
     private Map<String, Dict> tagHashtable = new HashMap<>();
 
+    /**
+     * this table's definitions of the known tags, indexed like TAG_HASH. install() changes an existing definition in
+     * place, so these stay the entries of tagHashtable when tags are redefined.
+     */
+    private final Dict[] tagHash = new Dict[TAG_HASH_SIZE];
+
     /**
      * Instantiates a new tag table with known tags.
      */
@@ -839,6 +876,13 @@ public final class TagTable
         {
             install(TAG);
         }
+        for (int h = 0; h < TAG_HASH_SIZE; h++)
+        {
+            if (TAG_HASH[h] != null)
+            {
+                tagHash[h] = lookup(TAG_HASH[h].name);
+            }
+        }
         tagHtml = lookup("html");
         tagHead = lookup("head");
         tagBody = lookup("body");
@@ -955,6 +999,84 @@ public final class TagTable
         return tagHashtable.get(name);
     }
 
+    /**
+     * Lookup a known tag definition by its UTF-8 encoded name, without creating a String. The definition is the one
+     * of this table, including changes made by defineTag(). User defined tags are not found here and must be looked up
+     * by name.
+     *
+     * @param bytes array containing the tag name
+     * @param start start position of the name
+     * @param end end position of the name
+     * @return tag definition (Dict) or null if this is not a known tag
+     */
+    public Dict lookup(byte[] bytes, int start, int end)
+    {
+        int h = tagHash(bytes, start, end, TAG_HASH_SEED);
+        byte[] name = TAG_HASH_NAMES[h];
+
+        if (name == null || name.length != end - start)
+        {
+            return null;
+        }
+
+        for (int i = 0; i < name.length; i++)
+        {
+            if (name[i] != bytes[start + i])
+            {
+                return null;
+            }
+        }
+
+        return tagHash[h];
+    }
+
+    /**
+     * Hashes a tag name.
+     *
+     * @param bytes array containing the tag name
+     * @param start start position of the name
+     * @param end end position of the name
+     * @param seed hash seed
+     * @return index in TAG_HASH
+     */
+    private static int tagHash(byte[] bytes, int start, int end, int seed)
+    {
+        int h = 0x811C9DC5 + seed * 0x9E3779B9;
+        for (int i = start; i < end; i++)
+        {
+            h = (h ^ (bytes[i] & 0xFF)) * 0x01000193;
+        }
+        return (h ^ (h >>> 16)) & (TAG_HASH_SIZE - 1);
+    }
+
+    /**
+     * Fills the perfect hash table with the known tags. As in install(), the first definition of a name wins.
+     *
+     * @param seed hash seed
+     * @return <code>false</code> if two different names collide with this seed
+     */
+    private static boolean fillTagHash(int seed)
+    {
+        Arrays.fill(TAG_HASH, null);
+        Arrays.fill(TAG_HASH_NAMES, null);
+
+        for (Dict dict : TAGS)
+        {
+            byte[] name = TidyUtils.getBytes(dict.name);
+            int h = tagHash(name, 0, name.length, seed);
+            if (TAG_HASH_NAMES[h] == null)
+            {
+                TAG_HASH[h] = dict;
+                TAG_HASH_NAMES[h] = name;
+            }
+            else if (!Arrays.equals(TAG_HASH_NAMES[h], name))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Installs a new tag in the tag table, or modify an existing one.
      *
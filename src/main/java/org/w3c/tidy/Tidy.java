@@ -64,6 +64,8 @@ import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Serializable;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -71,6 +73,12 @@ import java.util.Properties;
 
 /**
  * HTML parser and pretty printer.
+ * <p>
+ * A parse or pretty print can be cancelled from another thread by interrupting the thread which called Tidy, for
+ * instance with <code>Future.cancel(true)</code>. The lexer, the cleaner and the printer check the interrupt status
+ * every few hundred nodes, and stop with a {@link java.util.concurrent.CancellationException}; the interrupt status is
+ * left set.
+ * </p>
  *
  * @author Dave Raggett <a href="mailto:dsr@w3.org">dsr@w3.org </a>
  * @author Andy Quick <a href="mailto:ac.quick@sympatico.ca">ac.quick@sympatico.ca </a> (translation to Java)
@@ -129,6 +137,11 @@ public class Tidy implements Serializable
 
     private Report report;
 
+    /**
+     * Byte buffer reused by <code>pprint(org.w3c.dom.Node)</code>.
+     */
+    private transient ByteBuffer outputBuffer;
+
     /**
      * Instantiates a new Tidy instance. It's reccomended that a new instance is used at each parsing.
      */
@@ -338,6 +351,69 @@ public class Tidy implements Serializable
         return parse(streamIn, o);
     }
 
+    /**
+     * Reads from the given input and returns the root Node. If out is non-null, pretty prints to out. Warning: caller
+     * is responsible for calling close() on input and output after calling this method.
+     *
+     * @param in  input
+     * @param out optional destination for pretty-printed document
+     * @return parsed org.w3c.tidy.Node
+     */
+    public Node parse(InputStream in, WritableByteChannel out)
+    {
+        StreamIn streamIn = StreamInFactory.getStreamIn(configuration, in);
+
+        Out o = null;
+        if (out != null)
+        {
+            o = OutFactory.getOut(this.configuration, out);
+        }
+
+        return parse(streamIn, o);
+    }
+
+    /**
+     * Returns a tokenizer which reads the input token by token, without building a tree. Warning: caller is
+     * responsible for calling close() on input after reading it.
+     *
+     * @param in input
+     * @return tokenizer positioned before the first token
+     */
+    public TidyTokenizer tokenize(InputStream in)
+    {
+        return tokenize(StreamInFactory.getStreamIn(configuration, in));
+    }
+
+    /**
+     * Returns a tokenizer which reads the input token by token, without building a tree. Warning: caller is
+     * responsible for calling close() on input after reading it.
+     *
+     * @param in input
+     * @return tokenizer positioned before the first token
+     */
+    public TidyTokenizer tokenize(Reader in)
+    {
+        return tokenize(StreamInFactory.getStreamIn(configuration, in));
+    }
+
+    /**
+     * Creates the lexer for a tokenizer, as parse() does for the parser.
+     *
+     * @param streamIn tidy StreamIn
+     * @return tokenizer
+     */
+    private TidyTokenizer tokenize(StreamIn streamIn)
+    {
+        configuration.adjust();
+
+        Lexer lexer = new Lexer(streamIn, configuration, this.report);
+        lexer.errout = errout;
+        streamIn.setLexer(lexer);
+        this.report.setFilename(inputStreamName);
+
+        return new TidyTokenizer(lexer);
+    }
+
     /**
      * Parses InputStream in and returns a DOM Document node. If out is non-null, pretty prints to OutputStream out.
      *
@@ -400,6 +476,60 @@ public class Tidy implements Serializable
         pprint(((DOMNodeImpl) node).adaptee, out);
     }
 
+    /**
+     * Pretty-prints a DOM Node to a channel. Caller is responsible for closing the channel after calling this method.
+     *
+     * @param node org.w3c.dom.Node. Must be an instance of org.w3c.tidy.DOMNodeImpl.
+     * @param out  channel
+     */
+    public void pprint(org.w3c.dom.Node node, WritableByteChannel out)
+    {
+        if (!(node instanceof DOMNodeImpl) || out == null)
+        {
+            return;
+        }
+
+        pprint(((DOMNodeImpl) node).adaptee, OutFactory.getOut(this.configuration, out));
+    }
+
+    /**
+     * Pretty-prints a DOM Node to a byte buffer, heap or direct. The output is added at the position of the buffer. If
+     * it does not fit, the buffer is replaced by a larger one of the same kind, holding a copy of its content.
+     *
+     * @param node org.w3c.dom.Node. Must be an instance of org.w3c.tidy.DOMNodeImpl.
+     * @param out  byte buffer
+     * @return the buffer holding the output, positioned after it: out or its larger replacement
+     */
+    public ByteBuffer pprint(org.w3c.dom.Node node, ByteBuffer out)
+    {
+        if (!(node instanceof DOMNodeImpl))
+        {
+            return out;
+        }
+
+        OutBufferedImpl o = OutFactory.getOut(this.configuration, out);
+        pprint(((DOMNodeImpl) node).adaptee, o);
+        return o.getByteBuffer();
+    }
+
+    /**
+     * Pretty-prints a DOM Node to a byte array owned by this Tidy, which is reused by the next call. The output is
+     * in <code>array()</code> of the returned buffer, from 0 to <code>position()</code>.
+     *
+     * @param node org.w3c.dom.Node. Must be an instance of org.w3c.tidy.DOMNodeImpl.
+     * @return heap buffer holding the output, valid until the next call
+     */
+    public ByteBuffer pprint(org.w3c.dom.Node node)
+    {
+        if (this.outputBuffer == null)
+        {
+            this.outputBuffer = ByteBuffer.allocate(OutBufferedImpl.BUFFER_SIZE * 2);
+        }
+        this.outputBuffer.clear();
+        this.outputBuffer = pprint(node, this.outputBuffer);
+        return this.outputBuffer;
+    }
+
     /**
      * Internal routine that actually does the parsing.
      *
@@ -589,7 +719,7 @@ public class Tidy implements Serializable
                     {
                         this.report.reportNumberOfSlides(errout, pprint.countSlides(body));
                     }
-                    pprint.createSlides(lexer, document);
+                    this.parseErrors += pprint.createSlides(lexer, document);
                 }
                 else if (!configuration.quiet)
                 {
@@ -622,6 +752,7 @@ public class Tidy implements Serializable
 
                 pprint.flushLine(o, 0);
                 o.flush();
+                checkOutput(o);
             }
 
         }
@@ -718,29 +849,55 @@ public class Tidy implements Serializable
      */
     private void pprint(Node node, OutputStream out)
     {
-        PPrint pprint;
-
         if (out != null)
         {
+            pprint(node, OutFactory.getOut(this.configuration, out));
+        }
+    }
 
-            Out o = OutFactory.getOut(this.configuration, out);
+    /**
+     * Pretty-prints a tidy Node.
+     *
+     * @param node org.w3c.tidy.Node
+     * @param o    tidy Out
+     */
+    private void pprint(Node node, Out o)
+    {
+        PPrint pprint;
 
-            Lexer lexer = new Lexer(null, this.configuration, this.report);
+        Lexer lexer = new Lexer(null, this.configuration, this.report);
 
-            pprint = new PPrint(configuration);
+        pprint = new PPrint(configuration);
 
-            if (configuration.xmlTags)
-            {
-                pprint.printXMLTree(o, (short) 0, 0, lexer, node);
-            }
-            else
-            {
-                pprint.printTree(o, (short) 0, 0, lexer, node);
-            }
+        if (configuration.xmlTags)
+        {
+            pprint.printXMLTree(o, (short) 0, 0, lexer, node);
+        }
+        else
+        {
+            pprint.printTree(o, (short) 0, 0, lexer, node);
+        }
+
+        pprint.flushLine(o, 0);
 
-            pprint.flushLine(o, 0);
+        o.flush();
+        checkOutput(o);
+    }
 
-            o.flush();
+    /**
+     * Reports an error if the output could not be written completely.
+     *
+     * @param o tidy Out
+     */
+    private void checkOutput(Out o)
+    {
+        if (o.getError() != null)
+        {
+            this.parseErrors++;
+            if (this.errout != null)
+            {
+                this.report.outputError(this.errout, o.getError());
+            }
         }
     }
 
@@ -1423,6 +1580,29 @@ public class Tidy implements Serializable
         return configuration.burstSlides;
     }
 
+    /**
+     * <code>slides-dir</code>- directory to write slides to. If not set, the <code>org.jtidy.slides.dir</code> system
+     * property is used, then the working directory.
+     *
+     * @param slidesDir directory to write slides to
+     * @see Configuration#slidesDir
+     */
+    public void setSlidesDir(String slidesDir)
+    {
+        configuration.slidesDir = slidesDir;
+    }
+
+    /**
+     * <code>slides-dir</code>- directory to write slides to.
+     *
+     * @return directory to write slides to, or <code>null</code> if not set
+     * @see Configuration#slidesDir
+     */
+    public String getSlidesDir()
+    {
+        return configuration.slidesDir;
+    }
+
     /**
      * <code>numeric-entities</code>- output entities other than the built-in HTML entities in the numeric rather
      * than the named entity form.
@@ -2327,6 +2507,223 @@ public class Tidy implements Serializable
         return configuration.trimEmpty;
     }
 
+    /**
+     * <code>minify</code>- write minified output.
+     *
+     * @param minify true = leave out line breaks between elements, optional end tags, unneeded attribute quotes and
+     * comments
+     * @see Configuration#minify
+     */
+    public void setMinify(boolean minify)
+    {
+        configuration.minify = minify;
+    }
+
+    /**
+     * <code>minify</code>- write minified output.
+     *
+     * @return true if tidy will write minified output
+     */
+    public boolean getMinify()
+    {
+        return configuration.minify;
+    }
+
+    /**
+     * <code>keep-comments</code>- keep comments in minified output.
+     *
+     * @param keepComments true = keep comments in minified output
+     * @see Configuration#keepComments
+     */
+    public void setKeepComments(boolean keepComments)
+    {
+        configuration.keepComments = keepComments;
+    }
+
+    /**
+     * <code>keep-comments</code>- keep comments in minified output.
+     *
+     * @return true if tidy will keep comments in minified output
+     */
+    public boolean getKeepComments()
+    {
+        return configuration.keepComments;
+    }
+
+    /**
+     * <code>parallel-print</code>- print large bodies on several threads. The output is the same as when printing on
+     * one thread.
+     *
+     * @param parallelPrint true = print parts of large bodies on the common fork join pool
+     * @see Configuration#parallelPrint
+     */
+    public void setParallelPrint(boolean parallelPrint)
+    {
+        configuration.parallelPrint = parallelPrint;
+    }
+
+    /**
+     * <code>parallel-print</code>- print large bodies on several threads.
+     *
+     * @return true if tidy will print large bodies on several threads
+     */
+    public boolean getParallelPrint()
+    {
+        return configuration.parallelPrint;
+    }
+
+    /**
+     * <code>parallel-print-threshold</code>- minimum number of nodes printed by each thread when printing in
+     * parallel.
+     *
+     * @param parallelPrintThreshold number of nodes
+     * @see Configuration#parallelPrintThreshold
+     */
+    public void setParallelPrintThreshold(int parallelPrintThreshold)
+    {
+        configuration.parallelPrintThreshold = parallelPrintThreshold;
+    }
+
+    /**
+     * <code>parallel-print-threshold</code>- minimum number of nodes printed by each thread when printing in
+     * parallel.
+     *
+     * @return number of nodes
+     */
+    public int getParallelPrintThreshold()
+    {
+        return configuration.parallelPrintThreshold;
+    }
+
+    /**
+     * <code>max-input-bytes</code>- maximum number of bytes read from the input. Parsing stops when the limit is
+     * exceeded.
+     *
+     * @param maxInputBytes number of bytes, 0 for no limit
+     * @see Configuration#maxInputBytes
+     */
+    public void setMaxInputBytes(int maxInputBytes)
+    {
+        configuration.maxInputBytes = maxInputBytes;
+    }
+
+    /**
+     * <code>max-input-bytes</code>- maximum number of bytes read from the input.
+     *
+     * @return number of bytes, 0 for no limit
+     */
+    public int getMaxInputBytes()
+    {
+        return configuration.maxInputBytes;
+    }
+
+    /**
+     * <code>max-nodes</code>- maximum number of nodes created while parsing. Parsing stops when the limit is exceeded.
+     *
+     * @param maxNodes number of nodes, 0 for no limit
+     * @see Configuration#maxNodes
+     */
+    public void setMaxNodes(int maxNodes)
+    {
+        configuration.maxNodes = maxNodes;
+    }
+
+    /**
+     * <code>max-nodes</code>- maximum number of nodes created while parsing.
+     *
+     * @return number of nodes, 0 for no limit
+     */
+    public int getMaxNodes()
+    {
+        return configuration.maxNodes;
+    }
+
+    /**
+     * <code>max-depth</code>- maximum nesting depth of elements. Parsing stops when the limit is exceeded.
+     *
+     * @param maxDepth number of nested elements, 0 for no limit
+     * @see Configuration#maxDepth
+     */
+    public void setMaxDepth(int maxDepth)
+    {
+        configuration.maxDepth = maxDepth;
+    }
+
+    /**
+     * <code>max-depth</code>- maximum nesting depth of elements.
+     *
+     * @return number of nested elements, 0 for no limit
+     */
+    public int getMaxDepth()
+    {
+        return configuration.maxDepth;
+    }
+
+    /**
+     * <code>max-attributes</code>- maximum number of attributes of an element. Parsing stops when the limit is
+     * exceeded.
+     *
+     * @param maxAttributes number of attributes, 0 for no limit
+     * @see Configuration#maxAttributes
+     */
+    public void setMaxAttributes(int maxAttributes)
+    {
+        configuration.maxAttributes = maxAttributes;
+    }
+
+    /**
+     * <code>max-attributes</code>- maximum number of attributes of an element.
+     *
+     * @return number of attributes, 0 for no limit
+     */
+    public int getMaxAttributes()
+    {
+        return configuration.maxAttributes;
+    }
+
+    /**
+     * <code>max-parse-time</code>- maximum parse time. Parsing stops when the limit is exceeded.
+     *
+     * @param maxParseTime milliseconds, 0 for no limit
+     * @see Configuration#maxParseTime
+     */
+    public void setMaxParseTime(int maxParseTime)
+    {
+        configuration.maxParseTime = maxParseTime;
+    }
+
+    /**
+     * <code>max-parse-time</code>- maximum parse time.
+     *
+     * @return milliseconds, 0 for no limit
+     */
+    public int getMaxParseTime()
+    {
+        return configuration.maxParseTime;
+    }
+
+    /**
+     * <code>head-only</code>- stop parsing at the end of the head. The document only has the html and head elements,
+     * and the rest of the input is not read.
+     *
+     * @param headOnly true = parse the head only
+     * @see Configuration#headOnly
+     */
+    public void setHeadOnly(boolean headOnly)
+    {
+        configuration.headOnly = headOnly;
+    }
+
+    /**
+     * <code>head-only</code>- stop parsing at the end of the head.
+     *
+     * @return true if tidy will parse the head only
+     */
+    public boolean getHeadOnly()
+    {
+        return configuration.headOnly;
+    }
+
     /**
      * <code>replace-color</code>- replace hex color attribute values with names.
      *
@@ -0,0 +1,371 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+/**
+ * Pull tokenizer: reads a document token by token, without building a tree, repairing or cleaning it. Tokens are
+ * returned as the lexer sees them: start tags, end tags, empty element tags, text, comments and other markup. Nothing
+ * is inferred, so end tags may be missing or unmatched. The content of script and style elements is returned as a
+ * single text token. Runs of white space in text are collapsed to a single space, except in pre elements. Attributes
+ * are not checked or repaired.
+ * <p>
+ * Create a tokenizer with {@link Tidy#tokenize(java.io.InputStream)} or {@link Tidy#tokenize(java.io.Reader)}, then
+ * move from token to token with {@link #next()}:
+ * </p>
+ *
+ * <pre>
+ * TidyTokenizer tokens = tidy.tokenize(in);
+ * while (tokens.next())
+ * {
+ *     if (tokens.getType() == Node.START_TAG &amp;&amp; &quot;a&quot;.equals(tokens.getName()))
+ *     {
+ *         links.add(tokens.getAttributeValue(&quot;href&quot;));
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * The tokenizer is a cursor: the getters describe the current token. Since tokens are never handed to a parser, each
+ * token is given back to the lexer when the tokenizer moves on, and its node and attributes are reused for the
+ * following tokens. Apart from the lexer buffers, only the Strings returned by the getters are created per token.
+ * Errors and warnings go to the Tidy's error output and message listener, and the parse limits of the configuration
+ * apply.
+ * </p>
+ * @version $Revision$ ($Author$)
+ */
+public class TidyTokenizer
+{
+
+    /**
+     * Lexer reading the input.
+     */
+    private Lexer lexer;
+
+    /**
+     * Current token, <code>null</code> before the first one and at the end.
+     */
+    private Node token;
+
+    /**
+     * Script or style element whose content is the next token.
+     */
+    private Node cdataContainer;
+
+    /**
+     * Number of open pre elements.
+     */
+    private int preDepth;
+
+    /**
+     * Discard white space text?
+     */
+    private boolean ignoreWhitespace;
+
+    /**
+     * Attributes of the current token in document order, filled when first needed. The lexer lists them backwards.
+     */
+    private AttVal[] attributes = new AttVal[8];
+
+    /**
+     * Number of attributes in <code>attributes</code>, -1 if not filled yet.
+     */
+    private int attributeCount = -1;
+
+    /**
+     * Instantiates a new TidyTokenizer, see {@link Tidy#tokenize(java.io.InputStream)}.
+     * @param lexer lexer reading the input
+     */
+    TidyTokenizer(Lexer lexer)
+    {
+        this.lexer = lexer;
+        this.lexer.checkTags = false;
+    }
+
+    /**
+     * Discard white space: text tokens lose their leading white space, and are skipped when there is nothing else.
+     * White space is kept in pre elements.
+     * @param ignoreWhitespace <code>true</code> to discard white space
+     */
+    public void setIgnoreWhitespace(boolean ignoreWhitespace)
+    {
+        this.ignoreWhitespace = ignoreWhitespace;
+    }
+
+    /**
+     * Moves to the next token.
+     * @return <code>false</code> at the end of input, or when a parse limit has been exceeded
+     * @throws java.util.concurrent.CancellationException if the thread has been interrupted
+     */
+    public boolean next()
+    {
+        this.attributeCount = -1;
+
+        Node previous = this.token;
+        boolean more = advance();
+        if (previous != null && previous != this.cdataContainer)
+        {
+            // the script or style start tag is given back once its content has been read
+            this.lexer.recycle(previous);
+        }
+        return more;
+    }
+
+    /**
+     * Reads the next token.
+     * @return <code>false</code> at the end of input, or when a parse limit has been exceeded
+     */
+    private boolean advance()
+    {
+        if (this.cdataContainer != null)
+        {
+            Node container = this.cdataContainer;
+            this.cdataContainer = null;
+            this.token = this.lexer.getCDATA(container);
+            if (this.token != null && this.token.end > this.token.start)
+            {
+                return true;
+            }
+            if (this.token != null)
+            {
+                this.lexer.recycle(this.token);
+            }
+        }
+
+        short mode;
+        if (this.preDepth > 0)
+        {
+            mode = Lexer.PREFORMATTED;
+        }
+        else
+        {
+            mode = this.ignoreWhitespace ? Lexer.IGNORE_WHITESPACE : Lexer.MIXED_CONTENT;
+        }
+
+        this.token = this.lexer.getToken(mode);
+        if (this.token == null)
+        {
+            return false;
+        }
+
+        Dict tag = this.token.tag;
+        if (tag != null && !this.lexer.configuration.xmlTags)
+        {
+            if (this.token.type == Node.START_TAG)
+            {
+                if (tag.getParser() == ParserImpl.SCRIPT)
+                {
+                    this.cdataContainer = this.token;
+                }
+                else if (tag.getParser() == ParserImpl.PRE)
+                {
+                    this.preDepth++;
+                }
+            }
+            else if (this.token.type == Node.END_TAG && tag.getParser() == ParserImpl.PRE && this.preDepth > 0)
+            {
+                this.preDepth--;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Type of the current token: <code>Node.START_TAG</code>, <code>Node.END_TAG</code>,
+     * <code>Node.START_END_TAG</code>, <code>Node.TEXT_NODE</code>, <code>Node.COMMENT_TAG</code>,
+     * <code>Node.DOCTYPE_TAG</code>, <code>Node.PROC_INS_TAG</code>, <code>Node.CDATA_TAG</code>,
+     * <code>Node.SECTION_TAG</code>, <code>Node.ASP_TAG</code>, <code>Node.JSTE_TAG</code>,
+     * <code>Node.PHP_TAG</code> or <code>Node.XML_DECL</code>.
+     * @return token type
+     */
+    public short getType()
+    {
+        return currentToken().type;
+    }
+
+    /**
+     * Element name of a tag, lower case unless the input is XML.
+     * @return element name, <code>null</code> if the current token is not a tag
+     */
+    public String getName()
+    {
+        Node node = currentToken();
+        return isTag(node) ? node.element : null;
+    }
+
+    /**
+     * Text of the current token: the content of text, comments, doctypes, processing instructions and other markup,
+     * with entities resolved in text.
+     * @return text, <code>null</code> for tags
+     */
+    public String getText()
+    {
+        Node node = currentToken();
+        if (isTag(node))
+        {
+            return null;
+        }
+        return TidyUtils.getString(node.getTextArray(this.lexer), node.start, node.end - node.start);
+    }
+
+    /**
+     * Number of attributes of the current tag.
+     * @return attribute count, 0 if the current token is not a start tag
+     */
+    public int getAttributeCount()
+    {
+        if (this.attributeCount < 0)
+        {
+            fillAttributes();
+        }
+        return this.attributeCount;
+    }
+
+    /**
+     * Name of an attribute of the current tag.
+     * @param index attribute index, in document order
+     * @return attribute name; <code>null</code> for asp and php markup in place of an attribute
+     */
+    public String getAttributeName(int index)
+    {
+        return attribute(index).attribute;
+    }
+
+    /**
+     * Value of an attribute of the current tag.
+     * @param index attribute index, in document order
+     * @return attribute value, <code>null</code> if the attribute has none
+     */
+    public String getAttributeValue(int index)
+    {
+        return attribute(index).getValue();
+    }
+
+    /**
+     * Value of the attribute of the current tag with the given name.
+     * @param name attribute name
+     * @return attribute value, <code>null</code> if the attribute is missing or has no value
+     */
+    public String getAttributeValue(String name)
+    {
+        AttVal attribute = currentToken().getAttrByName(name);
+        return attribute != null ? attribute.getValue() : null;
+    }
+
+    /**
+     * Returns the current token.
+     * @return current token
+     * @throws IllegalStateException before the first token and at the end
+     */
+    private Node currentToken()
+    {
+        if (this.token == null)
+        {
+            throw new IllegalStateException("No current token");
+        }
+        return this.token;
+    }
+
+    /**
+     * Is this node a tag?
+     * @param node Node
+     * @return <code>true</code> for start, end and empty element tags
+     */
+    private static boolean isTag(Node node)
+    {
+        return node.type == Node.START_TAG || node.type == Node.END_TAG || node.type == Node.START_END_TAG;
+    }
+
+    /**
+     * Returns an attribute of the current tag.
+     * @param index attribute index, in document order
+     * @return attribute
+     * @throws IndexOutOfBoundsException if there is no such attribute
+     */
+    private AttVal attribute(int index)
+    {
+        if (index < 0 || index >= getAttributeCount())
+        {
+            throw new IndexOutOfBoundsException("Attribute index " + index + ", count " + this.attributeCount);
+        }
+        return this.attributes[index];
+    }
+
+    /**
+     * Fills <code>attributes</code> with the attributes of the current token, reversing the lexer list.
+     */
+    private void fillAttributes()
+    {
+        int count = 0;
+        for (AttVal av = currentToken().attributes; av != null; av = av.next)
+        {
+            count++;
+        }
+        if (count > this.attributes.length)
+        {
+            this.attributes = new AttVal[Math.max(count, this.attributes.length * 2)];
+        }
+
+        int index = count;
+        for (AttVal av = this.token.attributes; av != null; av = av.next)
+        {
+            this.attributes[--index] = av;
+        }
+        for (int i = count; i < this.attributes.length && this.attributes[i] != null; i++)
+        {
+            // don't keep attributes of earlier tokens alive
+            this.attributes[i] = null;
+        }
+        this.attributeCount = count;
+    }
+
+}
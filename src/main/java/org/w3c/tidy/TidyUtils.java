@@ -56,6 +56,7 @@ package org.w3c.tidy;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
 
 
 /**
@@ -144,6 +145,20 @@ public final class TidyUtils
         return c & 0xFF;
     }
 
+    /**
+     * Cancels parsing or printing if the thread doing it has been interrupted. Lexer, Clean and PPrint call this
+     * every few hundred nodes. The interrupt status is left set.
+     * @param thread thread which called Tidy
+     * @throws CancellationException if the thread has been interrupted
+     */
+    static void checkInterrupted(Thread thread)
+    {
+        if (thread.isInterrupted())
+        {
+            throw new CancellationException("Tidy has been interrupted");
+        }
+    }
+
     /**
      * check if the first String contains the second one.
      * @param s1 full String
@@ -0,0 +1,309 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URL;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+
+
+/**
+ * SAX XMLReader which tidies its input and reports the tidied tree, see {@link XMLEmitter}. Use it in a
+ * <code>SAXSource</code> to pass tidied documents to <code>javax.xml.transform</code> without printing them. Errors
+ * and warnings go to the Tidy's error output, not to the error handler. Namespaces are always reported, and
+ * <code>xmlns</code> attributes never are.
+ * @version $Revision$ ($Author$)
+ */
+public class TidyXMLReader implements XMLReader
+{
+
+    /**
+     * SAX namespaces feature.
+     */
+    private static final String NAMESPACES = "http://xml.org/sax/features/namespaces";
+
+    /**
+     * SAX namespace prefixes feature.
+     */
+    private static final String NAMESPACE_PREFIXES = "http://xml.org/sax/features/namespace-prefixes";
+
+    /**
+     * SAX lexical handler property.
+     */
+    private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+    /**
+     * Tidy parsing the input.
+     */
+    private Tidy tidy;
+
+    private ContentHandler contentHandler;
+
+    private LexicalHandler lexicalHandler;
+
+    private DTDHandler dtdHandler;
+
+    private EntityResolver entityResolver;
+
+    private ErrorHandler errorHandler;
+
+    /**
+     * Instantiates a new TidyXMLReader.
+     * @param tidy Tidy, with the configuration to use
+     */
+    public TidyXMLReader(Tidy tidy)
+    {
+        this.tidy = tidy;
+    }
+
+    /**
+     * Tidies the input and reports the result to the content handler.
+     * @see org.xml.sax.XMLReader#parse(org.xml.sax.InputSource)
+     */
+    @Override
+    public void parse(InputSource input) throws IOException, SAXException
+    {
+        Node document;
+        if (input.getCharacterStream() != null)
+        {
+            document = this.tidy.parse(input.getCharacterStream(), (Writer) null);
+        }
+        else if (input.getByteStream() != null)
+        {
+            document = this.tidy.parse(input.getByteStream(), (OutputStream) null);
+        }
+        else if (input.getSystemId() != null)
+        {
+            InputStream in = new URL(input.getSystemId()).openStream();
+            try
+            {
+                document = this.tidy.parse(in, (OutputStream) null);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        else
+        {
+            throw new SAXException("No input");
+        }
+
+        if (document == null)
+        {
+            throw new SAXException("Tidy could not build a document tree");
+        }
+        if (this.contentHandler != null)
+        {
+            new XMLEmitter(this.tidy.getConfiguration()).emit(document, this.contentHandler, this.lexicalHandler);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#parse(java.lang.String)
+     */
+    @Override
+    public void parse(String systemId) throws IOException, SAXException
+    {
+        parse(new InputSource(systemId));
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#getFeature(java.lang.String)
+     */
+    @Override
+    public boolean getFeature(String name) throws SAXNotRecognizedException
+    {
+        if (NAMESPACES.equals(name))
+        {
+            return true;
+        }
+        if (NAMESPACE_PREFIXES.equals(name))
+        {
+            return false;
+        }
+        throw new SAXNotRecognizedException(name);
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#setFeature(java.lang.String, boolean)
+     */
+    @Override
+    public void setFeature(String name, boolean value) throws SAXNotRecognizedException, SAXNotSupportedException
+    {
+        if (getFeature(name) != value)
+        {
+            throw new SAXNotSupportedException(name);
+        }
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#getProperty(java.lang.String)
+     */
+    @Override
+    public Object getProperty(String name) throws SAXNotRecognizedException
+    {
+        if (LEXICAL_HANDLER.equals(name))
+        {
+            return this.lexicalHandler;
+        }
+        throw new SAXNotRecognizedException(name);
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#setProperty(java.lang.String, java.lang.Object)
+     */
+    @Override
+    public void setProperty(String name, Object value) throws SAXNotRecognizedException, SAXNotSupportedException
+    {
+        if (!LEXICAL_HANDLER.equals(name))
+        {
+            throw new SAXNotRecognizedException(name);
+        }
+        if (value != null && !(value instanceof LexicalHandler))
+        {
+            throw new SAXNotSupportedException(name);
+        }
+        this.lexicalHandler = (LexicalHandler) value;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#getContentHandler()
+     */
+    @Override
+    public ContentHandler getContentHandler()
+    {
+        return this.contentHandler;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#setContentHandler(org.xml.sax.ContentHandler)
+     */
+    @Override
+    public void setContentHandler(ContentHandler handler)
+    {
+        this.contentHandler = handler;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#getDTDHandler()
+     */
+    @Override
+    public DTDHandler getDTDHandler()
+    {
+        return this.dtdHandler;
+    }
+
+    /**
+     * Kept but not used: the tree has no unparsed entities or notations.
+     * @see org.xml.sax.XMLReader#setDTDHandler(org.xml.sax.DTDHandler)
+     */
+    @Override
+    public void setDTDHandler(DTDHandler handler)
+    {
+        this.dtdHandler = handler;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#getEntityResolver()
+     */
+    @Override
+    public EntityResolver getEntityResolver()
+    {
+        return this.entityResolver;
+    }
+
+    /**
+     * Kept but not used: no external entities are read.
+     * @see org.xml.sax.XMLReader#setEntityResolver(org.xml.sax.EntityResolver)
+     */
+    @Override
+    public void setEntityResolver(EntityResolver resolver)
+    {
+        this.entityResolver = resolver;
+    }
+
+    /**
+     * @see org.xml.sax.XMLReader#getErrorHandler()
+     */
+    @Override
+    public ErrorHandler getErrorHandler()
+    {
+        return this.errorHandler;
+    }
+
+    /**
+     * Kept but not used: Tidy reports its own errors.
+     * @see org.xml.sax.XMLReader#setErrorHandler(org.xml.sax.ErrorHandler)
+     */
+    @Override
+    public void setErrorHandler(ErrorHandler handler)
+    {
+        this.errorHandler = handler;
+    }
+
+}
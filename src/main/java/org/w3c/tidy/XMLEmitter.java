@@ -0,0 +1,831 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.NamespaceSupport;
+
+
+/**
+ * Sends a tidied tree to a SAX <code>ContentHandler</code> or to an <code>XMLStreamWriter</code>, without printing
+ * it and parsing the result again. Only the content of the tree is sent: there is no indentation, and text is passed
+ * as it is, whatever the output encoding and escaping options. Namespaces are reported as by a namespace aware SAX
+ * parser, without the <code>xmlns</code> attributes. ASP, JSTE and PHP code and marked sections have no XML
+ * equivalent and are left out, as is the XML declaration.
+ * @version $Revision$ ($Author$)
+ */
+public class XMLEmitter
+{
+
+    /**
+     * Handler receiving the events.
+     */
+    private ContentHandler handler;
+
+    /**
+     * Handler receiving comments, CDATA sections and the document type, may be <code>null</code>.
+     */
+    private LexicalHandler lexicalHandler;
+
+    /**
+     * Namespaces declared by the elements being sent.
+     */
+    private NamespaceSupport namespaces = new NamespaceSupport();
+
+    /**
+     * Attributes of the element being sent.
+     */
+    private AttributesImpl attributes = new AttributesImpl();
+
+    /**
+     * Decoder for text, which is kept UTF-8 encoded in the tree.
+     */
+    private CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * Decoded text.
+     */
+    private char[] chars = new char[256];
+
+    /**
+     * Attributes of the element being sent, in list order.
+     */
+    private List<AttVal> attributeList = new ArrayList<AttVal>();
+
+    /**
+     * Parts of a qualified name: namespace URI, local name, qualified name.
+     */
+    private String[] parts = new String[3];
+
+    /**
+     * current configuration.
+     */
+    private Configuration configuration;
+
+    /**
+     * Instantiates a new XMLEmitter.
+     * @param configuration configuration, for comments and the case of names
+     */
+    public XMLEmitter(Configuration configuration)
+    {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Sends a tree to a SAX handler. A document node is reported with <code>startDocument</code> and
+     * <code>endDocument</code>, any other node on its own.
+     * @param node root of the tree
+     * @param contentHandler handler receiving elements, text and processing instructions
+     * @param lexical handler receiving comments, CDATA sections and the document type, or <code>null</code>
+     * @throws SAXException if a handler throws it
+     */
+    public void emit(Node node, ContentHandler contentHandler, LexicalHandler lexical) throws SAXException
+    {
+        this.handler = contentHandler;
+        this.lexicalHandler = lexical;
+        this.namespaces.reset();
+
+        if (node.type == Node.ROOT_NODE)
+        {
+            this.handler.startDocument();
+            emitTree(node);
+            this.handler.endDocument();
+        }
+        else
+        {
+            emitTree(node);
+        }
+    }
+
+    /**
+     * Writes a tree to a StAX stream writer. A document node is written with <code>writeStartDocument</code> and
+     * <code>writeEndDocument</code>. The writer is not flushed.
+     * @param node root of the tree
+     * @param writer stream writer
+     * @throws XMLStreamException if the writer fails
+     */
+    public void emit(Node node, XMLStreamWriter writer) throws XMLStreamException
+    {
+        StreamWriterHandler adapter = new StreamWriterHandler(writer);
+        try
+        {
+            emit(node, adapter, adapter);
+        }
+        catch (SAXException e)
+        {
+            if (e.getException() instanceof XMLStreamException)
+            {
+                throw (XMLStreamException) e.getException();
+            }
+            throw new XMLStreamException(e);
+        }
+    }
+
+    /**
+     * Sends a node and its content. The tree is walked with the parent and next links rather than by recursion, so
+     * that deeply nested documents don't overflow the stack.
+     * @param top root of the tree
+     * @throws SAXException if a handler throws it
+     */
+    private void emitTree(Node top) throws SAXException
+    {
+        Node node = top;
+        while (true)
+        {
+            if (startNode(node) && node.content != null)
+            {
+                node = node.content;
+                continue;
+            }
+            endNode(node);
+
+            while (node != top && node.next == null)
+            {
+                node = node.parent;
+                endNode(node);
+            }
+            if (node == top)
+            {
+                return;
+            }
+            node = node.next;
+        }
+    }
+
+    /**
+     * Sends a node, or the start of an element.
+     * @param node node
+     * @return <code>true</code> if the content of the node is to be sent
+     * @throws SAXException if a handler throws it
+     */
+    private boolean startNode(Node node) throws SAXException
+    {
+        switch (node.type)
+        {
+            case Node.ROOT_NODE :
+                return true;
+
+            case Node.TEXT_NODE :
+                emitText(node);
+                break;
+
+            case Node.CDATA_TAG :
+                if (this.lexicalHandler != null && !this.configuration.escapeCdata)
+                {
+                    this.lexicalHandler.startCDATA();
+                    emitText(node);
+                    this.lexicalHandler.endCDATA();
+                }
+                else
+                {
+                    emitText(node);
+                }
+                break;
+
+            case Node.COMMENT_TAG :
+                if (this.lexicalHandler != null && !this.configuration.hideComments)
+                {
+                    int length = decode(node);
+                    this.lexicalHandler.comment(this.chars, 0, length);
+                }
+                break;
+
+            case Node.DOCTYPE_TAG :
+                if (this.lexicalHandler != null)
+                {
+                    emitDocType(node);
+                }
+                break;
+
+            case Node.PROC_INS_TAG :
+                emitProcessingInstruction(node);
+                break;
+
+            case Node.START_TAG :
+            case Node.START_END_TAG :
+                startElement(node);
+                return true;
+
+            default :
+                // XML declaration, ASP, JSTE, PHP and sections
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * Sends the end of an element, once its content has been sent. Does nothing for other nodes.
+     * @param node node
+     * @throws SAXException if a handler throws it
+     */
+    private void endNode(Node node) throws SAXException
+    {
+        if (node.type == Node.START_TAG || node.type == Node.START_END_TAG)
+        {
+            endElement(node);
+        }
+    }
+
+    /**
+     * Sends the start of an element, declaring the namespaces of its <code>xmlns</code> attributes.
+     * @param node element
+     * @throws SAXException if a handler throws it
+     */
+    private void startElement(Node node) throws SAXException
+    {
+        this.namespaces.pushContext();
+
+        for (AttVal attr = node.attributes; attr != null; attr = attr.next)
+        {
+            if (attr.attribute == null)
+            {
+                continue;
+            }
+            String name = foldCase(attr.attribute, this.configuration.upperCaseAttrs);
+            if (name.equals(XMLConstants.XMLNS_ATTRIBUTE) || name.startsWith("xmlns:"))
+            {
+                String prefix = name.length() > 5 ? name.substring(6) : XMLConstants.DEFAULT_NS_PREFIX;
+                String uri = attr.getValue() == null ? "" : attr.getValue();
+                this.namespaces.declarePrefix(prefix, uri);
+                this.handler.startPrefixMapping(prefix, uri);
+            }
+        }
+
+        AttributesImpl atts = this.attributes;
+        atts.clear();
+        addAttributes(node.attributes);
+
+        String[] names = processName(foldCase(node.element, this.configuration.upperCaseTags), false);
+
+        // the attributes are copied by handlers which keep them
+        this.handler.startElement(names[0], names[1], names[2], atts);
+    }
+
+    /**
+     * Sends the end of an element and of the namespaces declared by it.
+     * @param node element
+     * @throws SAXException if a handler throws it
+     */
+    private void endElement(Node node) throws SAXException
+    {
+        // names are processed again in the context of the element, which is still in scope
+        String[] names = processName(foldCase(node.element, this.configuration.upperCaseTags), false);
+        this.handler.endElement(names[0], names[1], names[2]);
+
+        Enumeration<?> prefixes = this.namespaces.getDeclaredPrefixes();
+        while (prefixes.hasMoreElements())
+        {
+            this.handler.endPrefixMapping((String) prefixes.nextElement());
+        }
+        this.namespaces.popContext();
+    }
+
+    /**
+     * Adds attributes to <code>attributes</code>, in the order they are printed: from the end of the list.
+     * @param first first attribute of the list
+     */
+    private void addAttributes(AttVal first)
+    {
+        List<AttVal> list = this.attributeList;
+        list.clear();
+        for (AttVal attr = first; attr != null; attr = attr.next)
+        {
+            list.add(attr);
+        }
+
+        for (int i = list.size() - 1; i >= 0; i--)
+        {
+            AttVal attr = list.get(i);
+            if (attr.attribute == null)
+            {
+                continue;
+            }
+            String name = foldCase(attr.attribute, this.configuration.upperCaseAttrs);
+            if (name.equals(XMLConstants.XMLNS_ATTRIBUTE) || name.startsWith("xmlns:"))
+            {
+                continue;
+            }
+
+            String value = attr.getValue();
+            if (value == null)
+            {
+                // as printed to XML
+                value = attr.isBoolAttribute() ? attr.attribute : "";
+            }
+            String[] names = processName(name, true);
+            this.attributes.addAttribute(names[0], names[1], names[2], "CDATA", value);
+        }
+        list.clear();
+    }
+
+    /**
+     * Splits a qualified name. Names with an undeclared prefix are kept as they are, with no namespace.
+     * @param qName qualified name
+     * @param attribute is it the name of an attribute?
+     * @return namespace URI, local name and qualified name
+     */
+    private String[] processName(String qName, boolean attribute)
+    {
+        String[] result = this.namespaces.processName(qName, this.parts, attribute);
+        if (result == null)
+        {
+            result = this.parts;
+            result[0] = "";
+            result[1] = qName;
+            result[2] = qName;
+        }
+        return result;
+    }
+
+    /**
+     * Changes the case of a name as it is printed.
+     * @param name name
+     * @param upperCase upper case option
+     * @return name in the printed case
+     */
+    private String foldCase(String name, boolean upperCase)
+    {
+        if (!upperCase || this.configuration.xmlTags)
+        {
+            return name;
+        }
+        return name.toUpperCase();
+    }
+
+    /**
+     * Sends the text of a node.
+     * @param node text node
+     * @throws SAXException if a handler throws it
+     */
+    private void emitText(Node node) throws SAXException
+    {
+        int length = decode(node);
+        if (length > 0)
+        {
+            this.handler.characters(this.chars, 0, length);
+        }
+    }
+
+    /**
+     * Sends a processing instruction, splitting its text into target and data.
+     * @param node processing instruction
+     * @throws SAXException if a handler throws it
+     */
+    private void emitProcessingInstruction(Node node) throws SAXException
+    {
+        String text = new String(this.chars, 0, decode(node));
+        if (text.endsWith("?"))
+        {
+            text = text.substring(0, text.length() - 1);
+        }
+
+        int end = 0;
+        while (end < text.length() && !Character.isWhitespace(text.charAt(end)))
+        {
+            end++;
+        }
+        this.handler.processingInstruction(text.substring(0, end), text.substring(end).trim());
+    }
+
+    /**
+     * Sends the document type, reading the name and public and system identifiers from its text.
+     * @param node document type
+     * @throws SAXException if a handler throws it
+     */
+    private void emitDocType(Node node) throws SAXException
+    {
+        String text = new String(this.chars, 0, decode(node)).trim();
+        int end = 0;
+        while (end < text.length() && !Character.isWhitespace(text.charAt(end)))
+        {
+            end++;
+        }
+        String name = text.substring(0, end);
+        String rest = text.substring(end).trim();
+
+        String publicId = null;
+        String systemId = null;
+        if (rest.regionMatches(true, 0, "PUBLIC", 0, 6))
+        {
+            String[] ids = rest.substring(6).trim().split("\"", -1);
+            publicId = ids.length > 1 ? ids[1] : null;
+            systemId = ids.length > 3 ? ids[3] : null;
+        }
+        else if (rest.regionMatches(true, 0, "SYSTEM", 0, 6))
+        {
+            String[] ids = rest.substring(6).trim().split("\"", -1);
+            systemId = ids.length > 1 ? ids[1] : null;
+        }
+
+        this.lexicalHandler.startDTD(name, publicId, systemId);
+        this.lexicalHandler.endDTD();
+    }
+
+    /**
+     * Decodes the text of a node into <code>chars</code>.
+     * @param node node
+     * @return number of chars
+     */
+    private int decode(Node node)
+    {
+        if (node.textarray == null || node.end <= node.start)
+        {
+            return 0;
+        }
+
+        int length = node.end - node.start;
+        if (this.chars.length < length)
+        {
+            // UTF-8 never takes fewer bytes than UTF-16 chars
+            this.chars = new char[Math.max(length, this.chars.length * 2)];
+        }
+
+        CharBuffer out = CharBuffer.wrap(this.chars);
+        this.decoder.reset();
+        this.decoder.decode(ByteBuffer.wrap(node.textarray, node.start, length), out, true);
+        this.decoder.flush(out);
+        return out.position();
+    }
+
+    /**
+     * Writes SAX events to a StAX stream writer.
+     */
+    private static class StreamWriterHandler implements ContentHandler, LexicalHandler
+    {
+
+        /**
+         * Stream writer.
+         */
+        private XMLStreamWriter writer;
+
+        /**
+         * Namespaces declared for the next element, as prefix, URI pairs.
+         */
+        private List<String> pending = new ArrayList<String>();
+
+        /**
+         * Are characters written as a CDATA section?
+         */
+        private boolean inCDATA;
+
+        /**
+         * Instantiates a new StreamWriterHandler.
+         * @param writer stream writer
+         */
+        StreamWriterHandler(XMLStreamWriter writer)
+        {
+            this.writer = writer;
+        }
+
+        /**
+         * @see org.xml.sax.ContentHandler#startDocument()
+         */
+        @Override
+        public void startDocument() throws SAXException
+        {
+            try
+            {
+                this.writer.writeStartDocument();
+            }
+            catch (XMLStreamException e)
+            {
+                throw new SAXException(e);
+            }
+        }
+
+        /**
+         * @see org.xml.sax.ContentHandler#endDocument()
+         */
+        @Override
+        public void endDocument() throws SAXException
+        {
+            try
+            {
+                this.writer.writeEndDocument();
+            }
+            catch (XMLStreamException e)
+            {
+                throw new SAXException(e);
+            }
+        }
+
+        /**
+         * @see org.xml.sax.ContentHandler#startPrefixMapping(java.lang.String, java.lang.String)
+         */
+        @Override
+        public void startPrefixMapping(String prefix, String uri)
+        {
+            this.pending.add(prefix);
+            this.pending.add(uri);
+        }
+
+        /**
+         * @see org.xml.sax.ContentHandler#endPrefixMapping(java.lang.String)
+         */
+        @Override
+        public void endPrefixMapping(String prefix)
+        {
+            // scoped by the writer
+        }
+
+        /**
+         * @see org.xml.sax.ContentHandler#startElement(java.lang.String, java.lang.String, java.lang.String,
+         * org.xml.sax.Attributes)
+         */
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+        {
+            try
+            {
+                this.writer.writeStartElement(prefix(qName), localName, uri);
+                for (int i = 0; i < this.pending.size(); i += 2)
+                {
+                    String prefix = this.pending.get(i);
+                    if (prefix.length() == 0)
+                    {
+                        this.writer.writeDefaultNamespace(this.pending.get(i + 1));
+                    }
+                    else
+                    {
+                        this.writer.writeNamespace(prefix, this.pending.get(i + 1));
+                    }
+                }
+                this.pending.clear();
+
+                for (int i = 0; i < atts.getLength(); i++)
+                {
+                    if (atts.getURI(i).length() == 0)
+                    {
+                        this.writer.writeAttribute(atts.getQName(i), atts.getValue(i));
+                    }
+                    else
+                    {
+                        this.writer.writeAttribute(
+                            prefix(atts.getQName(i)),
+                            atts.getURI(i),
+                            atts.getLocalName(i),
+                            atts.getValue(i));
+                    }
+                }
+            }
+            catch (XMLStreamException e)
+            {
+                throw new SAXException(e);
+            }
+        }
+
+        /**
+         * @see org.xml.sax.ContentHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+         */
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException
+        {
+            try
+            {
+                this.writer.writeEndElement();
+            }
+            catch (XMLStreamException e)
+            {
+                throw new SAXException(e);
+            }
+        }
+
+        /**
+         * @see org.xml.sax.ContentHandler#characters(char[], int, int)
+         */
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException
+        {
+            try
+            {
+                if (this.inCDATA)
+                {
+                    this.writer.writeCData(new String(ch, start, length));
+                }
+                else
+                {
+                    this.writer.writeCharacters(ch, start, length);
+                }
+            }
+            catch (XMLStreamException e)
+            {
+                throw new SAXException(e);
+            }
+        }
+
+        /**
+         * @see org.xml.sax.ContentHandler#ignorableWhitespace(char[], int, int)
+         */
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+        {
+            characters(ch, start, length);
+        }
+
+        /**
+         * @see org.xml.sax.ContentHandler#processingInstruction(java.lang.String, java.lang.String)
+         */
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException
+        {
+            try
+            {
+                this.writer.writeProcessingInstruction(target, data);
+            }
+            catch (XMLStreamException e)
+            {
+                throw new SAXException(e);
+            }
+        }
+
+        /**
+         * @see org.xml.sax.ext.LexicalHandler#comment(char[], int, int)
+         */
+        @Override
+        public void comment(char[] ch, int start, int length) throws SAXException
+        {
+            try
+            {
+                this.writer.writeComment(new String(ch, start, length));
+            }
+            catch (XMLStreamException e)
+            {
+                throw new SAXException(e);
+            }
+        }
+
+        /**
+         * @see org.xml.sax.ext.LexicalHandler#startDTD(java.lang.String, java.lang.String, java.lang.String)
+         */
+        @Override
+        public void startDTD(String name, String publicId, String systemId) throws SAXException
+        {
+            StringBuilder dtd = new StringBuilder("<!DOCTYPE ").append(name);
+            if (publicId != null)
+            {
+                dtd.append(" PUBLIC \"").append(publicId).append('"');
+            }
+            else if (systemId != null)
+            {
+                dtd.append(" SYSTEM");
+            }
+            if (systemId != null)
+            {
+                dtd.append(" \"").append(systemId).append('"');
+            }
+            try
+            {
+                this.writer.writeDTD(dtd.append('>').toString());
+            }
+            catch (XMLStreamException e)
+            {
+                throw new SAXException(e);
+            }
+        }
+
+        /**
+         * @see org.xml.sax.ext.LexicalHandler#endDTD()
+         */
+        @Override
+        public void endDTD()
+        {
+            // written by startDTD
+        }
+
+        /**
+         * @see org.xml.sax.ext.LexicalHandler#startCDATA()
+         */
+        @Override
+        public void startCDATA()
+        {
+            this.inCDATA = true;
+        }
+
+        /**
+         * @see org.xml.sax.ext.LexicalHandler#endCDATA()
+         */
+        @Override
+        public void endCDATA()
+        {
+            this.inCDATA = false;
+        }
+
+        /**
+         * @see org.xml.sax.ext.LexicalHandler#startEntity(java.lang.String)
+         */
+        @Override
+        public void startEntity(String name)
+        {
+            // not reported
+        }
+
+        /**
+         * @see org.xml.sax.ext.LexicalHandler#endEntity(java.lang.String)
+         */
+        @Override
+        public void endEntity(String name)
+        {
+            // not reported
+        }
+
+        /**
+         * @see org.xml.sax.ContentHandler#setDocumentLocator(org.xml.sax.Locator)
+         */
+        @Override
+        public void setDocumentLocator(Locator locator)
+        {
+            // not reported
+        }
+
+        /**
+         * @see org.xml.sax.ContentHandler#skippedEntity(java.lang.String)
+         */
+        @Override
+        public void skippedEntity(String name)
+        {
+            // not reported
+        }
+
+        /**
+         * Returns the prefix of a qualified name.
+         * @param qName qualified name
+         * @return prefix, empty if there is none
+         */
+        private static String prefix(String qName)
+        {
+            int colon = qName.indexOf(':');
+            return colon < 0 ? "" : qName.substring(0, colon);
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+
+import org.w3c.dom.Document;
+
+
+/**
+ * Tests for the cancellation of parsing and printing by interrupting the thread which called Tidy.
+ * @version $Revision$ ($Author$)
+ */
+public class CancellationTest extends TidyTestCase
+{
+
+    /**
+     * Test document.
+     */
+    private byte[] html;
+
+    /**
+     * Instantiate a new Test case.
+     * @param name test name
+     */
+    public CancellationTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.tidy = newQuietTidy();
+
+        StringBuilder buffer = new StringBuilder("<html><head><title>t</title></head><body>");
+        for (int j = 0; j < 10000; j++)
+        {
+            buffer.append("<p>paragraph <b>").append(j).append("</b></p>\n");
+        }
+        this.html = buffer.append("</body></html>").toString().getBytes();
+    }
+
+    /**
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        // clear the interrupt status
+        Thread.interrupted();
+        super.tearDown();
+    }
+
+    /**
+     * An interrupted parse stops with a CancellationException, and the interrupt status is left set.
+     */
+    public void testInterruptedParse()
+    {
+        Thread.currentThread().interrupt();
+        try
+        {
+            this.tidy.parse(new ByteArrayInputStream(this.html), (OutputStream) null);
+            fail("CancellationException expected");
+        }
+        catch (CancellationException e)
+        {
+            assertTrue(Thread.currentThread().isInterrupted());
+        }
+    }
+
+    /**
+     * Printing on several threads is cancelled by interrupting the thread which called Tidy.
+     */
+    public void testInterruptedParallelPrint()
+    {
+        this.tidy.setParallelPrint(true);
+        this.tidy.setParallelPrintThreshold(100);
+        Document document = this.tidy.parseDOM(new ByteArrayInputStream(this.html), null);
+
+        Thread.currentThread().interrupt();
+        try
+        {
+            this.tidy.pprint(document, new ByteArrayOutputStream());
+            fail("CancellationException expected");
+        }
+        catch (CancellationException e)
+        {
+            assertTrue(Thread.currentThread().isInterrupted());
+        }
+
+        // once the interrupt status is cleared, the same tree can be printed
+        Thread.interrupted();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.tidy.pprint(document, out);
+        assertTrue(out.toString().contains("<b>9999</b>"));
+    }
+
+}
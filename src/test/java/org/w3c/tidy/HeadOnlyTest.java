@@ -0,0 +1,145 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+
+/**
+ * Tests for the head-only parse mode.
+ * @version $Revision$ ($Author$)
+ */
+public class HeadOnlyTest extends TidyTestCase
+{
+
+    /**
+     * Test document head.
+     */
+    private static final String HEAD = "<html><head><title>t</title><meta charset=\"utf-8\">"
+        + "<meta property=\"og:title\" content=\"og\"><link rel=\"canonical\" href=\"http://example.com/\"></head>";
+
+    /**
+     * Instantiate a new Test case.
+     * @param name test name
+     */
+    public HeadOnlyTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.tidy = newQuietTidy();
+        this.tidy.setHeadOnly(true);
+    }
+
+    /**
+     * The document only has the head, and the body is not read.
+     */
+    public void testHeadOnly()
+    {
+        StringBuilder buffer = new StringBuilder(HEAD).append("<body>");
+        for (int j = 0; j < 100000; j++)
+        {
+            buffer.append("<p>text</p>");
+        }
+        final byte[] bytes = buffer.append("</body></html>").toString().getBytes();
+        final int[] read = new int[1];
+        InputStream in = new ByteArrayInputStream(bytes)
+        {
+
+            @Override
+            public synchronized int read(byte[] b, int off, int len)
+            {
+                int count = super.read(b, off, len);
+                read[0] += Math.max(count, 0);
+                return count;
+            }
+        };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.tidy.parse(in, out);
+        String html = out.toString();
+
+        assertTrue(html, html.contains("<title>t</title>"));
+        assertTrue(html, html.contains("charset=\"utf-8\""));
+        assertTrue(html, html.contains("content=\"og\""));
+        assertTrue(html, html.contains("rel=\"canonical\""));
+        assertFalse(html, html.contains("<body"));
+        assertFalse(html, html.contains("text"));
+        assertTrue(read[0] < bytes.length / 10);
+    }
+
+    /**
+     * The parse stops at the first body content when the head is not closed.
+     */
+    public void testImplicitHead() throws IOException
+    {
+        Node document = this.tidy.parse(new ByteArrayInputStream("<title>t</title><p>text".getBytes()), (OutputStream) null);
+
+        TagTable tt = this.tidy.getConfiguration().tt;
+        assertNotNull(document.findHEAD(tt));
+        assertNull(document.findBody(tt));
+        assertNotNull(document.findTITLE(tt));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Allocation regression test for the Lexer: storing chars and scanning attributes must not allocate scratch arrays.
+ * @version $Revision$ ($Author$)
+ */
+public class LexerAllocationTest extends TestCase
+{
+
+    /**
+     * Upper bound for the bytes allocated by the lexer for each char of the reference document. Tokens, attribute
+     * names and values are still allocated, so this is not zero, but allocating scratch arrays for each stored char
+     * or parsed attribute pushes the rate to about three times this value.
+     */
+    private static final double MAX_BYTES_PER_CHAR = 20;
+
+    /**
+     * Number of times the reference fragment is repeated.
+     */
+    private static final int REPEAT = 2000;
+
+    /**
+     * Tokenizes a document rich in attributes and non-ASCII text and checks the allocation rate. Fails on a JVM which
+     * can't measure the memory allocated by a thread, rather than passing without checking anything.
+     */
+    public final void testAllocationRate()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+        {
+            fail("This JVM can't measure allocations: " + bean.getClass().getName()
+                + " is not a com.sun.management.ThreadMXBean");
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported())
+        {
+            fail("This JVM can't measure allocations: thread allocated memory is not supported");
+        }
+        if (!threadBean.isThreadAllocatedMemoryEnabled())
+        {
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        StringBuilder buffer = new StringBuilder();
+        for (int j = 0; j < REPEAT; j++)
+        {
+            buffer.append("<p class=\"note\" id=\"n").append(j).append("\" title=\" têtu \" lang=en>");
+            buffer.append("Café crème, naïve à la élève: 中文 text.</p>\n");
+        }
+        String document = buffer.toString();
+
+        // warm up, so that class loading and tables are not counted
+        tokenize(document);
+
+        long thread = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(thread);
+        tokenize(document);
+        long allocated = threadBean.getThreadAllocatedBytes(thread) - before;
+
+        double perChar = (double) allocated / document.length();
+        assertTrue("Lexer allocated " + perChar + " bytes per char", perChar <= MAX_BYTES_PER_CHAR);
+    }
+
+    /**
+     * Runs the lexer over the whole document.
+     * @param document input
+     */
+    private void tokenize(String document)
+    {
+        Configuration configuration = TidyTestCase.newConfiguration();
+        configuration.showWarnings = false;
+        Lexer lexer = TidyTestCase.newLexer(document, configuration);
+
+        while (lexer.getToken(Lexer.IGNORE_WHITESPACE) != null)
+        {
+            // just consume tokens
+        }
+    }
+
+}
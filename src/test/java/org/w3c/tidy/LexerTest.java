@@ -53,6 +53,10 @@
  */
 package org.w3c.tidy;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 
@@ -112,4 +116,108 @@ public class LexerTest extends TestCase
         assertTrue("abc\\8 is a valid css selector", Lexer.isCSS1Selector("abc\\8"));
     }
 
-}
\ No newline at end of file
+    /**
+     * Text nodes must keep their content when the lexer moves on to new buffer segments.
+     */
+    public final void testTextNodesSurviveNewSegments()
+    {
+        StringBuilder buffer = new StringBuilder();
+        for (int j = 0; j < 5000; j++)
+        {
+            buffer.append("<b>text ").append(j).append("</b>");
+        }
+
+        Lexer lexer = TidyTestCase.newLexer(buffer.toString());
+
+        List<Node> texts = new ArrayList<>();
+        Node node;
+        while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+        {
+            if (node.type == Node.TEXT_NODE)
+            {
+                texts.add(node);
+            }
+        }
+
+        assertEquals(5000, texts.size());
+        assertNotSame("first node must live in an earlier segment", lexer.lexbuf, texts.get(0).textarray);
+        for (int j = 0; j < texts.size(); j++)
+        {
+            Node text = texts.get(j);
+            assertEquals("text " + j, TidyUtils.getString(text.textarray, text.start, text.end - text.start));
+        }
+    }
+
+    /**
+     * Leading and trailing white space is trimmed from attribute values wherever they fall in a buffer segment.
+     */
+    public final void testAttributeValuesTrimmedInAllSegments()
+    {
+        StringBuilder buffer = new StringBuilder();
+        for (int j = 0; j < 2000; j++)
+        {
+            buffer.append("<p class=\"  x").append(j).append(" \">text</p>");
+        }
+
+        Lexer lexer = TidyTestCase.newLexer(buffer.toString());
+
+        int count = 0;
+        Node node;
+        while ((node = lexer.getToken(Lexer.IGNORE_WHITESPACE)) != null)
+        {
+            if (node.type == Node.START_TAG)
+            {
+                assertEquals("x" + count, node.getAttrByName("class").getValue());
+                count++;
+            }
+        }
+        assertEquals(2000, count);
+    }
+
+    /**
+     * The lexer must not keep discarded nodes reachable.
+     */
+    public final void testDiscardedNodesAreNotRetained()
+    {
+        Lexer lexer = TidyTestCase.newLexer((StreamIn) null, TidyTestCase.newConfiguration());
+
+        WeakReference<Node> discarded = new WeakReference<>(lexer.newNode());
+        WeakReference<Node> cloned = new WeakReference<>(lexer.cloneNode(new Node()));
+
+        for (int j = 0; j < 10 && (discarded.get() != null || cloned.get() != null); j++)
+        {
+            System.gc();
+        }
+
+        assertNull("node retained by lexer", discarded.get());
+        assertNull("cloned node retained by lexer", cloned.get());
+        assertNotNull(lexer);
+    }
+
+    /**
+     * Attribute values are kept as bytes until they are read.
+     */
+    public final void testLazyAttributeValues()
+    {
+        Lexer lexer = TidyTestCase.newLexer(
+            "<p title=\"caf\u00e9 &amp; cr\u00e8me\" class=' x '>text</p><p title=\"other\">");
+
+        Node p = lexer.getToken(Lexer.IGNORE_WHITESPACE);
+        while (lexer.getToken(Lexer.IGNORE_WHITESPACE) != null)
+        {
+            // overwrite the lexer buffer with the following tokens
+        }
+
+        AttVal title = p.getAttrByName("title");
+        assertNull("value not created yet", title.value);
+        assertEquals("caf\u00e9 & cr\u00e8me", title.getValue());
+        assertSame("value created once", title.getValue(), title.getValue());
+        assertNotNull("reading the value doesn't change the attribute", title.valueBytes);
+        assertEquals("x", p.getAttrByName("class").getValue());
+
+        title.setValue("changed");
+        assertNull(title.valueBytes);
+        assertEquals("changed", title.getValue());
+    }
+
+}
@@ -0,0 +1,351 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Tests for OutBufferedImpl.
+ * @version $Revision$ ($Author$)
+ */
+public class OutBufferedImplTest extends TestCase
+{
+
+    /**
+     * Output encoded in blocks must be the same as the output of an OutputStreamWriter, also for surrogate pairs split
+     * across the buffer boundary and unmappable chars.
+     * @throws Exception any exception generated during the test
+     */
+    public void testEncodesLikeOutputStreamWriter() throws Exception
+    {
+        StringBuffer text = new StringBuffer();
+        for (int j = 0; j < OutBufferedImpl.BUFFER_SIZE - 1; j++)
+        {
+            text.append((char) ('a' + j % 26));
+        }
+        text.append("\ud83d\ude00 caf\u00e9 \u4e2d\u6587 \u20ac \ud800 x\n");
+        text.append(text.toString());
+
+        String[] encodings = {"UTF8", "ISO8859_1", "ASCII", "Cp1252", "SJIS"};
+        for (int i = 0; i < encodings.length; i++)
+        {
+            Configuration configuration = new Configuration(new Report());
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            Writer writer = new OutputStreamWriter(expected, encodings[i]);
+
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            Out out = new OutBufferedImpl(configuration, encodings[i], actual);
+
+            for (int j = 0; j < text.length(); j++)
+            {
+                char c = text.charAt(j);
+                if (c == '\n')
+                {
+                    writer.write(configuration.newline);
+                    out.newline();
+                }
+                else
+                {
+                    writer.write(c);
+                    out.outc(c);
+                }
+            }
+            writer.flush();
+            out.flush();
+
+            assertNull(out.getError());
+            assertEquals(encodings[i], expected.toString("ISO8859_1"), actual.toString("ISO8859_1"));
+        }
+    }
+
+    /**
+     * A high surrogate left at the end of the output is replaced on the final flush, as an OutputStreamWriter does
+     * when closed, instead of being dropped.
+     * @throws Exception any exception generated during the test
+     */
+    public void testTrailingHighSurrogate() throws Exception
+    {
+        String[] encodings = {"UTF8", "ISO8859_1", "UTF-16"};
+        for (int i = 0; i < encodings.length; i++)
+        {
+            Configuration configuration = new Configuration(new Report());
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            Writer writer = new OutputStreamWriter(expected, encodings[i]);
+            writer.write("a\ud83d");
+            writer.close();
+
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            Out out = new OutBufferedImpl(configuration, encodings[i], actual);
+            out.outc('a');
+            out.outc(0xd83d);
+            out.flush();
+
+            assertNull(out.getError());
+            assertEquals(encodings[i], expected.toString("ISO8859_1"), actual.toString("ISO8859_1"));
+        }
+    }
+
+    /**
+     * Bulk writes give the same output as writing one char at a time, also when they cross the buffer boundary.
+     */
+    public void testBulkWrites()
+    {
+        Configuration configuration = new Configuration(new Report());
+        StringWriter expected = new StringWriter();
+        StringWriter actual = new StringWriter();
+        Out single = new OutBufferedImpl(configuration, expected);
+        Out bulk = new OutBufferedImpl(configuration, actual);
+
+        int[] line = new int[3000];
+        char[] chars = new char[3000];
+        for (int i = 0; i < line.length; i++)
+        {
+            line[i] = 'a' + i % 26;
+            chars[i] = (char) ('A' + i % 26);
+        }
+
+        for (int n = 0; n < 5; n++)
+        {
+            for (int i = 0; i < 1000 * n; i++)
+            {
+                single.outc(' ');
+            }
+            bulk.outSpaces(1000 * n);
+
+            for (int i = n; i < line.length; i++)
+            {
+                single.outc(line[i]);
+            }
+            bulk.outc(line, n, line.length);
+
+            for (int i = 0; i < chars.length - n; i++)
+            {
+                single.outc(chars[i]);
+            }
+            bulk.outc(chars, 0, chars.length - n);
+        }
+        single.flush();
+        bulk.flush();
+
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    /**
+     * UTF-8 bytes are copied to a UTF-8 stream and decoded for other outputs, in order with the chars around them.
+     * @throws Exception any exception generated during the test
+     */
+    public void testOutUTF8() throws Exception
+    {
+        String text = "caf\u00e9 \u4e2d\u6587 <b>";
+        byte[] utf8 = text.getBytes("UTF-8");
+        byte[] large = new byte[OutBufferedImpl.BUFFER_SIZE * 3];
+        Arrays.fill(large, (byte) 'x');
+        String expected = "a" + text + "\ud83d\ude00" + text + "\ud83d" + text + new String(large, "UTF-8") + "z";
+
+        String[] encodings = {"UTF8", "ISO8859_1"};
+        for (int i = 0; i < encodings.length; i++)
+        {
+            Configuration configuration = new Configuration(new Report());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            StringWriter chars = new StringWriter();
+            Out[] outs = {
+                new OutBufferedImpl(configuration, encodings[i], bytes),
+                new OutBufferedImpl(configuration, chars)};
+
+            for (int j = 0; j < outs.length; j++)
+            {
+                Out out = outs[j];
+                out.outc('a');
+                out.outUTF8(utf8, 0, utf8.length);
+                out.outc(0xd83d);
+                out.outc(0xde00);
+                out.outUTF8(utf8, 0, utf8.length);
+                // unpaired surrogate
+                out.outc(0xd83d);
+                out.outUTF8(utf8, 0, utf8.length);
+                out.outUTF8(large, 0, large.length);
+                out.outc('z');
+                out.flush();
+                assertNull(out.getError());
+            }
+
+            assertEquals(expected, chars.toString());
+
+            ByteArrayOutputStream reference = new ByteArrayOutputStream();
+            Writer writer = new OutputStreamWriter(reference, encodings[i]);
+            writer.write(expected);
+            writer.flush();
+            assertEquals(encodings[i], reference.toString("ISO8859_1"), bytes.toString("ISO8859_1"));
+        }
+    }
+
+    /**
+     * Output written to a channel or a byte buffer is the same as output written to a stream. Byte buffers grow as
+     * needed and keep what they held before.
+     * @throws Exception any exception generated during the test
+     */
+    public void testByteBufferAndChannel() throws Exception
+    {
+        byte[] large = new byte[OutBufferedImpl.BUFFER_SIZE * 5];
+        Arrays.fill(large, (byte) 'x');
+        String[] encodings = {"UTF8", "ISO8859_1"};
+        for (int i = 0; i < encodings.length; i++)
+        {
+            Configuration configuration = new Configuration(new Report());
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            ByteArrayOutputStream channel = new ByteArrayOutputStream();
+            OutBufferedImpl heap = new OutBufferedImpl(configuration, encodings[i], ByteBuffer.allocate(3).put(
+                (byte) '>'));
+            OutBufferedImpl direct = new OutBufferedImpl(configuration, encodings[i], ByteBuffer.allocateDirect(100));
+            Out[] outs = {
+                new OutBufferedImpl(configuration, encodings[i], expected),
+                new OutBufferedImpl(configuration, encodings[i], Channels.newChannel(channel)),
+                heap,
+                direct};
+
+            for (int j = 0; j < outs.length; j++)
+            {
+                Out out = outs[j];
+                for (int n = 0; n < OutBufferedImpl.BUFFER_SIZE * 3; n++)
+                {
+                    out.outc(0xe9);
+                }
+                out.outUTF8(large, 0, large.length);
+                out.outc('z');
+                out.newline();
+                out.flush();
+                assertNull(out.getError());
+            }
+
+            assertTrue(Arrays.equals(expected.toByteArray(), channel.toByteArray()));
+            assertNull(((OutBufferedImpl) outs[0]).getByteBuffer());
+
+            ByteBuffer buffer = heap.getByteBuffer();
+            assertFalse(buffer.isDirect());
+            assertEquals('>', buffer.get(0));
+            assertTrue(Arrays.equals(expected.toByteArray(), Arrays.copyOfRange(buffer.array(), 1, buffer.position())));
+
+            buffer = direct.getByteBuffer();
+            assertTrue(buffer.isDirect());
+            byte[] bytes = new byte[buffer.position()];
+            buffer.flip();
+            buffer.get(bytes);
+            assertTrue(Arrays.equals(expected.toByteArray(), bytes));
+        }
+    }
+
+    /**
+     * Tidy prints to a reusable byte array the same bytes it prints to a stream.
+     * @throws Exception any exception generated during the test
+     */
+    public void testPrintToPooledBuffer() throws Exception
+    {
+        Tidy tidy = new Tidy();
+        tidy.setQuiet(true);
+        tidy.setErrout(new PrintWriter(new StringWriter()));
+        org.w3c.dom.Document document = tidy.parseDOM(
+            new ByteArrayInputStream("<p>caf\u00e9</p>".getBytes("UTF-8")),
+            null);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        tidy.pprint(document, expected);
+
+        ByteBuffer first = tidy.pprint(document);
+        assertTrue(Arrays.equals(expected.toByteArray(), Arrays.copyOf(first.array(), first.position())));
+        ByteBuffer second = tidy.pprint(document);
+        assertSame(first.array(), second.array());
+        assertEquals(first.position(), second.position());
+    }
+
+    /**
+     * A failing output stream is reported as an error instead of being ignored.
+     */
+    public void testWriteErrorIsReported()
+    {
+        OutputStream failing = new OutputStream()
+        {
+
+            @Override
+            public void write(int b) throws IOException
+            {
+                throw new IOException("disk full");
+            }
+        };
+
+        Tidy tidy = new Tidy();
+        tidy.setQuiet(true);
+        StringWriter errors = new StringWriter();
+        tidy.setErrout(new PrintWriter(errors));
+        tidy.parse(new ByteArrayInputStream("<p>text</p>".getBytes()), failing);
+
+        assertEquals(1, tidy.getParseErrors());
+        assertTrue(errors.toString(), errors.toString().indexOf("disk full") != -1);
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Tests for PPrint.
+ * @version $Revision$ ($Author$)
+ */
+public class PPrintTest extends TestCase
+{
+
+    /**
+     * Paragraph with chars escaped depending on the configuration.
+     */
+    private static final String TEXT = "<p>a&amp;b \"q\" 'a'&nbsp;&lt;x&gt; caf&eacute; &mdash; &#x4e2d; "
+        + "&ldquo;smart&rdquo;</p>";
+
+    /**
+     * Chars are escaped according to the output encoding and the quoting options.
+     * @throws Exception any exception generated during the test
+     */
+    public void testEscapes() throws Exception
+    {
+        assertEquals(
+            "<p>a&amp;b \"q\" 'a'&nbsp;&lt;x&gt; caf&eacute; &mdash; &#20013; &ldquo;smart&rdquo;</p>",
+            printBody("ascii", null));
+        assertEquals(
+            "<p>a&amp;b &quot;q&quot; &#39;a&#39;&nbsp;&lt;x&gt; café &mdash; &#20013; &ldquo;smart&rdquo;</p>",
+            printBody("latin1", "quote-marks"));
+        assertEquals(
+            "<p>a&amp;b \"q\" 'a'&nbsp;&lt;x&gt; café — 中 “smart”</p>",
+            printBody("utf8", null));
+        assertEquals(
+            "<p>a&amp;b \"q\" 'a'&nbsp;&lt;x&gt; café - 中 \"smart\"</p>",
+            printBody("utf8", "ascii-chars"));
+    }
+
+    /**
+     * Minified output has no line breaks between elements, optional tags, comments or unneeded quotes.
+     * @throws Exception any exception generated during the test
+     */
+    public void testMinify() throws Exception
+    {
+        String html = "<html>\n<head>\n<title>Test</title>\n<!-- note -->\n<!--[if IE]><p><![endif]-->\n"
+            + "<script type=\"text/javascript\">\n// comment\nvar a = 1;\n</script>\n</head>\n"
+            + "<body class=\"main\">\n<h1 id=\"top\">Title</h1>\n<p>Some   <b>bold</b>\ntext <a href=\"a b.html\" "
+            + "title=\"x=y\">link</a></p>\n<ul>\n<li>one</li>\n<li>two</li>\n</ul>\n<pre>\n a\n  b\n</pre>\n"
+            + "<p>end<br>\n<img src=\"x/\" alt=\"\"></p>\n</body>\n</html>\n";
+
+        Properties properties = new Properties();
+        properties.setProperty("minify", "yes");
+        properties.setProperty("tidy-mark", "no");
+        properties.setProperty("doctype", "omit");
+        assertEquals("<title>Test</title><!--[if IE]><p><![endif]--><script type=text/javascript>// comment\n"
+            + "var a = 1;\n</script><body class=main><h1 id=top>Title</h1><p>Some <b>bold</b> text "
+            + "<a href=a%20b.html title=\"x=y\">link</a><ul><li>one<li>two</ul><pre> a\n  b\n</pre>"
+            + "<p>end<br><img src=\"x/\" alt=\"\">", print(html, properties));
+
+        properties.setProperty("keep-comments", "yes");
+        properties.setProperty("output-xhtml", "yes");
+        String start = "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>Test</title><!-- note -->";
+        assertEquals(start, print(html, properties).substring(0, start.length()));
+    }
+
+    /**
+     * Slides are split at h2 elements, written to one file each and linked together; stale slides are deleted.
+     * @throws Exception any exception generated during the test
+     */
+    public void testCreateSlides() throws Exception
+    {
+        File dir = File.createTempFile("slides", "");
+        dir.delete();
+        try
+        {
+            dir.mkdirs();
+            new File(dir, "slide004.html").createNewFile();
+            new File(dir, "slide005.html").createNewFile();
+
+            Tidy tidy = new Tidy();
+            tidy.setBurstSlides(true);
+            tidy.setSlidesDir(dir.getPath());
+            StringWriter errout = new StringWriter();
+            tidy.setErrout(new PrintWriter(errout));
+            tidy.parse(new ByteArrayInputStream(
+                "<h2>One</h2><p>1</p><h2>Two</h2><p>2</p><h2>Three</h2><p>3</p>".getBytes("UTF-8")), (OutputStream) null);
+
+            assertTrue(errout.toString().indexOf("3 Slides found") != -1);
+            assertFalse(new File(dir, "slide004.html").exists());
+            assertFalse(new File(dir, "slide005.html").exists());
+
+            String second = read(new File(dir, "slide002.html"));
+            assertTrue(second.indexOf("<h2>Two</h2>") != -1);
+            assertTrue(second.indexOf("<p>2</p>") != -1);
+            assertEquals(-1, second.indexOf("<p>1</p>"));
+            assertEquals(-1, second.indexOf("<h2>Three</h2>"));
+            assertTrue(second.indexOf("<a href=\"slide001.html\">previous</a>") != -1);
+            assertTrue(second.indexOf("<a href=\"slide003.html\">next</a>") != -1);
+            assertTrue(read(new File(dir, "slide003.html")).indexOf("<p>3</p>") != -1);
+        }
+        finally
+        {
+            File[] files = dir.listFiles();
+            for (int i = 0; files != null && i < files.length; i++)
+            {
+                files[i].delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * A slide file which can't be written is reported as an error instead of being lost on System.err.
+     * @throws Exception any exception generated during the test
+     */
+    public void testCreateSlidesReportsWriteErrors() throws Exception
+    {
+        File notADir = File.createTempFile("slides", "");
+        try
+        {
+            Tidy tidy = new Tidy();
+            tidy.setBurstSlides(true);
+            tidy.setSlidesDir(notADir.getPath());
+            StringWriter errout = new StringWriter();
+            tidy.setErrout(new PrintWriter(errout));
+            tidy.parse(new ByteArrayInputStream("<h2>One</h2><p>1</p><h2>Two</h2><p>2</p>".getBytes("UTF-8")),
+                (OutputStream) null);
+
+            assertTrue(errout.toString(), errout.toString().indexOf("slide001.html: can't write output") != -1);
+            assertTrue(errout.toString(), errout.toString().indexOf("slide002.html: can't write output") != -1);
+            assertEquals(2, tidy.getParseErrors());
+        }
+        finally
+        {
+            notADir.delete();
+        }
+    }
+
+    /**
+     * Prints the body of TEXT.
+     * @param encoding output encoding
+     * @param option boolean option to turn on, or <code>null</code>
+     * @return printed body
+     * @throws Exception any exception generated during the test
+     */
+    private String printBody(String encoding, String option) throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty("input-encoding", "utf8");
+        properties.setProperty("output-encoding", encoding);
+        properties.setProperty("show-body-only", "yes");
+        properties.setProperty("wrap", "0");
+        if (option != null)
+        {
+            properties.setProperty(option, "yes");
+            properties.setProperty("clean", Boolean.toString("ascii-chars".equals(option)));
+        }
+        return print(TEXT, properties).trim();
+    }
+
+    /**
+     * Tidies a document.
+     * @param html document
+     * @param properties configuration
+     * @return output
+     * @throws Exception any exception generated during the test
+     */
+    private String print(String html, Properties properties) throws Exception
+    {
+        Tidy tidy = new Tidy();
+        tidy.setConfigurationFromProps(properties);
+        tidy.setErrout(new PrintWriter(new StringWriter()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tidy.parse(new ByteArrayInputStream(html.getBytes("UTF-8")), out);
+        return new String(out.toByteArray(), tidy.getConfiguration().getOutCharEncodingName());
+    }
+
+    /**
+     * Reads a file written with the default output encoding.
+     * @param file file
+     * @return content
+     * @throws Exception any exception generated during the test
+     */
+    private String read(File file) throws Exception
+    {
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer))
+            {
+                out.write(buffer, 0, n);
+            }
+            return out.toString("UTF-8");
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.util.Properties;
+
+
+/**
+ * Checks that printing the body in parallel gives the same output as printing it serially.
+ * @version $Revision$ ($Author$)
+ */
+public class ParallelPrintTest extends TidyTestCase
+{
+
+    /**
+     * Instantiate a new Test case.
+     * @param name test name
+     */
+    public ParallelPrintTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Prints each document of the TidyOutputBugsTest corpus serially and in parallel, splitting the body as much as
+     * possible, with the test configuration and with wrapping, indentation and minified output.
+     * @throws Exception any exception generated during the test
+     */
+    public void testOutputBugsCorpus() throws Exception
+    {
+        Properties serial = new Properties();
+        Properties parallel = options("parallel-print", "yes", "parallel-print-threshold", "1");
+
+        assertSameOutputBugsCorpus(new Properties(), serial, parallel);
+        assertSameOutputBugsCorpus(options("indent", "auto"), serial, parallel);
+        assertSameOutputBugsCorpus(options("wrap", "20"), serial, parallel);
+        assertSameOutputBugsCorpus(options("minify", "yes"), serial, parallel);
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Tests for the parse limits: max-input-bytes, max-nodes, max-depth, max-attributes and max-parse-time.
+ * @version $Revision$ ($Author$)
+ */
+public class ParseLimitsTest extends TidyTestCase
+{
+
+    /**
+     * Test document.
+     */
+    private static final String HTML = "<html><head><title>t</title></head><body>"
+        + "<p class=\"a\" id=\"b\">one</p><div><div><p>two</p></div></div><p>three</p></body></html>";
+
+    /**
+     * Error codes received.
+     */
+    private List<Integer> codes;
+
+    /**
+     * Instantiate a new Test case.
+     * @param name test name
+     */
+    public ParseLimitsTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.codes = new ArrayList<>();
+        this.tidy = newQuietTidy();
+        this.tidy.setMessageListener(new TidyMessageListener()
+        {
+
+            @Override
+            public void messageReceived(TidyMessage message)
+            {
+                if (message.getLevel() == TidyMessage.Level.ERROR)
+                {
+                    codes.add(Integer.valueOf(message.getErrorCode()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Documents within their limits are parsed as usual.
+     */
+    public void testWithinLimits()
+    {
+        this.tidy.setMaxInputBytes(HTML.length());
+        this.tidy.setMaxNodes(100);
+        this.tidy.setMaxDepth(5);
+        this.tidy.setMaxAttributes(2);
+        this.tidy.setMaxParseTime(60000);
+
+        String body = parse(HTML);
+        assertTrue(this.codes.isEmpty());
+        assertTrue(body, body.contains("<p>three</p>"));
+    }
+
+    /**
+     * The input is cut at max-input-bytes.
+     */
+    public void testMaxInputBytes()
+    {
+        this.tidy.setMaxInputBytes(HTML.indexOf("<div>"));
+
+        String body = parse(HTML);
+        assertEquals(Report.INPUT_LIMIT_EXCEEDED, onlyCode());
+        assertTrue(body, body.contains("one</p>"));
+        assertFalse(body, body.contains("two"));
+    }
+
+    /**
+     * The parse stops after max-nodes nodes.
+     */
+    public void testMaxNodes()
+    {
+        this.tidy.setMaxNodes(12);
+
+        String body = parse(HTML);
+        assertEquals(Report.NODE_LIMIT_EXCEEDED, onlyCode());
+        assertTrue(body, body.contains("one</p>"));
+        assertFalse(body, body.contains("three"));
+    }
+
+    /**
+     * Elements deeper than max-depth are left empty and the parse stops.
+     */
+    public void testMaxDepth()
+    {
+        this.tidy.setMaxDepth(4);
+
+        String body = parse(HTML);
+        assertEquals(Report.DEPTH_LIMIT_EXCEEDED, onlyCode());
+        assertTrue(body, body.contains("<div>"));
+        assertFalse(body, body.contains("two"));
+        assertFalse(body, body.contains("three"));
+    }
+
+    /**
+     * The parse stops at an element with more than max-attributes attributes.
+     */
+    public void testMaxAttributes()
+    {
+        this.tidy.setMaxAttributes(1);
+
+        String body = parse(HTML);
+        assertEquals(Report.ATTRIBUTE_LIMIT_EXCEEDED, onlyCode());
+        assertFalse(body, body.contains("id="));
+        assertFalse(body, body.contains("two"));
+    }
+
+    /**
+     * The parse stops after max-parse-time.
+     */
+    public void testMaxParseTime()
+    {
+        StringBuilder buffer = new StringBuilder("<p>");
+        for (int j = 0; j < 1000000; j++)
+        {
+            buffer.append("<b>text</b> ");
+        }
+        this.tidy.setMaxParseTime(1);
+
+        parse(buffer.toString());
+        assertEquals(Report.PARSE_TIME_EXCEEDED, onlyCode());
+    }
+
+    /**
+     * Parses a document and returns the content of the output body, which is written despite the errors.
+     * @param html document
+     * @return body content
+     */
+    private String parse(String html)
+    {
+        this.tidy.setForceOutput(true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.tidy.parse(new ByteArrayInputStream(html.getBytes()), out);
+        String result = out.toString();
+        return result.substring(result.indexOf("<body>"), result.indexOf("</body>"));
+    }
+
+    /**
+     * Returns the only error code received.
+     * @return error code
+     */
+    private short onlyCode()
+    {
+        assertEquals(this.codes.toString(), 1, this.codes.size());
+        return this.codes.get(0).shortValue();
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Tests for ParserImpl.
+ * @version $Revision$ ($Author$)
+ */
+public class ParserImplTest extends TestCase
+{
+
+    /**
+     * Nesting depth of the test documents.
+     */
+    private static final int DEPTH = 20000;
+
+    /**
+     * Deeply nested elements are parsed and cleaned on a small thread stack.
+     * @throws Exception any exception generated during the test
+     */
+    public void testDeepNesting() throws Exception
+    {
+        assertEquals(DEPTH, depth(parse(repeat("<div>") + "x", false), "div"));
+        assertEquals(DEPTH, depth(parse(repeat("<table><tr><td>"), false), "table"));
+        assertEquals(DEPTH, depth(parse(repeat("<ul><li>") + "x", false), "ul"));
+        assertEquals(DEPTH, depth(parse(repeat("<span>") + "x", false), "span"));
+        assertEquals(DEPTH, depth(parse(repeat("<a>") + "x", true), "a"));
+
+        // the clean up steps walk the tree too: nested b elements are merged, lists without li become a single div
+        assertEquals(1, depth(parse(repeat("<b>") + "x", false), "b"));
+        assertEquals(1, depth(parse(repeat("<dir>") + "x", false), "div"));
+    }
+
+    /**
+     * Repeats markup DEPTH times.
+     * @param markup markup
+     * @return repeated markup
+     */
+    private static String repeat(String markup)
+    {
+        StringBuilder buffer = new StringBuilder();
+        for (int j = 0; j < DEPTH; j++)
+        {
+            buffer.append(markup);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Parses and cleans a document with Tidy on a thread with a small stack, without printing it.
+     * @param html document
+     * @param xml parse as XML?
+     * @return document node
+     * @throws Exception any exception generated during the test
+     */
+    private static Node parse(String html, boolean xml) throws Exception
+    {
+        final Tidy tidy = TidyTestCase.newQuietTidy();
+        tidy.setXmlTags(xml);
+        final byte[] input = html.getBytes("US-ASCII");
+
+        final Node[] document = new Node[1];
+        final Throwable[] error = new Throwable[1];
+        Thread thread = new Thread(null, new Runnable()
+        {
+
+            @Override
+            public void run()
+            {
+                try
+                {
+                    document[0] = tidy.parse(new ByteArrayInputStream(input), (OutputStream) null);
+                }
+                catch (Throwable e)
+                {
+                    error[0] = e;
+                }
+            }
+        }, "parser", 256 * 1024);
+        thread.start();
+        thread.join();
+
+        if (error[0] != null)
+        {
+            throw new AssertionError(error[0]);
+        }
+        assertNotNull(document[0]);
+        return document[0];
+    }
+
+    /**
+     * Returns the depth of the nested elements with the given name.
+     * @param node root node
+     * @param name element name
+     * @return number of nested elements
+     */
+    private static int depth(Node node, String name)
+    {
+        int depth = 0;
+        while (node != null)
+        {
+            Node next = null;
+            for (Node child = node.content; child != null; child = child.next)
+            {
+                if (child.content != null)
+                {
+                    next = child;
+                }
+            }
+            if (name.equals(node.element))
+            {
+                depth++;
+            }
+            node = next;
+        }
+        return depth;
+    }
+
+}
@@ -0,0 +1,241 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Tests for StreamInBufferedImpl: it must behave exactly like StreamInJavaImpl.
+ * @version $Revision$ ($Author$)
+ */
+public class StreamInBufferedImplTest extends TestCase
+{
+
+    /**
+     * Plain text, line endings and tabs.
+     */
+    public final void testSameAsJavaImpl()
+    {
+        assertSameChars("<p>\tone\r\ntwo\rthree\n\t\tfour\r</p>\r");
+    }
+
+    /**
+     * Input larger than the decoding window.
+     */
+    public final void testInputLargerThanWindow()
+    {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < StreamInBufferedImpl.WINDOW_SIZE * 3)
+        {
+            sb.append("line\twith a tab\r\n");
+        }
+        // split a \r\n across the window boundary
+        sb.setLength(StreamInBufferedImpl.WINDOW_SIZE - 1);
+        sb.append("\r\nend");
+        assertSameChars(sb.toString());
+    }
+
+    /**
+     * Pushed back chars are returned before any new input.
+     */
+    public final void testUngetChar()
+    {
+        StreamIn in = new StreamInBufferedImpl(new StringReader("ab\ncd"), 8);
+        assertEquals('a', in.readChar());
+        assertEquals('b', in.readChar());
+        assertEquals('\n', in.readChar());
+        assertEquals(2, in.getCurline());
+        in.ungetChar('\n');
+        in.ungetChar('x');
+        assertEquals(1, in.getCurline());
+        assertEquals('x', in.readChar());
+        assertEquals('\n', in.readChar());
+        assertEquals('c', in.readChar());
+        assertEquals('d', in.readChar());
+        assertFalse(in.isEndOfStream());
+        assertEquals(StreamIn.END_OF_STREAM, in.readChar());
+        assertTrue(in.isEndOfStream());
+    }
+
+    /**
+     * Text runs copied by the stream must give the same tokens and positions as reading one char at a time.
+     */
+    public final void testTextRuns()
+    {
+        String text = "<p>Plain words, caf\u00e9 cr\u00e8me \u4e2d\u6587  two  spaces\tand tab &amp; entity"
+            + "\ufffe\ud83d\ude00 a<b>x</b> y\r\nnext line</p>\n<pre> keep   this </pre>";
+        assertSameTokens(text, new StreamInJavaImpl(new StringReader(text), 4), new StreamInBufferedImpl(
+            new StringReader(text),
+            4));
+    }
+
+    /**
+     * Script and style content copied up to the next tag must give the same text and positions as reading one char at
+     * a time.
+     */
+    public final void testCDATARuns()
+    {
+        String text = "<script>var a = b < c && d > e;\r\n\tdocument.write(\"<p>caf\u00e9 \u4e2d<\\/p>\");"
+            + " x = '</b>';\ufffe\ud83d\ude00 </SCRIPT ><style> p { a: b } </style>"
+            + "<script>  \n  </script><script>a</scripts> b</script>";
+        assertSameTokens(text, new StreamInJavaImpl(new StringReader(text), 4), new StreamInBufferedImpl(
+            new StringReader(text),
+            4));
+    }
+
+    /**
+     * An error while reading is reported as an input error and handled as the end of input.
+     */
+    public final void testReadError()
+    {
+        Reader reader = new Reader()
+        {
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException
+            {
+                throw new IOException("broken");
+            }
+
+            @Override
+            public void close()
+            {
+                // nothing to close
+            }
+        };
+        Lexer lexer = TidyTestCase.newLexer(new StreamInBufferedImpl(reader, 4), TidyTestCase.newConfiguration());
+        assertNull(lexer.getToken(Lexer.IGNORE_WHITESPACE));
+        assertEquals(1, lexer.errors);
+    }
+
+    /**
+     * Tokenizes the given input with two streams, comparing text and positions of each token. Script and style contents
+     * are read as CDATA.
+     * @param text input text, for messages
+     * @param expectedIn stream reading one char at a time
+     * @param actualIn stream under test
+     */
+    static void assertSameTokens(String text, StreamIn expectedIn, StreamIn actualIn)
+    {
+        Lexer expected = TidyTestCase.newLexer(expectedIn, TidyTestCase.newConfiguration());
+        Lexer actual = TidyTestCase.newLexer(actualIn, TidyTestCase.newConfiguration());
+        short mode = Lexer.IGNORE_WHITESPACE;
+        int count = 0;
+        while (true)
+        {
+            Node e = mode == Lexer.IGNORE_MARKUP ? expected.getCDATA(expected.token) : expected.getToken(mode);
+            Node a = mode == Lexer.IGNORE_MARKUP ? actual.getCDATA(actual.token) : actual.getToken(mode);
+            if (e == null && mode == Lexer.IGNORE_MARKUP)
+            {
+                assertNull(a);
+                mode = Lexer.MIXED_CONTENT;
+                continue;
+            }
+            if (e == null)
+            {
+                assertNull(a);
+                break;
+            }
+            assertNotNull(text, a);
+            assertEquals("type of token " + count, e.type, a.type);
+            assertEquals("element of token " + count, e.element, a.element);
+            if (e.type == Node.TEXT_NODE)
+            {
+                assertEquals("text of token " + count, TidyUtils.getString(e.textarray, e.start, e.end - e.start),
+                    TidyUtils.getString(a.textarray, a.start, a.end - a.start));
+            }
+            assertEquals("line after token " + count, expectedIn.getCurline(), actualIn.getCurline());
+            assertEquals("column after token " + count, expectedIn.getCurcol(), actualIn.getCurcol());
+            mode = Lexer.MIXED_CONTENT;
+            if (e.type == Node.START_TAG && "pre".equals(e.element))
+            {
+                mode = Lexer.PREFORMATTED;
+            }
+            else if (e.type == Node.START_TAG && ("script".equals(e.element) || "style".equals(e.element)))
+            {
+                mode = Lexer.IGNORE_MARKUP;
+            }
+            count++;
+        }
+    }
+
+
+    /**
+     * Reads the given text with both implementations, comparing chars and positions.
+     * @param text input text
+     */
+    private void assertSameChars(String text)
+    {
+        StreamIn expected = new StreamInJavaImpl(new StringReader(text), 4);
+        StreamIn actual = new StreamInBufferedImpl(new StringReader(text), 4);
+        int c;
+        int count = 0;
+        do
+        {
+            c = expected.readChar();
+            assertEquals("char " + count, c, actual.readChar());
+            assertEquals("line at char " + count, expected.getCurline(), actual.getCurline());
+            assertEquals("column at char " + count, expected.getCurcol(), actual.getCurcol());
+            assertEquals(expected.isEndOfStream(), actual.isEndOfStream());
+            count++;
+        }
+        while (c != StreamIn.END_OF_STREAM);
+    }
+
+}
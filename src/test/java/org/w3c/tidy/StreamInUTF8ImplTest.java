@@ -0,0 +1,168 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Tests for StreamInUTF8Impl.
+ * @version $Revision$ ($Author$)
+ */
+public class StreamInUTF8ImplTest extends TidyTestCase
+{
+
+    /**
+     * Instantiate a new Test case.
+     * @param name test name
+     */
+    public StreamInUTF8ImplTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Valid UTF-8 is read exactly like the java decoder does, including chars outside the BMP.
+     * @throws Exception any exception generated during the test
+     */
+    public void testSameCharsAsInputStreamReader() throws Exception
+    {
+        byte[] input = "<p>café € 10\r\n\t😀 end</p>".getBytes("UTF-8");
+
+        StreamIn expected = new StreamInBufferedImpl(new InputStreamReader(new ByteArrayInputStream(input), "UTF8"), 8);
+        StreamIn actual = new StreamInUTF8Impl(new ByteArrayInputStream(input), false, 8);
+        int c;
+        do
+        {
+            c = expected.readChar();
+            assertEquals(c, actual.readChar());
+            assertEquals(expected.getCurcol(), actual.getCurcol());
+            assertEquals(expected.getCurline(), actual.getCurline());
+        }
+        while (c != StreamIn.END_OF_STREAM);
+    }
+
+    /**
+     * Text copied straight from the input bytes gives the same output as decoded text.
+     * @throws Exception any exception generated during the test
+     */
+    public void testTextRuns() throws Exception
+    {
+        String text = "<p>naïve café &amp; 中文 text</p>";
+        this.tidy.setInputEncoding("UTF-8");
+        this.tidy.setOutputEncoding("UTF-8");
+        this.tidy.setPrintBodyOnly(true);
+        this.tidy.setErrout(new PrintWriter(new StringWriter()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.tidy.parse(new ByteArrayInputStream(text.getBytes("UTF-8")), out);
+        assertEquals("<p>naïve café &amp; 中文 text</p>", out.toString("UTF-8").trim());
+    }
+
+    /**
+     * Text runs copied from the input bytes give the same tokens and positions as reading one char at a time.
+     * @throws Exception any exception generated during the test
+     */
+    public void testTextRunTokens() throws Exception
+    {
+        String text = "<p>Plain words, café crème 中文  two  spaces\tand tab &amp; entity 😀 a<b>x</b> y\r\n"
+            + "next line</p>\n<pre> keep   this </pre><script>if (a < b && c) { x = '</p>'; } // \u00e9\u4e2d\r\n"
+            + "</script>";
+        byte[] input = text.getBytes("UTF-8");
+        StreamInBufferedImplTest.assertSameTokens(text, new StreamInJavaImpl(new InputStreamReader(
+            new ByteArrayInputStream(input),
+            "UTF8"), 8), new StreamInUTF8Impl(new ByteArrayInputStream(input), false, 8));
+    }
+
+    /**
+     * Invalid sequences are reported and replaced.
+     * @throws Exception any exception generated during the test
+     */
+    public void testInvalidSequence() throws Exception
+    {
+        byte[] input = new byte[]{'<', 'p', '>', 'a', (byte) 0xE9, 'b', (byte) 0xC3, '<', '/', 'p', '>'};
+        this.tidy.setInputEncoding("UTF-8");
+        this.tidy.setOutputEncoding("UTF-8");
+        this.tidy.setPrintBodyOnly(true);
+        this.messageListener = new TestMessageListener("invalidutf8");
+        this.tidy.setMessageListener(this.messageListener);
+        this.tidy.setErrout(new PrintWriter(new StringWriter()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.tidy.parse(new ByteArrayInputStream(input), out);
+        assertEquals("<p>a�b�</p>", out.toString("UTF-8").trim());
+
+        List<String> invalid = new ArrayList<>();
+        for (Object message : this.messageListener.getReceived())
+        {
+            TidyMessage tidyMessage = (TidyMessage) message;
+            if (tidyMessage.getErrorCode() == Report.INVALID_UTF8
+                && tidyMessage.getLevel() == TidyMessage.Level.WARNING)
+            {
+                invalid.add(tidyMessage.getMessage());
+            }
+        }
+        // the offending lead bytes are reported
+        assertEquals(2, invalid.size());
+        assertTrue(invalid.get(0), invalid.get(0).endsWith("(char. code e9)"));
+        assertTrue(invalid.get(1), invalid.get(1).endsWith("(char. code c3)"));
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Tests for TagTable lookups.
+ * @version $Revision$ ($Author$)
+ */
+public class TagTableTest extends TestCase
+{
+
+    /**
+     * tag table under test.
+     */
+    private TagTable tt;
+
+    /**
+     * configuration using the tag table.
+     */
+    private Configuration configuration;
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.configuration = new Configuration(new Report());
+        this.tt = new TagTable();
+        this.tt.setConfiguration(this.configuration);
+        this.configuration.tt = this.tt;
+    }
+
+    /**
+     * Known tags are found from their bytes, and are the same definitions returned by name.
+     */
+    public final void testLookupBytesKnownTags()
+    {
+        String[] names = {"html", "a", "p", "table", "blink", "wbr", "embed", "ilayer", "picture", "h6", "tt"};
+        for (String name : names)
+        {
+            byte[] bytes = TidyUtils.getBytes("<" + name + ">");
+            Dict dict = this.tt.lookup(bytes, 1, bytes.length - 1);
+            assertNotNull(name, dict);
+            assertSame(name, this.tt.lookup(name), dict);
+        }
+    }
+
+    /**
+     * Unknown and user defined tags, and names differing in case, are left to the lookup by name.
+     */
+    public final void testLookupBytesUnknownTags()
+    {
+        this.tt.defineTag(Dict.TAGTYPE_BLOCK, "mytag");
+
+        assertNull(this.tt.lookup(TidyUtils.getBytes("mytag"), 0, 5));
+        assertNotNull(this.tt.lookup("mytag"));
+        assertNull(this.tt.lookup(TidyUtils.getBytes("P"), 0, 1));
+        assertNull(this.tt.lookup(TidyUtils.getBytes("tables"), 0, 6));
+        assertNull(this.tt.lookup(TidyUtils.getBytes("tabl"), 0, 4));
+    }
+
+    /**
+     * The lexer gives known tags their definition straight from the bytes, and looks up other tags by name.
+     */
+    public final void testLexerTagTokens()
+    {
+        this.tt.defineTag(Dict.TAGTYPE_BLOCK, "mytag");
+
+        Lexer lexer = TidyTestCase.newLexer("<p><mytag></P><foo>", this.configuration);
+        assertSame(this.tt.tagP, lexer.getToken(Lexer.IGNORE_WHITESPACE).tag);
+        assertSame(this.tt.lookup("mytag"), lexer.getToken(Lexer.IGNORE_WHITESPACE).tag);
+        Node end = lexer.getToken(Lexer.IGNORE_WHITESPACE);
+        assertEquals(Node.END_TAG, end.type);
+        assertSame(this.tt.tagP, end.tag);
+        Node unknown = lexer.getToken(Lexer.IGNORE_WHITESPACE);
+        assertEquals("foo", unknown.element);
+        assertNull(unknown.tag);
+
+        this.configuration.xmlTags = true;
+        Node xml = TidyTestCase.newLexer("<p>", this.configuration).getToken(Lexer.IGNORE_WHITESPACE);
+        assertEquals("p", xml.element);
+        assertSame(TagTable.XML_TAGS, xml.tag);
+    }
+
+}
@@ -188,15 +188,20 @@ public class TidyCrashingBugsTest extends TidyTestCase
      */
     public void test431716() throws Exception
     {
-        executeTidyTest("431716.html");
-
-        // delete generates slides (this should be done in tear down be I'm pretty confident tidy will not crash here)
-        NumberFormat numberFormat = NumberFormat.getInstance();
-        numberFormat.setMinimumIntegerDigits(3);
-        for (int j = 1; j <= 26; j++)
+        try
+        {
+            executeTidyTest("431716.html");
+        }
+        finally
         {
-            String slide = "slide" + numberFormat.format(j) + ".html";
-            (new File(slide)).delete();
+            // delete generated slides, also when the output doesn't match
+            NumberFormat numberFormat = NumberFormat.getInstance();
+            numberFormat.setMinimumIntegerDigits(3);
+            for (int j = 1; j <= 26; j++)
+            {
+                String slide = "slide" + numberFormat.format(j) + ".html";
+                (new File(slide)).delete();
+            }
         }
     }
 
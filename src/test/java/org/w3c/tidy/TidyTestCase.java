@@ -60,10 +60,13 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -102,6 +105,11 @@ public class TidyTestCase extends TestCase
      */
     private static final Logger RUN_TIDY_EXECUTABLE = LoggerFactory.getLogger("runtidy");
 
+    /**
+     * Input file extensions used by the TidyOutputBugsTest corpus.
+     */
+    private static final String[] CORPUS_EXTENSIONS = {".html", ".xhtml", ".htm", ".xml"};
+
     /**
      * Tidy test instance.
      */
@@ -152,6 +160,70 @@ public class TidyTestCase extends TestCase
         this.tidy = new Tidy();
     }
 
+    /**
+     * Creates a Tidy which prints no summary and no warnings, and discards its messages. Tests which check messages
+     * register a message listener on it.
+     * @return new Tidy
+     */
+    protected static Tidy newQuietTidy()
+    {
+        Tidy tidy = new Tidy();
+        tidy.setQuiet(true);
+        tidy.setShowWarnings(false);
+        tidy.setErrout(new PrintWriter(new StringWriter()));
+        return tidy;
+    }
+
+    /**
+     * Creates a configuration with its own tag table, for tests using the lexer directly.
+     * @return new Configuration
+     */
+    protected static Configuration newConfiguration()
+    {
+        Configuration configuration = new Configuration(new Report());
+        configuration.tt = new TagTable();
+        configuration.tt.setConfiguration(configuration);
+        return configuration;
+    }
+
+    /**
+     * Creates a lexer reading the given text, with a new configuration.
+     * @param text input text
+     * @return new Lexer
+     */
+    protected static Lexer newLexer(String text)
+    {
+        return newLexer(text, newConfiguration());
+    }
+
+    /**
+     * Creates a lexer reading the given text.
+     * @param text input text
+     * @param configuration configuration, with its tag table
+     * @return new Lexer
+     */
+    protected static Lexer newLexer(String text, Configuration configuration)
+    {
+        return newLexer(new StreamInBufferedImpl(new StringReader(text), configuration.tabsize), configuration);
+    }
+
+    /**
+     * Creates a lexer reading from the given stream. Its messages are discarded.
+     * @param in input stream, or <code>null</code> for a lexer which only creates nodes
+     * @param configuration configuration, with its tag table
+     * @return new Lexer
+     */
+    protected static Lexer newLexer(StreamIn in, Configuration configuration)
+    {
+        Lexer lexer = new Lexer(in, configuration, configuration.report);
+        lexer.errout = new PrintWriter(new StringWriter());
+        if (in != null)
+        {
+            in.setLexer(lexer);
+        }
+        return lexer;
+    }
+
     /**
      * @see junit.framework.TestCase#tearDown()
      */
@@ -593,6 +665,103 @@ public class TidyTestCase extends TestCase
 
     }
 
+    /**
+     * Prints each document of the TidyOutputBugsTest corpus twice with its test configuration, changed by
+     * <code>options</code> and then by <code>expected</code> or by <code>actual</code>, and checks that the output is
+     * the same.
+     * @param options options changed for both runs
+     * @param expected options changed for the reference run
+     * @param actual options changed for the run under test
+     * @throws Exception any exception generated during the test
+     */
+    protected void assertSameOutputBugsCorpus(Properties options, Properties expected, Properties actual)
+        throws Exception
+    {
+        int files = 0;
+        Method[] methods = TidyOutputBugsTest.class.getMethods();
+        for (int i = 0; i < methods.length; i++)
+        {
+            if (!methods[i].getName().startsWith("test"))
+            {
+                continue;
+            }
+            String name = methods[i].getName().substring(4);
+            for (int j = 0; j < CORPUS_EXTENSIONS.length; j++)
+            {
+                URL input = getClass().getClassLoader().getResource(name + CORPUS_EXTENSIONS[j]);
+                if (input == null)
+                {
+                    continue;
+                }
+
+                URL configuration = getClass().getClassLoader().getResource(name + ".cfg");
+                if (configuration == null)
+                {
+                    configuration = getClass().getClassLoader().getResource("default.cfg");
+                }
+                Properties reference = new Properties();
+                InputStream stream = configuration.openStream();
+                try
+                {
+                    reference.load(stream);
+                }
+                finally
+                {
+                    stream.close();
+                }
+                reference.putAll(options);
+                Properties tested = (Properties) reference.clone();
+                reference.putAll(expected);
+                tested.putAll(actual);
+
+                assertEquals(name + CORPUS_EXTENSIONS[j] + " " + options, printCorpusFile(input, reference),
+                    printCorpusFile(input, tested));
+                files++;
+            }
+        }
+        assertTrue("only " + files + " files found", files > 50);
+    }
+
+    /**
+     * Creates a set of options.
+     * @param namesAndValues option names, each followed by its value
+     * @return options
+     */
+    protected static Properties options(String... namesAndValues)
+    {
+        Properties options = new Properties();
+        for (int i = 0; i < namesAndValues.length; i += 2)
+        {
+            options.setProperty(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * Runs tidy on a document of the corpus.
+     * @param input input file
+     * @param properties configuration
+     * @return tidy output, as ISO-8859-1 to compare bytes
+     * @throws IOException in reading the input file
+     */
+    private static String printCorpusFile(URL input, Properties properties) throws IOException
+    {
+        Tidy tidy = newQuietTidy();
+        tidy.setConfigurationFromProps(properties);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = input.openStream();
+        try
+        {
+            tidy.parse(in, out);
+        }
+        finally
+        {
+            in.close();
+        }
+        return out.toString("ISO8859_1");
+    }
+
     /**
      * A simple SAX Content Handler used to parse .msg files.
      */
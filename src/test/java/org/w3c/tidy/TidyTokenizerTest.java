@@ -0,0 +1,227 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.StringReader;
+
+
+/**
+ * Tests for TidyTokenizer.
+ * @version $Revision$ ($Author$)
+ */
+public class TidyTokenizerTest extends TidyTestCase
+{
+
+    /**
+     * Instantiate a new Test case.
+     * @param name test name
+     */
+    public TidyTokenizerTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.tidy = newQuietTidy();
+    }
+
+    /**
+     * Tokens are returned as they are in the input, nothing is inferred.
+     */
+    public void testTokens()
+    {
+        assertEquals(
+            "<html>|<title>|'T & t'|</title>|<p a=1>|'one two'|<br/>|</b>|<!--' c '-->",
+            tokens("<html><title>T &amp; t</title><p a=1>one  two<br/></b><!-- c -->", true));
+    }
+
+    /**
+     * Attributes are listed in document order, and are not checked or repaired.
+     */
+    public void testAttributes()
+    {
+        TidyTokenizer tokens = this.tidy.tokenize(new StringReader("<img src=a.png width=10 ismap><script>"));
+        assertTrue(tokens.next());
+        assertEquals("img", tokens.getName());
+        assertEquals(3, tokens.getAttributeCount());
+        assertEquals("src", tokens.getAttributeName(0));
+        assertEquals("a.png", tokens.getAttributeValue(0));
+        assertEquals("width", tokens.getAttributeName(1));
+        assertEquals("ismap", tokens.getAttributeName(2));
+        assertNull(tokens.getAttributeValue(2));
+        assertEquals("10", tokens.getAttributeValue("width"));
+        assertNull(tokens.getAttributeValue("alt"));
+
+        // no type attribute is added
+        assertTrue(tokens.next());
+        assertEquals("script", tokens.getName());
+        assertEquals(0, tokens.getAttributeCount());
+    }
+
+    /**
+     * Script content is a single text token, pre content keeps its white space.
+     */
+    public void testScriptAndPre()
+    {
+        assertEquals(
+            "<script>|'if (a <b) f();'|</script>|<pre>|'  a\n  b'|</pre>",
+            tokens("<script>if (a <b) f();</script><pre>\n  a\n  b</pre>", false));
+    }
+
+    /**
+     * White space text is skipped when ignoring white space.
+     */
+    public void testIgnoreWhitespace()
+    {
+        String html = "<ul>\n  <li>one</li>\n</ul>";
+        assertEquals("<ul>|' '|<li>|'one'|</li>|' '|</ul>", tokens(html, false));
+        assertEquals("<ul>|<li>|'one'|</li>|</ul>", tokens(html, true));
+    }
+
+    /**
+     * A token given back to the lexer is reused with its attributes for the following tokens, which don't keep anything
+     * from it.
+     */
+    public void testTokensAreRecycled()
+    {
+        Lexer lexer = newLexer("<p a=1><b c=2 d=3>");
+        Node p = lexer.getToken(Lexer.IGNORE_WHITESPACE);
+        AttVal a = p.attributes;
+        lexer.recycle(p);
+
+        Node b = lexer.getToken(Lexer.IGNORE_WHITESPACE);
+        assertSame(p, b);
+        assertEquals("b", b.element);
+        assertSame(lexer.configuration.tt.tagB, b.tag);
+        assertSame(a, b.getAttrByName("c"));
+        assertEquals("2", a.getValue());
+        assertEquals("3", b.getAttrByName("d").getValue());
+        assertNull(b.getAttrByName("a"));
+
+        assertEquals(
+            "<a href=x title=t>|'one'|<br/>|<img src=y>|<script>|'s'|</script>|<p>|<i class=c>",
+            tokens("<a href=x title=t>one<br/><img src=y><script>s</script><p><i class=c>", true));
+    }
+
+    /**
+     * There is no current token before the first one.
+     */
+    public void testNoCurrentToken()
+    {
+        TidyTokenizer tokens = this.tidy.tokenize(new StringReader("text"));
+        try
+        {
+            tokens.getType();
+            fail("IllegalStateException expected");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Lists the tokens of a document.
+     * @param html document
+     * @param ignoreWhitespace discard white space?
+     * @return tokens separated by '|'
+     */
+    private String tokens(String html, boolean ignoreWhitespace)
+    {
+        TidyTokenizer tokens = this.tidy.tokenize(new StringReader(html));
+        tokens.setIgnoreWhitespace(ignoreWhitespace);
+
+        StringBuilder buffer = new StringBuilder();
+        while (tokens.next())
+        {
+            if (buffer.length() > 0)
+            {
+                buffer.append('|');
+            }
+            switch (tokens.getType())
+            {
+                case Node.START_TAG :
+                case Node.START_END_TAG :
+                    buffer.append('<').append(tokens.getName());
+                    for (int i = 0; i < tokens.getAttributeCount(); i++)
+                    {
+                        buffer.append(' ').append(tokens.getAttributeName(i)).append('=');
+                        buffer.append(tokens.getAttributeValue(i));
+                    }
+                    buffer.append(tokens.getType() == Node.START_END_TAG ? "/>" : ">");
+                    break;
+
+                case Node.END_TAG :
+                    buffer.append("</").append(tokens.getName()).append('>');
+                    break;
+
+                case Node.COMMENT_TAG :
+                    buffer.append("<!--'").append(tokens.getText()).append("'-->");
+                    break;
+
+                default :
+                    buffer.append('\'').append(tokens.getText()).append('\'');
+                    break;
+            }
+        }
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,234 @@
+/*
+ *  Java HTML Tidy - JTidy
+ *  HTML parser and pretty printer
+ *
+ *  Copyright (c) 1998-2000 World Wide Web Consortium (Massachusetts
+ *  Institute of Technology, Institut National de Recherche en
+ *  Informatique et en Automatique, Keio University). All Rights
+ *  Reserved.
+ *
+ *  Contributing Author(s):
+ *
+ *     Dave Raggett <dsr@w3.org>
+ *     Andy Quick <ac.quick@sympatico.ca> (translation to Java)
+ *     Gary L Peskin <garyp@firstech.com> (Java development)
+ *     Sami Lempinen <sami@lempinen.net> (release management)
+ *     Fabrizio Giustina <fgiust at users.sourceforge.net>
+ *
+ *  The contributing author(s) would like to thank all those who
+ *  helped with testing, bug fixes, and patience.  This wouldn't
+ *  have been possible without all of you.
+ *
+ *  COPYRIGHT NOTICE:
+ * 
+ *  This software and documentation is provided "as is," and
+ *  the copyright holders and contributing author(s) make no
+ *  representations or warranties, express or implied, including
+ *  but not limited to, warranties of merchantability or fitness
+ *  for any particular purpose or that the use of the software or
+ *  documentation will not infringe any third party patents,
+ *  copyrights, trademarks or other rights. 
+ *
+ *  The copyright holders and contributing author(s) will not be
+ *  liable for any direct, indirect, special or consequential damages
+ *  arising out of any use of the software or documentation, even if
+ *  advised of the possibility of such damage.
+ *
+ *  Permission is hereby granted to use, copy, modify, and distribute
+ *  this source code, or portions hereof, documentation and executables,
+ *  for any purpose, without fee, subject to the following restrictions:
+ *
+ *  1. The origin of this source code must not be misrepresented.
+ *  2. Altered versions must be plainly marked as such and must
+ *     not be misrepresented as being the original source.
+ *  3. This Copyright notice may not be removed or altered from any
+ *     source or altered source distribution.
+ * 
+ *  The copyright holders and contributing author(s) specifically
+ *  permit, without fee, and encourage the use of this source code
+ *  as a component for supporting the Hypertext Markup Language in
+ *  commercial products. If you use this source code in a product,
+ *  acknowledgment is not required but would be appreciated.
+ *
+ */
+package org.w3c.tidy;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+
+/**
+ * Tests for XMLEmitter and TidyXMLReader.
+ * @version $Revision$ ($Author$)
+ */
+public class XMLEmitterTest extends TidyTestCase
+{
+
+    /**
+     * Test document.
+     */
+    private static final String HTML = "<title>T</title><!-- c --><p class=a>x &amp; y&nbsp;<br>"
+        + "<img src=i.png alt=\"\" ismap><span xml:lang=en>z</span>";
+
+    /**
+     * Tidied tree, without the whitespace added by printing.
+     */
+    private static final String BODY = "<body><p class=\"a\">x &amp; y <br/>"
+        + "<img src=\"i.png\" alt=\"\" ismap=\"ismap\"/><span xml:lang=\"en\">z</span></p></body>";
+
+    /**
+     * Instantiate a new Test case.
+     * @param name test name
+     */
+    public XMLEmitterTest(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * The tree goes through a SAXSource to an XSLT identity transformation, with the XHTML namespace.
+     * @throws Exception any exception generated during the test
+     */
+    public void testSAXSource() throws Exception
+    {
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+
+        SAXSource source = new SAXSource(new TidyXMLReader(newTidy()), new InputSource(new ByteArrayInputStream(
+            HTML.getBytes("UTF-8"))));
+        StringWriter out = new StringWriter();
+        transformer.transform(source, new StreamResult(out));
+
+        String xml = out.toString();
+        assertTrue(xml, xml.indexOf("<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>T</title>") != -1);
+        assertTrue(xml, xml.endsWith(BODY.replace("/>", " />") + "</html>"));
+
+        DOMResult dom = new DOMResult();
+        transformer.transform(new SAXSource(new TidyXMLReader(newTidy()), new InputSource(new ByteArrayInputStream(
+            HTML.getBytes("UTF-8")))), dom);
+        org.w3c.dom.Element html = ((org.w3c.dom.Document) dom.getNode()).getDocumentElement();
+        assertEquals("http://www.w3.org/1999/xhtml", html.getNamespaceURI());
+        assertEquals("html", html.getLocalName());
+        org.w3c.dom.Element span = (org.w3c.dom.Element) html.getElementsByTagName("span").item(0);
+        assertEquals("en", span.getAttributeNS("http://www.w3.org/XML/1998/namespace", "lang"));
+    }
+
+    /**
+     * The tree is written to a StAX stream writer, with comments and the document type.
+     * @throws Exception any exception generated during the test
+     */
+    public void testStreamWriter() throws Exception
+    {
+        Tidy tidy = newTidy();
+        Node document = tidy.parse(new ByteArrayInputStream(HTML.getBytes("UTF-8")), (OutputStream) null);
+
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        new XMLEmitter(tidy.getConfiguration()).emit(document, writer);
+        writer.flush();
+
+        String xml = out.toString();
+        assertTrue(xml, xml.indexOf("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\" "
+            + "\"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd\">") != -1);
+        assertTrue(xml, xml.indexOf("<html xmlns=\"http://www.w3.org/1999/xhtml\"><head>") != -1);
+        assertTrue(xml, xml.indexOf("<!-- c -->") != -1);
+        assertTrue(xml, xml.endsWith("<body><p class=\"a\">x &amp; y\u00a0<br></br><img src=\"i.png\" alt=\"\" "
+            + "ismap=\"ismap\"></img><span xml:lang=\"en\">z</span></p></body></html>"));
+    }
+
+    /**
+     * A deeply nested tree is sent without recursion, on a thread with a small stack.
+     * @throws Exception any exception generated during the test
+     */
+    public void testDeeplyNestedTree() throws Exception
+    {
+        final int depth = 50000;
+        StringBuilder xml = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+        {
+            xml.append("<a n=\"").append(i).append("\" m=\"x\">");
+        }
+        for (int i = 0; i < depth; i++)
+        {
+            xml.append("</a>");
+        }
+
+        final Tidy tidy = newQuietTidy();
+        tidy.setXmlTags(true);
+        final Node document = tidy.parse(new ByteArrayInputStream(xml.toString().getBytes("UTF-8")),
+            (OutputStream) null);
+
+        final int[] counts = new int[2];
+        final Throwable[] error = new Throwable[1];
+        Thread thread = new Thread(null, new Runnable()
+        {
+
+            @Override
+            public void run()
+            {
+                try
+                {
+                    new XMLEmitter(tidy.getConfiguration()).emit(document, new DefaultHandler()
+                    {
+
+                        @Override
+                        public void startElement(String uri, String localName, String qName, Attributes atts)
+                        {
+                            if (counts[0] == depth - 1)
+                            {
+                                assertEquals("n", atts.getQName(0));
+                                assertEquals(String.valueOf(depth - 1), atts.getValue(0));
+                            }
+                            counts[0]++;
+                        }
+
+                        @Override
+                        public void endElement(String uri, String localName, String qName)
+                        {
+                            counts[1]++;
+                        }
+                    }, null);
+                }
+                catch (Throwable e)
+                {
+                    error[0] = e;
+                }
+            }
+        }, "emitter", 256 * 1024);
+        thread.start();
+        thread.join();
+
+        if (error[0] != null)
+        {
+            throw new AssertionError(error[0]);
+        }
+        assertEquals(depth, counts[0]);
+        assertEquals(depth, counts[1]);
+    }
+
+    /**
+     * @return Tidy writing XHTML
+     */
+    private Tidy newTidy()
+    {
+        Tidy tidy = newQuietTidy();
+        tidy.setXHTML(true);
+        tidy.setTidyMark(false);
+        return tidy;
+    }
+
+}